@@ -0,0 +1,130 @@
+package connections;
+import java.util.Collection;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers computing the fastest route with the A* algorithm.
+ * The search is directed towards the end location by the straight-line distance
+ * between the coordinates of a location and the end location, divided by the
+ * highest speed limit in the network.
+ *
+ * Road lengths and coordinates are not expressed in the same unit, so the distance
+ * is first scaled by the smallest ratio between the length of a road and the
+ * straight-line distance between its endpoints. This keeps the bound below the
+ * real travel time of every road, so the routes found are still the fastest.
+ *
+ * The bound depends on the lengths and speed limits of the roads of the network.
+ * It stays valid when delays or blockages change, but must be refreshed after a
+ * road is added, or the length or speed limit of a road is changed.
+ */
+public class AStarRouter extends DijkstraRouter {
+
+/**
+ * Initialize this new router for the roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public AStarRouter() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new router for the network formed by the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ * @effect | refresh(roads)
+ */
+public AStarRouter(Collection<Road> roads) {
+	this.refresh(roads);
+}
+
+/**
+ * Variable registering the travel time per unit of straight-line distance that
+ * no road of the network can beat.
+ */
+private double timePerDistance;
+
+/**
+ * Variables registering the coordinates of the end location of the current query.
+ */
+private Location target;
+private double targetX;
+private double targetY;
+
+/**
+ * Return the travel time per unit of straight-line distance used as lower bound.
+ */
+@Basic
+public double getTimePerDistance() {
+	return this.timePerDistance;
+}
+
+/**
+ * Recompute the lower bound for the roads of the default network.
+ *
+ * @effect | refresh(RoadNetwork.getDefault().getRoads())
+ */
+public void refresh() {
+	this.refresh(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Recompute the lower bound from the lengths and speed limits of the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ * @post   | new.getTimePerDistance() == (the smallest length/distance ratio of the roads)
+ *         |   / (the highest speed limit of the roads)
+ */
+public void refresh(Collection<Road> roads) {
+	float maxSpeedLimit = 0;
+	double minRatio = Double.POSITIVE_INFINITY;
+	for(Road road:roads) {
+		if(road.isTerminated()) {
+			continue;
+		}
+		maxSpeedLimit = Math.max(maxSpeedLimit, road.getSpeedLimit());
+		double distance = getDistance(road.endpoint1.getCoordinates(), road.endpoint2.getCoordinates());
+		if(distance > 0) {
+			minRatio = Math.min(minRatio, road.getLength()/distance);
+		}
+	}
+	if(maxSpeedLimit == 0 || minRatio == Double.POSITIVE_INFINITY) {
+		this.timePerDistance = 0;
+	}
+	else {
+		// Travel times are single precision floats, leave room for their rounding.
+		this.timePerDistance = minRatio/maxSpeedLimit*(1 - 1e-6);
+	}
+}
+
+/**
+ * Return the straight-line distance between the given location and the given end
+ * location, multiplied with the travel time per unit of distance of this router.
+ *
+ * @return | result == getDistance(location.getCoordinates(), to.getCoordinates())
+ *         |   * getTimePerDistance()
+ */
+@Override
+protected double getPotential(Location location, Location to) {
+	if(to != this.target) {
+		double[] coordinates = to.getCoordinates();
+		this.targetX = coordinates[0];
+		this.targetY = coordinates[1];
+		this.target = to;
+	}
+	double[] coordinates = location.getCoordinates();
+	return Math.hypot(coordinates[0] - this.targetX, coordinates[1] - this.targetY)*this.timePerDistance;
+}
+
+/**
+ * Return the straight-line distance between the given coordinates.
+ *
+ * @return | result == Math.hypot(first[0] - second[0], first[1] - second[1])
+ */
+public static double getDistance(double[] first, double[] second) {
+	return Math.hypot(first[0] - second[0], first[1] - second[1]);
+}
+}
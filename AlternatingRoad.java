@@ -135,6 +135,17 @@ public float getDelay(boolean direction) {
 		return super.getDelay(true);
 	}
 }
+/**
+ * Check whether this road can be driven in the given direction at all
+ * @param direction
+ * 			The direction to check
+ * @return	True only for the forward direction
+ * 			| result == direction
+ */
+@Override
+public boolean canBeTraversedInDirection(boolean direction) {
+	return direction;
+}
 /**
  * returns possible start locations of the road array of length 1
  */
@@ -162,6 +173,7 @@ public void reverseTraversalDirection() {
 	Location end = l3[0];
 	this.endpoint2 = start;
 	this.endpoint1 = end;
+	this.registerChange(true, ChangeEvent.Kind.DIRECTION, true);
 	
 }
 /**
@@ -0,0 +1,414 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers computing a few alternative routes between two locations,
+ * ranked by their travel time.
+ *
+ * The alternatives are found with Yen's algorithm: each next candidate route follows
+ * an already examined route up to some location, and then deviates from it along the
+ * fastest route that avoids the roads the examined routes with the same beginning take
+ * there, and the locations visited before. Each deviation is searched with A*, directed
+ * by the exact travel times towards the end location, which are computed once per query
+ * by a single backward search. Removing roads and locations only makes travel times
+ * longer, so these travel times remain lower bounds for every deviation, and most
+ * deviation searches only expand the locations along their own route.
+ *
+ * A candidate route is only accepted as an alternative if the roads it shares with each
+ * alternative accepted before take at most a given fraction of its own travel time.
+ */
+public class AlternativeRouter extends Router {
+
+/**
+ * Initialize this new router for all roads of the default network, accepting
+ * alternatives that share at most 80% of their travel time with a faster alternative.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads(), 0.8)
+ */
+public AlternativeRouter() {
+	this(RoadNetwork.getDefault().getRoads(), 0.8);
+}
+
+/**
+ * Initialize this new router for the given roads, with the given overlap limit.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ * @param  maxOverlap
+ *         The largest fraction of the travel time of an alternative that may be spent
+ *         on roads of a faster alternative.
+ * @post   | new.getMaxOverlap() == maxOverlap
+ * @throws IllegalArgumentException
+ *         | !isValidMaxOverlap(maxOverlap)
+ */
+public AlternativeRouter(Collection<Road> roads, double maxOverlap) throws IllegalArgumentException {
+	if(!isValidMaxOverlap(maxOverlap)) {
+		throw new IllegalArgumentException();
+	}
+	this.maxOverlap = maxOverlap;
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	this.remaining = new double[size];
+	this.times = new double[size];
+	this.parents = new Road[size];
+	this.bans = new int[size];
+	this.touched = new int[size];
+	this.heap = new IndexedHeap(size);
+	Arrays.fill(this.remaining, Double.POSITIVE_INFINITY);
+	Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+}
+
+/**
+ * The largest number of candidate routes examined per requested alternative.
+ */
+public static final int MAX_EXAMINED_PER_ALTERNATIVE = 10;
+
+/**
+ * Variable registering the overlap limit of this router.
+ */
+private final double maxOverlap;
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Array registering the travel time from each location to the end location of the
+ * current query.
+ */
+private final double[] remaining;
+
+/**
+ * Arrays, set and heap holding the state of a deviation search. A location is banned
+ * from the current deviation search if its entry in bans equals the current ban.
+ */
+private final double[] times;
+private final Road[] parents;
+private final int[] bans;
+private int ban = 0;
+private final HashSet<Road> bannedRoads = new HashSet<Road>();
+private final int[] touched;
+private int touchedCount = 0;
+private final IndexedHeap heap;
+
+/**
+ * Variable registering the number of locations settled by the current query.
+ */
+private int settled;
+
+/**
+ * Return the overlap limit of this router.
+ */
+@Basic @Immutable
+public double getMaxOverlap() {
+	return this.maxOverlap;
+}
+
+/**
+ * Check whether the given fraction can be used as overlap limit.
+ *
+ * @return | result == (maxOverlap >= 0 && maxOverlap <= 1)
+ */
+public static boolean isValidMaxOverlap(double maxOverlap) {
+	return maxOverlap >= 0 && maxOverlap <= 1;
+}
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *
+ * @return | if(getAlternativeRoutes(from, to, 1).isEmpty()) then result == null
+ *         | else result == getAlternativeRoutes(from, to, 1).get(0)
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	List<Route> routes = this.getAlternativeRoutes(from, to, 1);
+	if(routes.isEmpty()) {
+		return null;
+	}
+	return routes.get(0);
+}
+
+/**
+ * Return at most the given number of alternative routes from the given start location
+ * to the given end location, ranked by their travel time.
+ *   The first route is a fastest route. Each next route is the fastest route that does
+ *   not visit a location twice, and that shares at most getMaxOverlap() of its travel
+ *   time with each route before it. Fewer routes are returned if no more such routes
+ *   are found among the first MAX_EXAMINED_PER_ALTERNATIVE*count candidate routes.
+ *   The last travel time of this router is set to the travel time of the first route.
+ *
+ * @param  from
+ *         The location the routes must start at.
+ * @param  to
+ *         The location the routes must end at.
+ * @param  count
+ *         The largest number of routes to return.
+ * @return An empty list if the end location cannot be reached, a list with a single
+ *         route without segments if both locations are the same.
+ * @throws IllegalArgumentException
+ *       | !canHaveAsRouteEnd(from) || !canHaveAsRouteEnd(to) || count <= 0
+ */
+public List<Route> getAlternativeRoutes(Location from, Location to, int count) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(count <= 0) {
+		throw new IllegalArgumentException();
+	}
+	ArrayList<Route> result = new ArrayList<Route>();
+	if(from == to) {
+		this.setLastSettledCount(0);
+		result.add(this.buildRoute(from, new ArrayList<Road>()));
+		return result;
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return result;
+	}
+	this.settled = this.searchRemaining(target);
+	ArrayList<Path> accepted = new ArrayList<Path>();
+	ArrayList<Path> examined = new ArrayList<Path>();
+	PriorityQueue<Path> candidates = new PriorityQueue<Path>();
+	HashSet<List<Road>> found = new HashSet<List<Road>>();
+	Path first = this.searchDeviation(source, target, null, 0, examined);
+	if(first != null) {
+		candidates.add(first);
+		found.add(first.roads);
+	}
+	while(accepted.size() < count && !candidates.isEmpty() && examined.size() < MAX_EXAMINED_PER_ALTERNATIVE*count) {
+		Path path = candidates.poll();
+		examined.add(path);
+		if(this.isDistinctFrom(path, accepted)) {
+			accepted.add(path);
+			if(accepted.size() == count) {
+				break;
+			}
+		}
+		// Deviations before the deviation of this path were searched from its parent already.
+		for(int position = path.deviation;position<path.roads.size();position++) {
+			Path candidate = this.searchDeviation(source, target, path, position, examined);
+			if(candidate != null && found.add(candidate.roads)) {
+				candidates.add(candidate);
+			}
+		}
+	}
+	for(int node = 0;node<this.remaining.length;node++) {
+		this.remaining[node] = Double.POSITIVE_INFINITY;
+	}
+	this.setLastSettledCount(this.settled);
+	if(accepted.isEmpty()) {
+		this.setNoRouteFound();
+	}
+	// Build the fastest route last, so its travel time is the last travel time of this router.
+	for(int i = accepted.size() - 1;i>=0;i--) {
+		result.add(0, this.buildRoute(from, accepted.get(i).roads));
+	}
+	return result;
+}
+
+/**
+ * Check whether the roads the given path shares with each of the given paths take at
+ * most the overlap limit of this router of its travel time.
+ */
+private boolean isDistinctFrom(Path path, List<Path> others) {
+	for(Path other:others) {
+		HashSet<Road> otherRoads = new HashSet<Road>(other.roads);
+		double shared = 0;
+		for(int i = 0;i<path.roads.size();i++) {
+			Road road = path.roads.get(i);
+			if(otherRoads.contains(road)) {
+				shared = shared + getTravelTimeFrom(road, this.index.getLocationAt(path.nodes[i]));
+			}
+		}
+		if(shared > this.maxOverlap*path.time) {
+			return false;
+		}
+	}
+	return true;
+}
+
+/**
+ * Compute the travel time from every location to the location at the given index.
+ *
+ * @return The number of settled locations.
+ */
+private int searchRemaining(int target) {
+	int count = 0;
+	this.remaining[target] = 0;
+	this.heap.push(target, 0);
+	while(!this.heap.isEmpty()) {
+		int node = this.heap.poll();
+		count++;
+		Location location = this.index.getLocationAt(node);
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint2 == location;
+			Location other = getOrigin(road, direction);
+			if(other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			int previous = this.index.getIndexOf(other);
+			if(previous < 0) {
+				continue;
+			}
+			double time = this.remaining[node] + road.getTravelTime(direction);
+			if(time < this.remaining[previous]) {
+				this.remaining[previous] = time;
+				this.heap.push(previous, time);
+			}
+		}
+	}
+	return count;
+}
+
+/**
+ * Return the fastest path that follows the given path up to the location at the given
+ * position and then deviates from it, or null if there is none.
+ *   The deviation avoids the locations of the given path before the given position, and
+ *   the road taken at the given position by each examined path that starts with the same
+ *   roads as the given path. If no path is given, the fastest path is returned.
+ */
+private Path searchDeviation(int source, int target, Path base, int position, List<Path> examined) {
+	this.ban++;
+	this.bannedRoads.clear();
+	int start = source;
+	if(base != null) {
+		start = base.nodes[position];
+		for(int i = 0;i<position;i++) {
+			this.bans[base.nodes[i]] = this.ban;
+		}
+		List<Road> root = base.roads.subList(0, position);
+		for(Path path:examined) {
+			if(path.roads.size() > position && path.roads.subList(0, position).equals(root)) {
+				this.bannedRoads.add(path.roads.get(position));
+			}
+		}
+	}
+	this.reach(start, 0, null);
+	boolean reached = false;
+	while(!this.heap.isEmpty()) {
+		int node = this.heap.poll();
+		this.settled++;
+		if(node == target) {
+			reached = true;
+			break;
+		}
+		Location location = this.index.getLocationAt(node);
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == location;
+			Location other = getDestination(road, direction);
+			if(other == location || this.bannedRoads.contains(road) || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			int next = this.index.getIndexOf(other);
+			if(next >= 0 && this.bans[next] != this.ban) {
+				this.reach(next, this.times[node] + road.getTravelTime(direction), road);
+			}
+		}
+	}
+	Path result = null;
+	if(reached) {
+		ArrayList<Road> deviation = new ArrayList<Road>();
+		int tracker = target;
+		while(tracker != start) {
+			Road road = this.parents[tracker];
+			deviation.add(0, road);
+			Location location = this.index.getLocationAt(tracker);
+			tracker = this.index.getIndexOf(road.endpoint2 == location ? road.endpoint1 : road.endpoint2);
+		}
+		ArrayList<Road> roads = new ArrayList<Road>();
+		if(base != null) {
+			roads.addAll(base.roads.subList(0, position));
+		}
+		roads.addAll(deviation);
+		result = new Path(source, roads, position);
+	}
+	this.heap.clear();
+	for(int i = 0;i<this.touchedCount;i++) {
+		this.times[this.touched[i]] = Double.POSITIVE_INFINITY;
+	}
+	this.touchedCount = 0;
+	return result;
+}
+
+/**
+ * Register that the location at the given index is reached by the current deviation
+ * search at the given travel time over the given road, if that is faster than before.
+ *   Locations from which the end location cannot be reached are ignored.
+ */
+private void reach(int node, double time, Road road) {
+	if(time < this.times[node] && this.remaining[node] != Double.POSITIVE_INFINITY) {
+		if(this.times[node] == Double.POSITIVE_INFINITY) {
+			this.touched[this.touchedCount++] = node;
+		}
+		this.times[node] = time;
+		this.parents[node] = road;
+		this.heap.push(node, time + this.remaining[node]);
+	}
+}
+
+/**
+ * A class of paths through the network, ordered by their travel time.
+ */
+private class Path implements Comparable<Path> {
+
+	Path(int source, List<Road> roads, int deviation) {
+		this.roads = roads;
+		this.deviation = deviation;
+		this.nodes = new int[roads.size() + 1];
+		this.nodes[0] = source;
+		double time = 0;
+		Location tracker = index.getLocationAt(source);
+		for(int i = 0;i<roads.size();i++) {
+			Road road = roads.get(i);
+			boolean direction = road.endpoint1 == tracker;
+			time = time + road.getTravelTime(direction);
+			tracker = getDestination(road, direction);
+			this.nodes[i + 1] = index.getIndexOf(tracker);
+		}
+		this.time = time;
+	}
+
+	/**
+	 * The roads of this path, in order.
+	 */
+	final List<Road> roads;
+
+	/**
+	 * The indices of the locations of this path, in order.
+	 */
+	final int[] nodes;
+
+	/**
+	 * The position at which this path deviates from the path it was derived from.
+	 */
+	final int deviation;
+
+	/**
+	 * The travel time of this path, summed from start to end.
+	 */
+	final double time;
+
+	@Override
+	public int compareTo(Path other) {
+		return Double.compare(this.time, other.time);
+	}
+}
+}
@@ -0,0 +1,102 @@
+package connections;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * A class of routers computing the fastest route with a bidirectional Dijkstra search.
+ * A forward search settles locations from the start location over the roads leaving
+ * them, a backward search settles locations from the end location over the roads
+ * arriving at them, and the route is composed where both searches meet.
+ *
+ * The backward search looks at the roads adjoining a location in reverse: a one-way
+ * or alternating road only arrives at its current end location, so reversing the
+ * traversal direction of an alternating road is taken into account immediately.
+ */
+public class BidirectionalRouter extends Router {
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *   Both searches are expanded alternately, always on the side with the smallest
+ *   travel time in its queue, until the sum of both smallest travel times is no
+ *   longer below the travel time of the best route found so far.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	HashMap<Location,Double> forwardTimes = new HashMap<Location,Double>();
+	HashMap<Location,Double> backwardTimes = new HashMap<Location,Double>();
+	HashMap<Location,Road> forwardParents = new HashMap<Location,Road>();
+	HashMap<Location,Road> backwardParents = new HashMap<Location,Road>();
+	HashSet<Location> forwardSettled = new HashSet<Location>();
+	HashSet<Location> backwardSettled = new HashSet<Location>();
+	PriorityQueue<QueueEntry> forwardQueue = new PriorityQueue<QueueEntry>();
+	PriorityQueue<QueueEntry> backwardQueue = new PriorityQueue<QueueEntry>();
+	forwardTimes.put(from, 0.0);
+	backwardTimes.put(to, 0.0);
+	forwardQueue.add(new QueueEntry(from, 0.0, 0.0));
+	backwardQueue.add(new QueueEntry(to, 0.0, 0.0));
+	double best = Double.POSITIVE_INFINITY;
+	Location meeting = null;
+	if(from == to) {
+		best = 0;
+		meeting = from;
+	}
+	while(!forwardQueue.isEmpty() && !backwardQueue.isEmpty()) {
+		if(forwardQueue.peek().time + backwardQueue.peek().time >= best) {
+			break;
+		}
+		boolean forward = forwardQueue.peek().time <= backwardQueue.peek().time;
+		PriorityQueue<QueueEntry> queue = forward ? forwardQueue : backwardQueue;
+		HashMap<Location,Double> times = forward ? forwardTimes : backwardTimes;
+		HashMap<Location,Double> otherTimes = forward ? backwardTimes : forwardTimes;
+		HashMap<Location,Road> parents = forward ? forwardParents : backwardParents;
+		HashSet<Location> settled = forward ? forwardSettled : backwardSettled;
+		QueueEntry entry = queue.poll();
+		if(!settled.add(entry.location)) {
+			continue;
+		}
+		for(Road road:entry.location.adjoiningRoads) {
+			boolean direction = forward ? road.endpoint1 == entry.location : road.endpoint2 == entry.location;
+			Location next = forward ? getDestination(road, direction) : getOrigin(road, direction);
+			if(next == entry.location || settled.contains(next) || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			double time = entry.time + road.getTravelTime(direction);
+			Double known = times.get(next);
+			if(known == null || time < known) {
+				times.put(next, time);
+				parents.put(next, road);
+				queue.add(new QueueEntry(next, time, time));
+				Double other = otherTimes.get(next);
+				if(other != null && time + other < best) {
+					best = time + other;
+					meeting = next;
+				}
+			}
+		}
+	}
+	this.setLastSettledCount(forwardSettled.size() + backwardSettled.size());
+	if(meeting == null) {
+		this.setNoRouteFound();
+		return null;
+	}
+	ArrayList<Road> roads = new ArrayList<Road>();
+	Location tracker = meeting;
+	while(tracker != from) {
+		Road road = forwardParents.get(tracker);
+		roads.add(0, road);
+		tracker = road.endpoint2 == tracker ? road.endpoint1 : road.endpoint2;
+	}
+	tracker = meeting;
+	while(tracker != to) {
+		Road road = backwardParents.get(tracker);
+		roads.add(road);
+		tracker = road.endpoint1 == tracker ? road.endpoint2 : road.endpoint1;
+	}
+	return this.buildRoute(from, roads);
+}
+}
@@ -0,0 +1,271 @@
+package connections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers remembering the routes another router found for the most
+ * recently asked pairs of start and end locations.
+ *
+ * Each remembered route records the version of every road it uses, together with the
+ * number of changes to the network that may have made some road faster. A remembered
+ * route is only returned while none of its roads changed and no road got faster;
+ * changes that only slow down other roads keep it valid, since they cannot make
+ * another route faster than it. Invalid routes are dropped when they are asked for.
+ * When the cache is full, the least recently used route is evicted.
+ */
+public class CachingRouter extends Router {
+
+/**
+ * Initialize this new router remembering at most the given number of routes found
+ * by the given router.
+ *
+ * @param  router
+ *         The router to find routes that are not remembered.
+ * @param  capacity
+ *         The largest number of routes to remember.
+ * @post   | new.getRouter() == router && new.getCapacity() == capacity
+ * @throws IllegalArgumentException
+ *         | router == null || capacity <= 0
+ */
+public CachingRouter(Router router, int capacity) throws IllegalArgumentException {
+	if(router == null || capacity <= 0) {
+		throw new IllegalArgumentException();
+	}
+	this.router = router;
+	this.capacity = capacity;
+	this.entries = new LinkedHashMap<Key,Entry>(16, 0.75f, true) {
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key,Entry> eldest) {
+			if(this.size() > CachingRouter.this.capacity) {
+				CachingRouter.this.evictionCount++;
+				return true;
+			}
+			return false;
+		}
+	};
+}
+
+/**
+ * Variable registering the router finding the routes that are not remembered.
+ */
+private final Router router;
+
+/**
+ * Variable registering the largest number of routes to remember.
+ */
+private final int capacity;
+
+/**
+ * Map registering the remembered routes, from least to most recently used.
+ */
+private final LinkedHashMap<Key,Entry> entries;
+
+/**
+ * Variables registering the number of queries answered from and not from the cache,
+ * and the number of routes evicted and invalidated.
+ */
+private long hitCount = 0;
+private long missCount = 0;
+private long evictionCount = 0;
+private long invalidationCount = 0;
+
+@Basic @Immutable
+public Router getRouter() {
+	return this.router;
+}
+
+@Basic @Immutable
+public int getCapacity() {
+	return this.capacity;
+}
+
+/**
+ * Return the number of routes remembered by this router, valid or not.
+ */
+public int getSize() {
+	return this.entries.size();
+}
+
+/**
+ * Return the number of queries answered with a remembered route.
+ */
+@Basic
+public long getHitCount() {
+	return this.hitCount;
+}
+
+/**
+ * Return the number of queries answered by the underlying router.
+ */
+@Basic
+public long getMissCount() {
+	return this.missCount;
+}
+
+/**
+ * Return the number of routes dropped because the cache was full.
+ */
+@Basic
+public long getEvictionCount() {
+	return this.evictionCount;
+}
+
+/**
+ * Return the number of routes dropped because the network changed.
+ */
+@Basic
+public long getInvalidationCount() {
+	return this.invalidationCount;
+}
+
+/**
+ * Forget all remembered routes. The counters are kept.
+ *
+ * @post | new.getSize() == 0
+ */
+public void clear() {
+	this.entries.clear();
+}
+
+/**
+ * Find and remember the route between each of the given pairs of locations, without
+ * changing the hit and miss counters.
+ *
+ * @param  pairs
+ *         The pairs of start and end locations.
+ * @throws IllegalArgumentException
+ *         | for some pair in pairs: pair.length != 2 || !canHaveAsRouteEnd(pair[0]) || !canHaveAsRouteEnd(pair[1])
+ */
+public void warmUp(Collection<Location[]> pairs) throws IllegalArgumentException {
+	for(Location[] pair:pairs) {
+		if(pair.length != 2) {
+			throw new IllegalArgumentException();
+		}
+		this.checkRouteEnds(pair[0], pair[1]);
+		Key key = new Key(pair[0], pair[1]);
+		Entry entry = this.entries.get(key);
+		if(entry == null || !entry.isValid()) {
+			this.entries.put(key, new Entry(this.router.getFastestRoute(pair[0], pair[1])));
+		}
+	}
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location,
+ * remembered if possible, and found by the underlying router otherwise.
+ *   Each call returns a new route, so changing a returned route does not change
+ *   the remembered one.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	Key key = new Key(from, to);
+	Entry entry = this.entries.get(key);
+	if(entry != null) {
+		if(entry.isValid()) {
+			this.hitCount++;
+			this.setLastSettledCount(0);
+			if(entry.roads == null) {
+				this.setNoRouteFound();
+				return null;
+			}
+			return this.buildRoute(from, Arrays.asList(entry.roads));
+		}
+		this.invalidationCount++;
+		this.entries.remove(key);
+	}
+	this.missCount++;
+	Route route = this.router.getFastestRoute(from, to);
+	this.setLastSettledCount(this.router.getLastSettledCount());
+	entry = new Entry(route);
+	this.entries.put(key, entry);
+	if(route == null) {
+		this.setNoRouteFound();
+		return null;
+	}
+	return this.buildRoute(from, Arrays.asList(entry.roads));
+}
+
+/**
+ * A class of keys of remembered routes, consisting of a start and an end location.
+ */
+private static class Key {
+
+	Key(Location from, Location to) {
+		this.from = from;
+		this.to = to;
+	}
+
+	final Location from;
+	final Location to;
+
+	@Override
+	public boolean equals(Object other) {
+		return other instanceof Key && ((Key) other).from == this.from && ((Key) other).to == this.to;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31*System.identityHashCode(this.from) + System.identityHashCode(this.to);
+	}
+}
+
+/**
+ * A class of remembered routes, with the versions of their roads.
+ */
+private static class Entry {
+
+	Entry(Route route) {
+		this.improvementCount = Road.getImprovementCount();
+		if(route == null) {
+			this.roads = null;
+			this.versions = new long[0];
+		}
+		else {
+			Object[] segments = route.getRouteSegments();
+			this.roads = new Road[segments.length];
+			this.versions = new long[segments.length];
+			for(int i = 0;i<segments.length;i++) {
+				this.roads[i] = (Road) segments[i];
+				this.versions[i] = this.roads[i].getVersion();
+			}
+		}
+	}
+
+	/**
+	 * The roads of the remembered route, or null if there was no route.
+	 */
+	final Road[] roads;
+
+	/**
+	 * The version of each road of the remembered route when it was found.
+	 */
+	final long[] versions;
+
+	/**
+	 * The number of changes that may have made a road faster when the route was found.
+	 */
+	final long improvementCount;
+
+	/**
+	 * Check whether the remembered route is still the fastest route.
+	 */
+	boolean isValid() {
+		if(Road.getImprovementCount() != this.improvementCount) {
+			return false;
+		}
+		for(int i = 0;i<this.versions.length;i++) {
+			if(this.roads[i].getVersion() != this.versions[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
+}
@@ -0,0 +1,75 @@
+package connections;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A benchmark measuring what changes to a road cost when nobody is subscribed to the
+ * change bus of its network, compared to a synchronous and a batched subscriber.
+ *
+ * Each measurement times a loop of setDelay and setIsBlocked calls on a single road.
+ * Without subscribers, publishing a change only reads the subscriptions of the bus, so
+ * the first measurement, before anybody subscribes, is the baseline cost of the changes
+ * themselves; the measurements with a subscriber show what creating and delivering the
+ * events adds, and the last one shows that the cost returns to the baseline once the
+ * subscribers are gone.
+ *
+ * The benchmark is run on its own, with the number of changes per measurement as
+ * optional argument; it is not part of the tests, because the numbers it prints depend
+ * on the machine it runs on.
+ */
+public class ChangeBusBenchmark {
+
+/**
+ * The number of times each case is measured before it is measured for the result.
+ */
+private static final int WARMUP_COUNT = 5;
+
+public static void main(String[] args) {
+	int changes = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+	RoadNetwork network = new RoadNetwork();
+	Road road = new TwoWayRoad("T1", network.createLocation(new double[] {0, 0}, "A"),
+			network.createLocation(new double[] {0, 1}, "B"), 1000, 20, 10);
+	ChangeBus bus = network.getChangeBus();
+	report("no subscriber", measure(road, changes));
+	AtomicLong received = new AtomicLong();
+	ChangeBus.Subscription synchronous = bus.subscribe(event -> received.incrementAndGet());
+	try {
+		report("synchronous subscriber", measure(road, changes));
+	}
+	finally {
+		synchronous.close();
+	}
+	ChangeBus.Subscription batched = bus.subscribeBatched(batch -> received.addAndGet(batch.size()));
+	try {
+		report("batched subscriber", measure(road, changes));
+	}
+	finally {
+		batched.close();
+	}
+	report("no subscriber after unsubscribing", measure(road, changes));
+	System.out.println(received.get() + " events received");
+}
+
+/**
+ * Change the delay and blockage of the given road the given number of times, after
+ * warming up, and return the time per change in nanoseconds.
+ */
+private static double measure(Road road, int changes) {
+	for(int i = 0;i<WARMUP_COUNT;i++) {
+		run(road, changes);
+	}
+	return (double) run(road, changes)/changes;
+}
+
+private static long run(Road road, int changes) {
+	long start = System.nanoTime();
+	for(int i = 0;i<changes;i += 2) {
+		road.setDelay(i % 100, true);
+		road.setIsBlocked(i % 4 == 0, false);
+	}
+	return System.nanoTime() - start;
+}
+
+private static void report(String name, double time) {
+	System.out.println(name + ": " + String.format("%.1f", time) + " ns per change");
+}
+}
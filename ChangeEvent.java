@@ -0,0 +1,109 @@
+package connections;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of events describing a change to a road or location of a network.
+ *
+ * Each event has the kind of the change, the road or location that changed, the
+ * direction of the change for changes that concern one direction of a road, the version
+ * of the road after the change, and a sequence number giving the order in which the
+ * events of a network were published.
+ */
+public final class ChangeEvent {
+
+/**
+ * An enumeration of the kinds of changes.
+ */
+public static enum Kind {
+	ROAD_CREATED, LENGTH, SPEED_LIMIT, AVERAGE_SPEED, DELAY, BLOCKAGE, TRAVEL_TIME_PROFILE,
+	IDENTIFICATION, DIRECTION, ROAD_TERMINATED, LOCATION_TERMINATED;
+
+	/**
+	 * Check whether changes of this kind concern one direction of a road.
+	 */
+	public boolean isDirectional() {
+		return this == DELAY || this == BLOCKAGE || this == TRAVEL_TIME_PROFILE;
+	}
+}
+
+/**
+ * Initialize this new event with the given kind, road, location, direction and version.
+ */
+ChangeEvent(Kind kind, Road road, Location location, boolean direction, long version) {
+	this.kind = kind;
+	this.road = road;
+	this.location = location;
+	this.direction = direction;
+	this.version = version;
+}
+
+private final Kind kind;
+private final Road road;
+private final Location location;
+private final boolean direction;
+private final long version;
+
+/**
+ * Variable registering the sequence number of this event, set when it is published.
+ */
+private long sequence = -1;
+
+@Basic @Immutable
+public Kind getKind() {
+	return this.kind;
+}
+
+/**
+ * Return the road that changed, or null if a location changed.
+ */
+@Basic @Immutable
+public Road getRoad() {
+	return this.road;
+}
+
+/**
+ * Return the location that changed, or null if a road changed.
+ */
+@Basic @Immutable
+public Location getLocation() {
+	return this.location;
+}
+
+/**
+ * Return the direction of the change, which is only meaningful if the kind of the
+ * change is directional.
+ */
+@Basic @Immutable
+public boolean getDirection() {
+	return this.direction;
+}
+
+/**
+ * Return the version of the road after the change, or 0 if a location changed.
+ */
+@Basic @Immutable
+public long getVersion() {
+	return this.version;
+}
+
+/**
+ * Return the sequence number of this event among the events published by the change
+ * bus of its network.
+ */
+@Basic
+public long getSequence() {
+	return this.sequence;
+}
+
+void setSequence(long sequence) {
+	this.sequence = sequence;
+}
+
+@Override
+public String toString() {
+	return this.kind + " " + (this.road != null ? this.road.getIdentification() : this.location.getAddress())
+			+ (this.kind.isDirectional() ? (this.direction ? " forward" : " backward") : "") + " v" + this.version
+			+ " #" + this.sequence;
+}
+}
@@ -0,0 +1,13 @@
+package connections;
+
+/**
+ * An interface of listeners to the changes to the roads and locations of a network.
+ */
+@FunctionalInterface
+public interface ChangeListener {
+
+/**
+ * Handle the given change.
+ */
+void changed(ChangeEvent event);
+}
@@ -0,0 +1,483 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers answering queries on a contraction hierarchy of a network.
+ *
+ * During preprocessing, the locations of the network are contracted one by one, in
+ * order of importance. Contracting a location adds a shortcut between two of its
+ * neighbours whenever the road over that location is the only fastest connection
+ * between them. A query then only needs to search upwards in that order, from both
+ * ends, and the shortcuts of the route found are unpacked again into real roads.
+ *
+ * The travel times of the roads are read during preprocessing. Routes found
+ * afterwards do not reflect later changes to delays, blockages, lengths or speeds;
+ * a new router must be built for those.
+ */
+public class ContractionHierarchyRouter extends Router {
+
+/**
+ * Initialize this new router with a contraction hierarchy of all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public ContractionHierarchyRouter() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new router with a contraction hierarchy of the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ */
+public ContractionHierarchyRouter(Collection<Road> roads) {
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	for(Road road:roads) {
+		if(road.isTerminated() || road.endpoint1 == road.endpoint2) {
+			continue;
+		}
+		for(boolean direction:new boolean[] {true, false}) {
+			if(road.isOpenInDirection(direction)) {
+				this.addEdge(this.index.getIndexOf(getOrigin(road, direction)),
+						this.index.getIndexOf(getDestination(road, direction)),
+						road.getTravelTime(direction), road, -1, -1);
+			}
+		}
+	}
+	this.originalEdgeCount = this.edgeCount;
+	this.contract(size);
+	this.buildSearchGraphs(size);
+	this.forwardTimes = new double[size];
+	this.backwardTimes = new double[size];
+	this.forwardParents = new int[size];
+	this.backwardParents = new int[size];
+	Arrays.fill(this.forwardTimes, Double.POSITIVE_INFINITY);
+	Arrays.fill(this.backwardTimes, Double.POSITIVE_INFINITY);
+	this.forwardHeap = new IndexedHeap(size);
+	this.backwardHeap = new IndexedHeap(size);
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Arrays registering, for each road direction and each shortcut, the index of the
+ * location it leaves from, the index of the location it arrives at, and its travel time.
+ */
+private int[] edgeTails = new int[16];
+private int[] edgeHeads = new int[16];
+private double[] edgeTimes = new double[16];
+
+/**
+ * Array registering the road driven by each edge, or null for a shortcut.
+ */
+private Road[] edgeRoads = new Road[16];
+
+/**
+ * Arrays registering the two consecutive edges each shortcut replaces, or -1 for a road.
+ */
+private int[] edgeFirsts = new int[16];
+private int[] edgeSeconds = new int[16];
+
+/**
+ * Variable registering the number of edges, shortcuts included.
+ */
+private int edgeCount = 0;
+
+/**
+ * Variable registering the number of edges that are road directions.
+ */
+private final int originalEdgeCount;
+
+/**
+ * Array registering the position of each location in the contraction order.
+ */
+private int[] ranks;
+
+/**
+ * Arrays registering, in compressed rows per location, the edges leaving it
+ * upwards and the edges arriving at it from above.
+ */
+private int[] upwardOffsets;
+private int[] upwardEdges;
+private int[] downwardOffsets;
+private int[] downwardEdges;
+
+/**
+ * Arrays and heaps holding the state of the forward and backward search of a query.
+ */
+private final double[] forwardTimes;
+private final double[] backwardTimes;
+private final int[] forwardParents;
+private final int[] backwardParents;
+private final IndexedHeap forwardHeap;
+private final IndexedHeap backwardHeap;
+private final ArrayList<Integer> touched = new ArrayList<Integer>();
+
+/**
+ * Return the number of shortcuts added during preprocessing.
+ */
+@Basic
+public int getShortcutCount() {
+	return this.edgeCount - this.originalEdgeCount;
+}
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Add an edge with the given characteristics and return its number.
+ */
+private int addEdge(int tail, int head, double time, Road road, int first, int second) {
+	if(this.edgeCount == this.edgeTails.length) {
+		int capacity = 2*this.edgeCount;
+		this.edgeTails = Arrays.copyOf(this.edgeTails, capacity);
+		this.edgeHeads = Arrays.copyOf(this.edgeHeads, capacity);
+		this.edgeTimes = Arrays.copyOf(this.edgeTimes, capacity);
+		this.edgeRoads = Arrays.copyOf(this.edgeRoads, capacity);
+		this.edgeFirsts = Arrays.copyOf(this.edgeFirsts, capacity);
+		this.edgeSeconds = Arrays.copyOf(this.edgeSeconds, capacity);
+	}
+	this.edgeTails[this.edgeCount] = tail;
+	this.edgeHeads[this.edgeCount] = head;
+	this.edgeTimes[this.edgeCount] = time;
+	this.edgeRoads[this.edgeCount] = road;
+	this.edgeFirsts[this.edgeCount] = first;
+	this.edgeSeconds[this.edgeCount] = second;
+	return this.edgeCount++;
+}
+
+//*************************************************************************************//
+// PREPROCESSING
+
+/**
+ * Variables used while contracting: the edges leaving and arriving at each location,
+ * whether each location is contracted, and the number of contracted neighbours.
+ */
+private ArrayList<ArrayList<Integer>> outgoing;
+private ArrayList<ArrayList<Integer>> incoming;
+private boolean[] contracted;
+private int[] contractedNeighbours;
+
+/**
+ * Variables holding the state of the witness searches while contracting.
+ */
+private double[] witnessTimes;
+private IndexedHeap witnessHeap;
+private final ArrayList<Integer> witnessTouched = new ArrayList<Integer>();
+
+/**
+ * The maximum number of locations a witness search may settle. A search that
+ * gives up only causes an unneeded shortcut, never a wrong route.
+ */
+private static final int MAX_WITNESS_SETTLED = 500;
+
+/**
+ * Contract all locations, cheapest first, re-evaluating the cost of a location
+ * each time it comes up, and number them in that order.
+ */
+private void contract(int size) {
+	this.outgoing = new ArrayList<ArrayList<Integer>>();
+	this.incoming = new ArrayList<ArrayList<Integer>>();
+	for(int i = 0;i<size;i++) {
+		this.outgoing.add(new ArrayList<Integer>());
+		this.incoming.add(new ArrayList<Integer>());
+	}
+	for(int e = 0;e<this.edgeCount;e++) {
+		this.outgoing.get(this.edgeTails[e]).add(e);
+		this.incoming.get(this.edgeHeads[e]).add(e);
+	}
+	this.contracted = new boolean[size];
+	this.contractedNeighbours = new int[size];
+	this.ranks = new int[size];
+	this.witnessTimes = new double[size];
+	Arrays.fill(this.witnessTimes, Double.POSITIVE_INFINITY);
+	this.witnessHeap = new IndexedHeap(size);
+	IndexedHeap order = new IndexedHeap(size);
+	for(int node = 0;node<size;node++) {
+		order.push(node, this.getContractionCost(node));
+	}
+	int rank = 0;
+	while(!order.isEmpty()) {
+		int node = order.poll();
+		double cost = this.getContractionCost(node);
+		if(!order.isEmpty() && cost > order.peekKey()) {
+			order.push(node, cost);
+			continue;
+		}
+		this.contractNode(node, false);
+		this.contracted[node] = true;
+		this.ranks[node] = rank++;
+		for(int e:this.outgoing.get(node)) {
+			this.contractedNeighbours[this.edgeHeads[e]]++;
+		}
+		for(int e:this.incoming.get(node)) {
+			this.contractedNeighbours[this.edgeTails[e]]++;
+		}
+	}
+	this.outgoing = null;
+	this.incoming = null;
+	this.witnessTimes = null;
+	this.witnessHeap = null;
+}
+
+/**
+ * Return the cost of contracting the given location now: the number of shortcuts
+ * it needs minus the number of edges it removes, plus its contracted neighbours.
+ */
+private double getContractionCost(int node) {
+	int removed = 0;
+	for(int e:this.outgoing.get(node)) {
+		if(!this.contracted[this.edgeHeads[e]]) {
+			removed++;
+		}
+	}
+	for(int e:this.incoming.get(node)) {
+		if(!this.contracted[this.edgeTails[e]]) {
+			removed++;
+		}
+	}
+	return this.contractNode(node, true) - removed + this.contractedNeighbours[node];
+}
+
+/**
+ * Determine the shortcuts needed to contract the given location, and add them unless
+ * only their number is asked for.
+ *
+ * @return The number of shortcuts needed.
+ */
+private int contractNode(int node, boolean simulate) {
+	int shortcuts = 0;
+	for(int in:this.incoming.get(node)) {
+		int tail = this.edgeTails[in];
+		if(this.contracted[tail] || tail == node) {
+			continue;
+		}
+		double limit = 0;
+		for(int out:this.outgoing.get(node)) {
+			int head = this.edgeHeads[out];
+			if(!this.contracted[head] && head != node && head != tail) {
+				limit = Math.max(limit, this.edgeTimes[in] + this.edgeTimes[out]);
+			}
+		}
+		if(limit == 0) {
+			continue;
+		}
+		this.searchWitnesses(tail, node, limit);
+		for(int out:this.outgoing.get(node)) {
+			int head = this.edgeHeads[out];
+			if(this.contracted[head] || head == node || head == tail) {
+				continue;
+			}
+			double time = this.edgeTimes[in] + this.edgeTimes[out];
+			if(this.witnessTimes[head] > time) {
+				shortcuts++;
+				if(!simulate) {
+					int shortcut = this.addEdge(tail, head, time, null, in, out);
+					this.outgoing.get(tail).add(shortcut);
+					this.incoming.get(head).add(shortcut);
+					if(this.witnessTimes[head] == Double.POSITIVE_INFINITY) {
+						this.witnessTouched.add(head);
+					}
+					this.witnessTimes[head] = time;
+				}
+			}
+		}
+		this.clearWitnesses();
+	}
+	return shortcuts;
+}
+
+/**
+ * Search the fastest connections from the given location that avoid the given
+ * location being contracted, up to the given travel time.
+ */
+private void searchWitnesses(int source, int avoided, double limit) {
+	this.witnessTimes[source] = 0;
+	this.witnessTouched.add(source);
+	this.witnessHeap.push(source, 0);
+	int settled = 0;
+	while(!this.witnessHeap.isEmpty() && settled < MAX_WITNESS_SETTLED) {
+		double time = this.witnessHeap.peekKey();
+		if(time > limit) {
+			break;
+		}
+		int node = this.witnessHeap.poll();
+		settled++;
+		for(int e:this.outgoing.get(node)) {
+			int head = this.edgeHeads[e];
+			if(head == avoided || this.contracted[head]) {
+				continue;
+			}
+			double next = time + this.edgeTimes[e];
+			if(next < this.witnessTimes[head]) {
+				if(this.witnessTimes[head] == Double.POSITIVE_INFINITY) {
+					this.witnessTouched.add(head);
+				}
+				this.witnessTimes[head] = next;
+				this.witnessHeap.push(head, next);
+			}
+		}
+	}
+	this.witnessHeap.clear();
+}
+
+private void clearWitnesses() {
+	for(int node:this.witnessTouched) {
+		this.witnessTimes[node] = Double.POSITIVE_INFINITY;
+	}
+	this.witnessTouched.clear();
+}
+
+/**
+ * Store the edges leading upwards in the contraction order, in compressed rows.
+ */
+private void buildSearchGraphs(int size) {
+	this.upwardOffsets = new int[size + 1];
+	this.downwardOffsets = new int[size + 1];
+	for(int e = 0;e<this.edgeCount;e++) {
+		if(this.ranks[this.edgeTails[e]] < this.ranks[this.edgeHeads[e]]) {
+			this.upwardOffsets[this.edgeTails[e] + 1]++;
+		}
+		else {
+			this.downwardOffsets[this.edgeHeads[e] + 1]++;
+		}
+	}
+	for(int i = 0;i<size;i++) {
+		this.upwardOffsets[i + 1] += this.upwardOffsets[i];
+		this.downwardOffsets[i + 1] += this.downwardOffsets[i];
+	}
+	this.upwardEdges = new int[this.upwardOffsets[size]];
+	this.downwardEdges = new int[this.downwardOffsets[size]];
+	int[] upwardFill = Arrays.copyOf(this.upwardOffsets, size);
+	int[] downwardFill = Arrays.copyOf(this.downwardOffsets, size);
+	for(int e = 0;e<this.edgeCount;e++) {
+		if(this.ranks[this.edgeTails[e]] < this.ranks[this.edgeHeads[e]]) {
+			this.upwardEdges[upwardFill[this.edgeTails[e]]++] = e;
+		}
+		else {
+			this.downwardEdges[downwardFill[this.edgeHeads[e]]++] = e;
+		}
+	}
+}
+
+//*************************************************************************************//
+// QUERIES
+
+/**
+ * Return the fastest route from the given start location to the given end location,
+ * as it was at the time of preprocessing.
+ *   Both searches only follow edges towards locations contracted later, and stop
+ *   once neither can still improve the best meeting location found.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(from == to) {
+		this.setLastSettledCount(0);
+		return this.buildRoute(from, new ArrayList<Road>());
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	this.reach(this.forwardTimes, this.forwardParents, this.forwardHeap, source, 0, -1);
+	this.reach(this.backwardTimes, this.backwardParents, this.backwardHeap, target, 0, -1);
+	double best = Double.POSITIVE_INFINITY;
+	int meeting = -1;
+	int settled = 0;
+	while(Math.min(this.forwardHeap.peekKey(), this.backwardHeap.peekKey()) < best) {
+		boolean forward = this.forwardHeap.peekKey() <= this.backwardHeap.peekKey();
+		IndexedHeap heap = forward ? this.forwardHeap : this.backwardHeap;
+		double[] times = forward ? this.forwardTimes : this.backwardTimes;
+		double[] otherTimes = forward ? this.backwardTimes : this.forwardTimes;
+		int[] parents = forward ? this.forwardParents : this.backwardParents;
+		int[] offsets = forward ? this.upwardOffsets : this.downwardOffsets;
+		int[] edges = forward ? this.upwardEdges : this.downwardEdges;
+		int node = heap.poll();
+		settled++;
+		if(times[node] + otherTimes[node] < best) {
+			best = times[node] + otherTimes[node];
+			meeting = node;
+		}
+		for(int i = offsets[node];i<offsets[node + 1];i++) {
+			int e = edges[i];
+			int next = forward ? this.edgeHeads[e] : this.edgeTails[e];
+			this.reach(times, parents, heap, next, times[node] + this.edgeTimes[e], e);
+		}
+	}
+	this.setLastSettledCount(settled);
+	Route route = null;
+	if(meeting >= 0) {
+		ArrayList<Road> roads = new ArrayList<Road>();
+		ArrayList<Integer> path = new ArrayList<Integer>();
+		for(int node = meeting;this.forwardParents[node] >= 0;node = this.edgeTails[this.forwardParents[node]]) {
+			path.add(0, this.forwardParents[node]);
+		}
+		for(int node = meeting;this.backwardParents[node] >= 0;node = this.edgeHeads[this.backwardParents[node]]) {
+			path.add(this.backwardParents[node]);
+		}
+		for(int e:path) {
+			this.unpack(e, roads);
+		}
+		route = this.buildRoute(from, roads);
+	}
+	else {
+		this.setNoRouteFound();
+	}
+	this.forwardHeap.clear();
+	this.backwardHeap.clear();
+	for(int node:this.touched) {
+		this.forwardTimes[node] = Double.POSITIVE_INFINITY;
+		this.backwardTimes[node] = Double.POSITIVE_INFINITY;
+	}
+	this.touched.clear();
+	return route;
+}
+
+/**
+ * Register that the given location is reached at the given travel time over the
+ * given edge, if that is faster than before.
+ */
+private void reach(double[] times, int[] parents, IndexedHeap heap, int node, double time, int edge) {
+	if(time < times[node]) {
+		if(this.forwardTimes[node] == Double.POSITIVE_INFINITY && this.backwardTimes[node] == Double.POSITIVE_INFINITY) {
+			this.touched.add(node);
+		}
+		times[node] = time;
+		parents[node] = edge;
+		heap.push(node, time);
+	}
+}
+
+/**
+ * Add the roads driven by the given edge to the given list, in order.
+ */
+private void unpack(int edge, ArrayList<Road> roads) {
+	if(this.edgeRoads[edge] != null) {
+		roads.add(this.edgeRoads[edge]);
+	}
+	else {
+		this.unpack(this.edgeFirsts[edge], roads);
+		this.unpack(this.edgeSeconds[edge], roads);
+	}
+}
+}
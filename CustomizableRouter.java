@@ -0,0 +1,607 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers using a multilevel partition of a network whose travel times
+ * can be refreshed quickly.
+ *
+ * Preprocessing only looks at the topology of the network: the locations are split
+ * into nested cells by their coordinates, and the locations at the border of each cell
+ * are determined. Customization then computes, for each cell and each pair of its
+ * border locations, the fastest travel time through the cell, using the current delays
+ * and blockages. Cells of the same level are customized in parallel.
+ *
+ * A query only walks the roads of the cells containing its start and end location,
+ * and jumps across all other cells over their customized travel times.
+ *
+ * Routes reflect the network as it was at the last customization. After changing
+ * delays or blockages, or reversing alternating roads, customize must be invoked
+ * again; roads added after preprocessing require a new router.
+ */
+public class CustomizableRouter extends Router {
+
+/**
+ * Initialize this new router for all roads of the default network, with cells of
+ * at most 32 locations nested in cells of at most 256 locations.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads(), 32, 256)
+ */
+public CustomizableRouter() {
+	this(RoadNetwork.getDefault().getRoads(), 32, 256);
+}
+
+/**
+ * Initialize this new router for the given roads, with cells of at most the given
+ * numbers of locations on each level, and customize it.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ * @param  cellSizes
+ *         The maximum number of locations in a cell, from the lowest level up.
+ * @throws IllegalArgumentException
+ *         No cell sizes are given, or they are not positive and strictly increasing.
+ *       | !areValidCellSizes(cellSizes)
+ * @effect | customize()
+ */
+public CustomizableRouter(Collection<Road> roads, int... cellSizes) throws IllegalArgumentException {
+	if(!areValidCellSizes(cellSizes)) {
+		throw new IllegalArgumentException();
+	}
+	this.cellSizes = cellSizes.clone();
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	this.buildEdges(roads, size);
+	this.partition(size);
+	this.findBoundaries(size);
+	this.times = new double[size];
+	Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+	this.parentNodes = new int[size];
+	this.parentEdges = new int[size];
+	this.parentLevels = new int[size];
+	this.heap = new IndexedHeap(size);
+	this.customize();
+}
+
+/**
+ * Check whether the given cell sizes are valid cell sizes for any router.
+ *
+ * @return | result == cellSizes.length > 0 && cellSizes[0] > 0 &&
+ *         |   for each i in 1..cellSizes.length-1: cellSizes[i] > cellSizes[i-1]
+ */
+public static boolean areValidCellSizes(int... cellSizes) {
+	if(cellSizes == null || cellSizes.length == 0 || cellSizes[0] <= 0) {
+		return false;
+	}
+	for(int i = 1;i<cellSizes.length;i++) {
+		if(cellSizes[i] <= cellSizes[i-1]) {
+			return false;
+		}
+	}
+	return true;
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Variable registering the maximum number of locations of a cell on each level.
+ */
+private final int[] cellSizes;
+
+/**
+ * Arrays registering, in compressed rows per location, the road directions leaving it:
+ * their first index per location, the location they leave from and arrive at, and their road.
+ */
+private int[] edgeOffsets;
+private int[] edgeTails;
+private int[] edgeHeads;
+private Road[] edgeRoads;
+
+/**
+ * Array registering the customized travel time of each road direction.
+ */
+private double[] edgeTimes;
+
+/**
+ * Map registering the road directions of each road.
+ */
+private final HashMap<Road,int[]> roadEdges = new HashMap<Road,int[]>();
+
+/**
+ * Arrays registering the cell of each location on each level, and the number of cells
+ * and the enclosing cell of each cell on each level.
+ */
+private int[][] cells;
+private int[] cellCounts;
+private int[][] parentCells;
+
+/**
+ * Arrays registering, per level and cell, its border locations, and per level and
+ * location, its position among the border locations of its cell or -1.
+ */
+private int[][][] boundaries;
+private int[][] boundaryPositions;
+
+/**
+ * Array registering, per level and cell, the locations searched while customizing it.
+ */
+private int[][][] cellNodes;
+
+/**
+ * Array registering, per level and cell, the fastest travel time through the cell
+ * between each pair of its border locations, row by row.
+ */
+private double[][][] cliques;
+
+/**
+ * Arrays and heap holding the state of a query.
+ */
+private final double[] times;
+private final int[] parentNodes;
+private final int[] parentEdges;
+private final int[] parentLevels;
+private final IndexedHeap heap;
+private final ArrayList<Integer> touched = new ArrayList<Integer>();
+
+/**
+ * Return the number of levels of cells of this router.
+ */
+@Basic @Immutable
+public int getLevelCount() {
+	return this.cellSizes.length;
+}
+
+/**
+ * Return the number of cells on the given level.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | level < 0 || level >= getLevelCount()
+ */
+public int getCellCount(int level) throws IndexOutOfBoundsException {
+	return this.cellCounts[level];
+}
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+//*************************************************************************************//
+// PREPROCESSING
+
+/**
+ * Store both directions of each road in compressed rows. Directions that cannot be
+ * driven now are stored as well, since blockages and alternating roads change.
+ */
+private void buildEdges(Collection<Road> roads, int size) {
+	ArrayList<Road> list = new ArrayList<Road>();
+	for(Road road:roads) {
+		if(!road.isTerminated() && road.endpoint1 != road.endpoint2) {
+			list.add(road);
+		}
+	}
+	this.edgeOffsets = new int[size + 1];
+	for(Road road:list) {
+		this.edgeOffsets[this.index.getIndexOf(road.endpoint1) + 1]++;
+		this.edgeOffsets[this.index.getIndexOf(road.endpoint2) + 1]++;
+	}
+	for(int i = 0;i<size;i++) {
+		this.edgeOffsets[i + 1] += this.edgeOffsets[i];
+	}
+	this.edgeTails = new int[2*list.size()];
+	this.edgeHeads = new int[2*list.size()];
+	this.edgeRoads = new Road[2*list.size()];
+	this.edgeTimes = new double[2*list.size()];
+	int[] fill = Arrays.copyOf(this.edgeOffsets, size);
+	for(Road road:list) {
+		int first = this.index.getIndexOf(road.endpoint1);
+		int second = this.index.getIndexOf(road.endpoint2);
+		int forward = fill[first]++;
+		int backward = fill[second]++;
+		this.edgeTails[forward] = first;
+		this.edgeHeads[forward] = second;
+		this.edgeTails[backward] = second;
+		this.edgeHeads[backward] = first;
+		this.edgeRoads[forward] = road;
+		this.edgeRoads[backward] = road;
+		this.roadEdges.put(road, new int[] {forward, backward});
+	}
+}
+
+/**
+ * Split the locations into nested cells, by recursively halving them along the
+ * coordinate in which they are spread most.
+ */
+private void partition(int size) {
+	int levels = this.cellSizes.length;
+	this.cells = new int[levels][size];
+	this.cellCounts = new int[levels];
+	double[][] coordinates = new double[size][];
+	Integer[] nodes = new Integer[size];
+	for(int i = 0;i<size;i++) {
+		coordinates[i] = this.index.getLocationAt(i).getCoordinates();
+		nodes[i] = i;
+	}
+	this.split(nodes, 0, size, levels - 1, coordinates);
+	this.parentCells = new int[levels][];
+	for(int level = 0;level<levels - 1;level++) {
+		this.parentCells[level] = new int[this.cellCounts[level]];
+		for(int node = 0;node<size;node++) {
+			this.parentCells[level][this.cells[level][node]] = this.cells[level + 1][node];
+		}
+	}
+}
+
+private void split(Integer[] nodes, int from, int to, int level, double[][] coordinates) {
+	if(to - from <= this.cellSizes[level]) {
+		int cell = this.cellCounts[level]++;
+		for(int i = from;i<to;i++) {
+			this.cells[level][nodes[i]] = cell;
+		}
+		if(level > 0) {
+			this.split(nodes, from, to, level - 1, coordinates);
+		}
+		return;
+	}
+	double[] minimum = new double[] {Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY};
+	double[] maximum = new double[] {Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY};
+	for(int i = from;i<to;i++) {
+		for(int axis = 0;axis<2;axis++) {
+			minimum[axis] = Math.min(minimum[axis], coordinates[nodes[i]][axis]);
+			maximum[axis] = Math.max(maximum[axis], coordinates[nodes[i]][axis]);
+		}
+	}
+	int axis = maximum[0] - minimum[0] >= maximum[1] - minimum[1] ? 0 : 1;
+	Arrays.sort(nodes, from, to, Comparator.comparingDouble((Integer node) -> coordinates[node][axis]));
+	int middle = (from + to) >>> 1;
+	this.split(nodes, from, middle, level, coordinates);
+	this.split(nodes, middle, to, level, coordinates);
+}
+
+/**
+ * Determine the border locations of each cell: the locations with a road direction
+ * leaving or entering their cell. Also determine which locations customizing each
+ * cell must search over.
+ */
+private void findBoundaries(int size) {
+	int levels = this.cellSizes.length;
+	this.boundaries = new int[levels][][];
+	this.boundaryPositions = new int[levels][size];
+	this.cellNodes = new int[levels][][];
+	this.cliques = new double[levels][][];
+	for(int level = 0;level<levels;level++) {
+		int[] levelCells = this.cells[level];
+		boolean[] border = new boolean[size];
+		for(int e = 0;e<this.edgeTails.length;e++) {
+			if(levelCells[this.edgeTails[e]] != levelCells[this.edgeHeads[e]]) {
+				border[this.edgeTails[e]] = true;
+				border[this.edgeHeads[e]] = true;
+			}
+		}
+		ArrayList<ArrayList<Integer>> borderLists = new ArrayList<ArrayList<Integer>>();
+		ArrayList<ArrayList<Integer>> nodeLists = new ArrayList<ArrayList<Integer>>();
+		for(int cell = 0;cell<this.cellCounts[level];cell++) {
+			borderLists.add(new ArrayList<Integer>());
+			nodeLists.add(new ArrayList<Integer>());
+		}
+		Arrays.fill(this.boundaryPositions[level], -1);
+		for(int node = 0;node<size;node++) {
+			if(border[node]) {
+				this.boundaryPositions[level][node] = borderLists.get(levelCells[node]).size();
+				borderLists.get(levelCells[node]).add(node);
+			}
+			if(level == 0 || this.boundaryPositions[level - 1][node] >= 0) {
+				nodeLists.get(levelCells[node]).add(node);
+			}
+		}
+		this.boundaries[level] = new int[this.cellCounts[level]][];
+		this.cellNodes[level] = new int[this.cellCounts[level]][];
+		this.cliques[level] = new double[this.cellCounts[level]][];
+		for(int cell = 0;cell<this.cellCounts[level];cell++) {
+			this.boundaries[level][cell] = toArray(borderLists.get(cell));
+			this.cellNodes[level][cell] = toArray(nodeLists.get(cell));
+		}
+	}
+}
+
+private static int[] toArray(ArrayList<Integer> list) {
+	int[] array = new int[list.size()];
+	for(int i = 0;i<array.length;i++) {
+		array[i] = list.get(i);
+	}
+	return array;
+}
+
+//*************************************************************************************//
+// CUSTOMIZATION
+
+/**
+ * Read the current travel time of every road direction, and recompute the travel
+ * times through all cells, level by level, customizing the cells of a level in parallel.
+ */
+public void customize() {
+	for(int e = 0;e<this.edgeTimes.length;e++) {
+		this.edgeTimes[e] = this.getCurrentTime(e);
+	}
+	for(int level = 0;level<this.cellSizes.length;level++) {
+		final int current = level;
+		IntStream.range(0, this.cellCounts[level]).parallel().forEach(cell -> this.customizeCell(current, cell));
+	}
+}
+
+/**
+ * Read the current travel time of the given roads, and recompute the travel times
+ * through the cells containing them and the cells enclosing those, in parallel.
+ *   Roads that were not part of the network at preprocessing are ignored.
+ *
+ * @param  changedRoads
+ *         The roads whose delay, blockage, speed, length or direction changed.
+ */
+public void customize(Collection<Road> changedRoads) {
+	int levels = this.cellSizes.length;
+	boolean[][] dirty = new boolean[levels][];
+	for(int level = 0;level<levels;level++) {
+		dirty[level] = new boolean[this.cellCounts[level]];
+	}
+	for(Road road:changedRoads) {
+		int[] edges = this.roadEdges.get(road);
+		if(edges == null) {
+			continue;
+		}
+		for(int e:edges) {
+			this.edgeTimes[e] = this.getCurrentTime(e);
+			for(int level = 0;level<levels;level++) {
+				if(this.cells[level][this.edgeTails[e]] == this.cells[level][this.edgeHeads[e]]) {
+					dirty[level][this.cells[level][this.edgeTails[e]]] = true;
+				}
+			}
+		}
+	}
+	for(int level = 0;level<levels;level++) {
+		final int current = level;
+		IntStream.range(0, this.cellCounts[level]).filter(cell -> dirty[current][cell]).parallel()
+				.forEach(cell -> this.customizeCell(current, cell));
+		if(level + 1 < levels) {
+			for(int cell = 0;cell<this.cellCounts[level];cell++) {
+				if(dirty[level][cell]) {
+					dirty[level + 1][this.parentCells[level][cell]] = true;
+				}
+			}
+		}
+	}
+}
+
+/**
+ * Return the current travel time of the given road direction, or positive infinity
+ * if it cannot be driven now.
+ */
+private double getCurrentTime(int edge) {
+	return getTravelTimeFrom(this.edgeRoads[edge], this.index.getLocationAt(this.edgeTails[edge]));
+}
+
+/**
+ * Compute the fastest travel times through the given cell between each pair of its
+ * border locations. On the lowest level the roads inside the cell are searched; on
+ * higher levels the customized cells one level down and the roads between them.
+ */
+private void customizeCell(int level, int cell) {
+	int[] nodes = this.cellNodes[level][cell];
+	int[] boundary = this.boundaries[level][cell];
+	HashMap<Integer,Integer> local = new HashMap<Integer,Integer>();
+	for(int i = 0;i<nodes.length;i++) {
+		local.put(nodes[i], i);
+	}
+	double[] cellTimes = new double[nodes.length];
+	IndexedHeap cellHeap = new IndexedHeap(nodes.length);
+	double[] clique = new double[boundary.length*boundary.length];
+	for(int i = 0;i<boundary.length;i++) {
+		Arrays.fill(cellTimes, Double.POSITIVE_INFINITY);
+		int source = local.get(boundary[i]);
+		cellTimes[source] = 0;
+		cellHeap.push(source, 0);
+		while(!cellHeap.isEmpty()) {
+			int node = cellHeap.poll();
+			int global = nodes[node];
+			if(level > 0) {
+				int subcell = this.cells[level - 1][global];
+				int[] subBoundary = this.boundaries[level - 1][subcell];
+				double[] subClique = this.cliques[level - 1][subcell];
+				int row = this.boundaryPositions[level - 1][global]*subBoundary.length;
+				for(int j = 0;j<subBoundary.length;j++) {
+					int next = local.get(subBoundary[j]);
+					double time = cellTimes[node] + subClique[row + j];
+					if(time < cellTimes[next]) {
+						cellTimes[next] = time;
+						cellHeap.push(next, time);
+					}
+				}
+			}
+			for(int e = this.edgeOffsets[global];e<this.edgeOffsets[global + 1];e++) {
+				int head = this.edgeHeads[e];
+				if(this.cells[level][head] != cell || (level > 0 && this.cells[level - 1][head] == this.cells[level - 1][global])) {
+					continue;
+				}
+				int next = local.get(head);
+				double time = cellTimes[node] + this.edgeTimes[e];
+				if(time < cellTimes[next]) {
+					cellTimes[next] = time;
+					cellHeap.push(next, time);
+				}
+			}
+		}
+		for(int j = 0;j<boundary.length;j++) {
+			clique[i*boundary.length + j] = cellTimes[local.get(boundary[j])];
+		}
+	}
+	this.cliques[level][cell] = clique;
+}
+
+//*************************************************************************************//
+// QUERIES
+
+/**
+ * Return the fastest route from the given start location to the given end location,
+ * as it was at the last customization.
+ *   Each location reached is expanded on the highest level on which its cell contains
+ *   neither the start nor the end location: over the travel times through that cell
+ *   and the roads leaving it. Locations in the lowest cells of the start and end
+ *   location are expanded over all their roads.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(from == to) {
+		this.setLastSettledCount(0);
+		return this.buildRoute(from, new ArrayList<Road>());
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	this.reach(source, 0, -1, -1, -1);
+	int settled = 0;
+	boolean found = false;
+	while(!this.heap.isEmpty()) {
+		int node = this.heap.poll();
+		settled++;
+		if(node == target) {
+			found = true;
+			break;
+		}
+		int level = this.getQueryLevel(node, source, target);
+		if(level >= 0) {
+			int cell = this.cells[level][node];
+			int[] boundary = this.boundaries[level][cell];
+			double[] clique = this.cliques[level][cell];
+			int row = this.boundaryPositions[level][node]*boundary.length;
+			for(int j = 0;j<boundary.length;j++) {
+				this.reach(boundary[j], this.times[node] + clique[row + j], node, -1, level);
+			}
+		}
+		for(int e = this.edgeOffsets[node];e<this.edgeOffsets[node + 1];e++) {
+			int head = this.edgeHeads[e];
+			if(level < 0 || this.cells[level][head] != this.cells[level][node]) {
+				this.reach(head, this.times[node] + this.edgeTimes[e], node, e, -1);
+			}
+		}
+	}
+	this.setLastSettledCount(settled);
+	Route route = null;
+	if(found) {
+		ArrayList<Road> roads = new ArrayList<Road>();
+		for(int node = target;node != source;node = this.parentNodes[node]) {
+			if(this.parentEdges[node] >= 0) {
+				roads.add(this.edgeRoads[this.parentEdges[node]]);
+			}
+			else {
+				ArrayList<Road> inside = this.searchInsideCell(this.parentNodes[node], node, this.parentLevels[node]);
+				for(int i = inside.size() - 1;i>=0;i--) {
+					roads.add(inside.get(i));
+				}
+			}
+		}
+		Collections.reverse(roads);
+		route = this.buildRoute(from, roads);
+	}
+	else {
+		this.setNoRouteFound();
+	}
+	this.heap.clear();
+	for(int node:this.touched) {
+		this.times[node] = Double.POSITIVE_INFINITY;
+	}
+	this.touched.clear();
+	return route;
+}
+
+/**
+ * Return the highest level on which the cell of the given location contains neither
+ * the given start nor the given end location, or -1 if there is none.
+ */
+private int getQueryLevel(int node, int source, int target) {
+	for(int level = this.cellSizes.length - 1;level>=0;level--) {
+		int cell = this.cells[level][node];
+		if(cell != this.cells[level][source] && cell != this.cells[level][target]) {
+			return level;
+		}
+	}
+	return -1;
+}
+
+/**
+ * Register that the given location is reached at the given travel time from the given
+ * location, over the given road direction or through its cell on the given level.
+ */
+private void reach(int node, double time, int parent, int edge, int level) {
+	if(time < this.times[node]) {
+		if(this.times[node] == Double.POSITIVE_INFINITY) {
+			this.touched.add(node);
+		}
+		this.times[node] = time;
+		this.parentNodes[node] = parent;
+		this.parentEdges[node] = edge;
+		this.parentLevels[node] = level;
+		this.heap.push(node, time);
+	}
+}
+
+/**
+ * Return the roads of the fastest connection between two border locations of the same
+ * cell on the given level, only driving roads inside that cell.
+ */
+private ArrayList<Road> searchInsideCell(int from, int to, int level) {
+	int cell = this.cells[level][from];
+	HashMap<Integer,Double> cellTimes = new HashMap<Integer,Double>();
+	HashMap<Integer,Integer> parents = new HashMap<Integer,Integer>();
+	PriorityQueue<double[]> queue = new PriorityQueue<double[]>(Comparator.comparingDouble((double[] entry) -> entry[0]));
+	cellTimes.put(from, 0.0);
+	queue.add(new double[] {0, from});
+	while(!queue.isEmpty()) {
+		double[] entry = queue.poll();
+		int node = (int) entry[1];
+		if(entry[0] > cellTimes.get(node)) {
+			continue;
+		}
+		if(node == to) {
+			break;
+		}
+		for(int e = this.edgeOffsets[node];e<this.edgeOffsets[node + 1];e++) {
+			int head = this.edgeHeads[e];
+			if(this.cells[level][head] != cell) {
+				continue;
+			}
+			double time = entry[0] + this.edgeTimes[e];
+			Double known = cellTimes.get(head);
+			if(known == null || time < known) {
+				cellTimes.put(head, time);
+				parents.put(head, e);
+				queue.add(new double[] {time, head});
+			}
+		}
+	}
+	ArrayList<Road> roads = new ArrayList<Road>();
+	for(int node = to;node != from;node = this.edgeTails[parents.get(node)]) {
+		roads.add(0, this.edgeRoads[parents.get(node)]);
+	}
+	return roads;
+}
+}
@@ -0,0 +1,69 @@
+package connections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.PriorityQueue;
+
+/**
+ * A class of routers computing the fastest route with Dijkstra's algorithm,
+ * walking the adjoining roads of each location it reaches.
+ */
+public class DijkstraRouter extends Router {
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *   Locations are settled in order of increasing travel time from the start location,
+ *   until the end location is settled.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	HashMap<Location,Double> times = new HashMap<Location,Double>();
+	HashMap<Location,Road> parents = new HashMap<Location,Road>();
+	HashSet<Location> settled = new HashSet<Location>();
+	PriorityQueue<QueueEntry> queue = new PriorityQueue<QueueEntry>();
+	times.put(from, 0.0);
+	queue.add(new QueueEntry(from, 0.0, this.getPotential(from, to)));
+	while(!queue.isEmpty()) {
+		QueueEntry entry = queue.poll();
+		if(!settled.add(entry.location)) {
+			continue;
+		}
+		if(entry.location == to) {
+			this.setLastSettledCount(settled.size());
+			return this.buildRoute(from, to, parents);
+		}
+		for(Road road:entry.location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == entry.location;
+			Location next = getDestination(road, direction);
+			if(next == entry.location || settled.contains(next) || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			double time = entry.time + road.getTravelTime(direction);
+			Double known = times.get(next);
+			if(known == null || time < known) {
+				times.put(next, time);
+				parents.put(next, road);
+				queue.add(new QueueEntry(next, time, time + this.getPotential(next, to)));
+			}
+		}
+	}
+	this.setLastSettledCount(settled.size());
+	this.setNoRouteFound();
+	return null;
+}
+
+/**
+ * Return a lower bound on the travel time from the given location to the given
+ * end location, used to direct the search towards the end location.
+ *   For each road that can be driven from a location u to a location v, the bound
+ *   of u may not exceed the travel time of that road plus the bound of v, or the
+ *   returned routes are no longer guaranteed to be the fastest.
+ *
+ * @return | result == 0
+ */
+protected double getPotential(Location location, Location to) {
+	return 0;
+}
+}
@@ -3,9 +3,15 @@ package facade;
 import java.util.Collection;
 
 import connections.AlternatingRoad;
+import connections.AlternativeRouter;
+import connections.BidirectionalRouter;
+import connections.TravelTimeMatrix;
+import connections.DijkstraRouter;
+import connections.IsochroneSearch;
 import connections.Location;
 import connections.OneWayRoad;
 import connections.Road;
+import connections.RoadNetwork;
 import connections.Route;
 import connections.TwoWayRoad;
 
@@ -493,4 +499,185 @@ public interface Facade {
 		}
 	}
 
+	/*******************
+	 * Routing methods *
+	 *******************/
+
+	/**
+	 * Return the fastest route from the given start location to the given end location,
+	 * or null if the end location cannot be reached.
+	 *   The travel time of a road is its length divided by its average speed, plus its
+	 *   delay in the direction it is driven in. Blocked roads are never used.
+	 */
+	default Route getFastestRoute(Location startLocation, Location endLocation) throws ModelException {
+		try {
+			return new DijkstraRouter().getFastestRoute(startLocation, endLocation);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return the fastest route from the given start location to the given end location,
+	 * or null if the end location cannot be reached, searching from both locations at once.
+	 *   The method returns a route with the same travel time as getFastestRoute.
+	 */
+	default Route getFastestRouteBidirectional(Location startLocation, Location endLocation) throws ModelException {
+		try {
+			return new BidirectionalRouter().getFastestRoute(startLocation, endLocation);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return at most the given number of alternative routes from the given start location
+	 * to the given end location, ranked by their travel time.
+	 *   No route visits a location twice, and each route shares at most 80% of its travel
+	 *   time with each faster route. The first route is a fastest route.
+	 */
+	default Route[] getAlternativeRoutes(Location startLocation, Location endLocation, int count) throws ModelException {
+		try {
+			return new AlternativeRouter().getAlternativeRoutes(startLocation, endLocation, count).toArray(new Route[0]);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return the fastest travel times from each of the given start locations to each of
+	 * the given end locations, as one array in row-major order.
+	 *   The travel time from startLocations[i] to endLocations[j] is at position
+	 *   i*endLocations.length + j, and is positive infinity if there is no route.
+	 */
+	default float[] getTravelTimeMatrix(Location[] startLocations, Location[] endLocations) throws ModelException {
+		try {
+			return new TravelTimeMatrix().getTravelTimes(startLocations, endLocations);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return all locations that can be reached from the given start location within the
+	 * given travel time, starting with the start location, in order of their travel time.
+	 */
+	default Location[] getLocationsWithinTravelTime(Location startLocation, double travelTime) throws ModelException {
+		try {
+			return new IsochroneSearch().getLocationsWithin(startLocation, travelTime);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/************************
+	 * Road network methods *
+	 ************************/
+
+	/**
+	 * Return a new road network without locations, roads or routes.
+	 *   Roads get the network of their end points, so the road methods above create roads
+	 *   in the network of the given locations.
+	 */
+	default RoadNetwork createRoadNetwork() throws ModelException {
+		try {
+			return new RoadNetwork();
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return a new location of the given network with given coordinate, given address and
+	 * no adjoining roads yet.
+	 */
+	default Location createLocation(RoadNetwork network, double[] coordinates, String address) throws ModelException {
+		try {
+			return network.createLocation(coordinates, address);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return the network of the given location.
+	 */
+	default RoadNetwork getLocationNetwork(Location location) throws ModelException {
+		try {
+			return location.getNetwork();
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return all locations of the given network that are not terminated.
+	 */
+	default Collection<Location> getNetworkLocations(RoadNetwork network) throws ModelException {
+		try {
+			return network.getLocations();
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return all roads of the given network that are not terminated.
+	 */
+	default Collection<Road> getNetworkRoads(RoadNetwork network) throws ModelException {
+		try {
+			return network.getRoads();
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Check whether the given identification is used by a road of the given network.
+	 */
+	default boolean isRoadIdentificationInUse(RoadNetwork network, String identification) throws ModelException {
+		try {
+			return network.isInUse(identification);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return a new route of the given network with given start location and given segments.
+	 *   The method must throw ModelException if the start location does not belong to
+	 *   the given network.
+	 */
+	default Route createRoute(RoadNetwork network, Location startLocation, Object... segments) throws ModelException {
+		try {
+			return network.createRoute(startLocation, segments);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return the fastest travel times over the roads of the given network from each of the
+	 * given start locations to each of the given end locations, as one array in row-major order.
+	 */
+	default float[] getTravelTimeMatrix(RoadNetwork network, Location[] startLocations, Location[] endLocations) throws ModelException {
+		try {
+			return new TravelTimeMatrix(network.getRoads()).getTravelTimes(startLocations, endLocations);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
+	/**
+	 * Return all locations that can be reached from the given start location over the roads
+	 * of the given network within the given travel time, in order of their travel time.
+	 */
+	default Location[] getLocationsWithinTravelTime(RoadNetwork network, Location startLocation, double travelTime) throws ModelException {
+		try {
+			return new IsochroneSearch(network.getRoads()).getLocationsWithin(startLocation, travelTime);
+		} catch (Throwable exc) {
+			throw new ModelException();
+		}
+	}
+
 }
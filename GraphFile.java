@@ -0,0 +1,602 @@
+package connections;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of read-only graph files, holding a network in a binary format that is
+ * memory-mapped and queried in place.
+ *
+ * A graph file starts with a header holding a magic number, the version of the format,
+ * the number of locations, roads and edges, and the position of each section. The
+ * sections hold the coordinates and addresses of the locations, the identifications of
+ * the roads with their order by identification, a fixed-size record with the kind,
+ * endpoints, length, speeds, delays and blockages of each road, and the adjacency of
+ * the locations in compressed sparse row form, as in a GraphSnapshot. All numbers are
+ * stored big-endian.
+ *
+ * Opening a graph file only maps it and checks its header, so it takes the same time
+ * for every size of network; all queries read the mapped file directly. Locations and
+ * roads of the object model are only created when they are asked for, and the same
+ * object is returned each time. Since a file is mapped as a single buffer, graph files
+ * are limited to 2 GB.
+ */
+public class GraphFile {
+
+/**
+ * The magic number every graph file starts with.
+ */
+public static final int MAGIC = 0x524E4746;
+
+/**
+ * The version of the format written by this class.
+ */
+public static final int VERSION = 1;
+
+/**
+ * The kinds of roads, as stored in the road records.
+ */
+public static final byte TWO_WAY_ROAD = 0;
+public static final byte ONE_WAY_ROAD = 1;
+public static final byte ALTERNATING_ROAD = 2;
+
+/**
+ * The sections of a graph file, in the order in which they are stored.
+ */
+private static final int COORDINATES = 0;
+private static final int ADDRESS_OFFSETS = 1;
+private static final int ADDRESS_BYTES = 2;
+private static final int IDENTIFICATION_OFFSETS = 3;
+private static final int IDENTIFICATION_BYTES = 4;
+private static final int IDENTIFICATION_ORDER = 5;
+private static final int ROADS = 6;
+private static final int EDGE_OFFSETS = 7;
+private static final int EDGE_HEADS = 8;
+private static final int EDGE_ROADS = 9;
+private static final int EDGE_TIMES = 10;
+private static final int SECTION_COUNT = 11;
+
+/**
+ * The size of the header and of each road record, in bytes.
+ */
+private static final int HEADER_SIZE = 4*(5 + SECTION_COUNT + 1);
+private static final int ROAD_SIZE = 32;
+
+/**
+ * Initialize this new graph file by mapping the file at the given path, creating its
+ * locations and roads in the default network.
+ *
+ * @effect | this(path, RoadNetwork.getDefault())
+ */
+public GraphFile(Path path) throws IOException {
+	this(path, RoadNetwork.getDefault());
+}
+
+/**
+ * Initialize this new graph file by mapping the file at the given path, creating its
+ * locations and roads in the given network.
+ *
+ * @param  path
+ *         The path of the file to map.
+ * @param  network
+ *         The network to create the locations and roads in.
+ * @throws IOException
+ *         The file cannot be read, is not a graph file, has another version, or its
+ *         sections do not fit in it.
+ * @throws IllegalArgumentException
+ *         | network == null
+ */
+public GraphFile(Path path, RoadNetwork network) throws IOException, IllegalArgumentException {
+	if(network == null) {
+		throw new IllegalArgumentException();
+	}
+	this.network = network;
+	try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+		long size = channel.size();
+		if(size < HEADER_SIZE || size > Integer.MAX_VALUE) {
+			throw new IOException("Not a graph file: " + path);
+		}
+		this.buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+	}
+	if(this.buffer.getInt(0) != MAGIC) {
+		throw new IOException("Not a graph file: " + path);
+	}
+	if(this.buffer.getInt(4) != VERSION) {
+		throw new IOException("Unsupported graph file version " + this.buffer.getInt(4) + ": " + path);
+	}
+	this.locationCount = this.buffer.getInt(8);
+	this.roadCount = this.buffer.getInt(12);
+	this.edgeCount = this.buffer.getInt(16);
+	this.sections = new int[SECTION_COUNT + 1];
+	for(int section = 0;section<=SECTION_COUNT;section++) {
+		this.sections[section] = this.buffer.getInt(20 + 4*section);
+	}
+	long[] sizes = getSectionSizes(this.locationCount, this.roadCount, this.edgeCount);
+	boolean valid = this.locationCount >= 0 && this.roadCount >= 0 && this.edgeCount >= 0
+			&& this.sections[0] == HEADER_SIZE && this.sections[SECTION_COUNT] == this.buffer.capacity();
+	for(int section = 0;valid && section<SECTION_COUNT;section++) {
+		long length = (long) this.sections[section + 1] - this.sections[section];
+		valid = sizes[section] < 0 ? length >= 0 : length == sizes[section];
+	}
+	if(!valid) {
+		throw new IOException("Corrupt graph file: " + path);
+	}
+}
+
+/**
+ * Variable registering the network the locations and roads of this graph file are created in.
+ */
+private final RoadNetwork network;
+
+/**
+ * Return the network the locations and roads of this graph file are created in.
+ */
+@Basic @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
+/**
+ * Variable registering the mapped contents of this graph file.
+ */
+private final MappedByteBuffer buffer;
+
+/**
+ * Variables registering the number of locations, roads and edges of this graph file.
+ */
+private final int locationCount;
+private final int roadCount;
+private final int edgeCount;
+
+/**
+ * Array registering the position of each section, followed by the size of the file.
+ */
+private final int[] sections;
+
+/**
+ * Maps registering the locations and roads created for this graph file, by index.
+ */
+private final HashMap<Integer,Location> locations = new HashMap<Integer,Location>();
+private final HashMap<Integer,Road> roads = new HashMap<Integer,Road>();
+
+/**
+ * Return the size in bytes of each section for the given numbers of locations, roads
+ * and edges, or -1 for sections whose size depends on their contents.
+ */
+private static long[] getSectionSizes(long locationCount, long roadCount, long edgeCount) {
+	return new long[] {16*locationCount, 4*(locationCount + 1), -1, 4*(roadCount + 1), -1, 4*roadCount,
+			ROAD_SIZE*roadCount, 4*(locationCount + 1), 4*edgeCount, 4*edgeCount, 4*edgeCount};
+}
+
+/**
+ * Write the given roads and their endpoints to a graph file at the given path.
+ *   Roads that are terminated are left out. The locations are numbered as in a
+ *   location index for the given roads, the roads in the given order, and the edges
+ *   as in a snapshot of the given roads.
+ *
+ * @param  roads
+ *         The roads to write.
+ * @param  path
+ *         The path of the file to write.
+ * @throws IOException
+ *         The file cannot be written.
+ * @throws IllegalArgumentException
+ *         The network does not fit in a graph file.
+ */
+public static void write(Collection<Road> roads, Path path) throws IOException, IllegalArgumentException {
+	ArrayList<Road> included = new ArrayList<Road>();
+	for(Road road:roads) {
+		if(!road.isTerminated()) {
+			included.add(road);
+		}
+	}
+	GraphSnapshot snapshot = new GraphSnapshot(included);
+	LocationIndex index = snapshot.getLocationIndex();
+	int locationCount = index.getSize();
+	int roadCount = included.size();
+	int edgeCount = snapshot.getEdgeCount();
+	byte[][] addresses = new byte[locationCount][];
+	long addressSize = 0;
+	for(int i = 0;i<locationCount;i++) {
+		addresses[i] = index.getLocationAt(i).getAddress().getBytes(StandardCharsets.UTF_8);
+		addressSize = addressSize + addresses[i].length;
+	}
+	byte[][] identifications = new byte[roadCount][];
+	long identificationSize = 0;
+	HashMap<Road,Integer> roadIndices = new HashMap<Road,Integer>();
+	Integer[] order = new Integer[roadCount];
+	for(int i = 0;i<roadCount;i++) {
+		identifications[i] = included.get(i).getIdentification().getBytes(StandardCharsets.UTF_8);
+		identificationSize = identificationSize + identifications[i].length;
+		roadIndices.put(included.get(i), i);
+		order[i] = i;
+	}
+	Arrays.sort(order, (first, second) -> included.get(first).getIdentification().compareTo(included.get(second).getIdentification()));
+	long[] sizes = getSectionSizes(locationCount, roadCount, edgeCount);
+	sizes[ADDRESS_BYTES] = addressSize;
+	sizes[IDENTIFICATION_BYTES] = identificationSize;
+	long[] sections = new long[SECTION_COUNT + 1];
+	sections[0] = HEADER_SIZE;
+	for(int section = 0;section<SECTION_COUNT;section++) {
+		sections[section + 1] = sections[section] + sizes[section];
+	}
+	if(sections[SECTION_COUNT] > Integer.MAX_VALUE) {
+		throw new IllegalArgumentException();
+	}
+	try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path), 1 << 16))) {
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(locationCount);
+		out.writeInt(roadCount);
+		out.writeInt(edgeCount);
+		for(long position:sections) {
+			out.writeInt((int) position);
+		}
+		for(int i = 0;i<locationCount;i++) {
+			double[] coordinates = index.getLocationAt(i).getCoordinates();
+			out.writeDouble(coordinates[0]);
+			out.writeDouble(coordinates[1]);
+		}
+		writeOffsets(out, addresses);
+		for(byte[] address:addresses) {
+			out.write(address);
+		}
+		writeOffsets(out, identifications);
+		for(byte[] identification:identifications) {
+			out.write(identification);
+		}
+		for(int road:order) {
+			out.writeInt(road);
+		}
+		for(Road road:included) {
+			boolean twoWay = road.canBeTraversedInDirection(false);
+			out.writeByte(road instanceof OneWayRoad ? ONE_WAY_ROAD : road instanceof AlternatingRoad ? ALTERNATING_ROAD : TWO_WAY_ROAD);
+			out.writeByte((road.getIsBlocked(true) ? 1 : 0) | (twoWay && road.getIsBlocked(false) ? 2 : 0));
+			out.writeShort(0);
+			out.writeInt(index.getIndexOf(road.endpoint1));
+			out.writeInt(index.getIndexOf(road.endpoint2));
+			out.writeInt(road.getLength());
+			out.writeFloat(road.getSpeedLimit());
+			out.writeFloat(road.getAverageSpeed());
+			out.writeFloat(road.getDelay(true));
+			out.writeFloat(twoWay ? road.getDelay(false) : 0);
+		}
+		for(int node = 0;node<=locationCount;node++) {
+			out.writeInt(snapshot.getFirstEdge(node));
+		}
+		for(int edge = 0;edge<edgeCount;edge++) {
+			out.writeInt(snapshot.getHead(edge));
+		}
+		for(int edge = 0;edge<edgeCount;edge++) {
+			out.writeInt(roadIndices.get(snapshot.getRoadAt(snapshot.getEdgeRoad(edge))));
+		}
+		for(int edge = 0;edge<edgeCount;edge++) {
+			out.writeFloat(snapshot.getTravelTime(edge));
+		}
+	}
+}
+
+/**
+ * Write the offsets of the given strings in the concatenation of their bytes, followed
+ * by the total number of bytes.
+ */
+private static void writeOffsets(DataOutputStream out, byte[][] strings) throws IOException {
+	int offset = 0;
+	for(byte[] string:strings) {
+		out.writeInt(offset);
+		offset = offset + string.length;
+	}
+	out.writeInt(offset);
+}
+
+/**
+ * Return the number of locations of this graph file.
+ */
+@Basic @Immutable
+public int getLocationCount() {
+	return this.locationCount;
+}
+
+/**
+ * Return the number of roads of this graph file.
+ */
+@Basic @Immutable
+public int getRoadCount() {
+	return this.roadCount;
+}
+
+/**
+ * Return the number of edges of this graph file.
+ */
+@Basic @Immutable
+public int getEdgeCount() {
+	return this.edgeCount;
+}
+
+/**
+ * Return the coordinates of the location at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | node < 0 || node >= getLocationCount()
+ */
+public double[] getCoordinates(int node) throws IndexOutOfBoundsException {
+	checkIndex(node, this.locationCount);
+	int position = this.sections[COORDINATES] + 16*node;
+	return new double[] {this.buffer.getDouble(position), this.buffer.getDouble(position + 8)};
+}
+
+/**
+ * Return the address of the location at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | node < 0 || node >= getLocationCount()
+ */
+public String getAddress(int node) throws IndexOutOfBoundsException {
+	checkIndex(node, this.locationCount);
+	return this.getString(ADDRESS_OFFSETS, ADDRESS_BYTES, node);
+}
+
+/**
+ * Return the identification of the road at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public String getIdentification(int road) throws IndexOutOfBoundsException {
+	checkIndex(road, this.roadCount);
+	return this.getString(IDENTIFICATION_OFFSETS, IDENTIFICATION_BYTES, road);
+}
+
+/**
+ * Return the index of a road with the given identification, or -1 if this graph file
+ * has no such road.
+ *   The roads are searched by bisection over their order by identification.
+ */
+public int getIndexOfRoad(String identification) {
+	int first = 0;
+	int end = this.roadCount;
+	while(first < end) {
+		int middle = (first + end) >>> 1;
+		int road = this.buffer.getInt(this.sections[IDENTIFICATION_ORDER] + 4*middle);
+		int comparison = this.getString(IDENTIFICATION_OFFSETS, IDENTIFICATION_BYTES, road).compareTo(identification);
+		if(comparison == 0) {
+			return road;
+		}
+		if(comparison < 0) {
+			first = middle + 1;
+		}
+		else {
+			end = middle;
+		}
+	}
+	return -1;
+}
+
+/**
+ * Return the kind of the road at the given index.
+ *
+ * @return | result == TWO_WAY_ROAD || result == ONE_WAY_ROAD || result == ALTERNATING_ROAD
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public byte getRoadKind(int road) throws IndexOutOfBoundsException {
+	return this.buffer.get(this.getRoadPosition(road));
+}
+
+/**
+ * Return the index of the first or second endpoint of the road at the given index.
+ *
+ * @param  first
+ *         True for the first endpoint, false for the second one.
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public int getEndpoint(int road, boolean first) throws IndexOutOfBoundsException {
+	return this.buffer.getInt(this.getRoadPosition(road) + (first ? 4 : 8));
+}
+
+/**
+ * Return the length of the road at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public int getLength(int road) throws IndexOutOfBoundsException {
+	return this.buffer.getInt(this.getRoadPosition(road) + 12);
+}
+
+/**
+ * Return the speed limit of the road at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public float getSpeedLimit(int road) throws IndexOutOfBoundsException {
+	return this.buffer.getFloat(this.getRoadPosition(road) + 16);
+}
+
+/**
+ * Return the average speed of the road at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public float getAverageSpeed(int road) throws IndexOutOfBoundsException {
+	return this.buffer.getFloat(this.getRoadPosition(road) + 20);
+}
+
+/**
+ * Return the delay of the road at the given index in the given direction.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public float getDelay(int road, boolean direction) throws IndexOutOfBoundsException {
+	return this.buffer.getFloat(this.getRoadPosition(road) + (direction ? 24 : 28));
+}
+
+/**
+ * Check whether the road at the given index is blocked in the given direction.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public boolean getIsBlocked(int road, boolean direction) throws IndexOutOfBoundsException {
+	return (this.buffer.get(this.getRoadPosition(road) + 1) & (direction ? 1 : 2)) != 0;
+}
+
+/**
+ * Return the first edge leaving the location at the given index; the edges leaving it
+ * end before the first edge of the next location.
+ *
+ * @param  node
+ *         The index of a location, or the number of locations.
+ * @throws IndexOutOfBoundsException
+ *         | node < 0 || node > getLocationCount()
+ */
+public int getFirstEdge(int node) throws IndexOutOfBoundsException {
+	checkIndex(node, this.locationCount + 1);
+	return this.buffer.getInt(this.sections[EDGE_OFFSETS] + 4*node);
+}
+
+/**
+ * Return the index of the location the given edge arrives at.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | edge < 0 || edge >= getEdgeCount()
+ */
+public int getHead(int edge) throws IndexOutOfBoundsException {
+	checkIndex(edge, this.edgeCount);
+	return this.buffer.getInt(this.sections[EDGE_HEADS] + 4*edge);
+}
+
+/**
+ * Return the index of the road of the given edge.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | edge < 0 || edge >= getEdgeCount()
+ */
+public int getEdgeRoad(int edge) throws IndexOutOfBoundsException {
+	checkIndex(edge, this.edgeCount);
+	return this.buffer.getInt(this.sections[EDGE_ROADS] + 4*edge);
+}
+
+/**
+ * Return the travel time of the given edge when the file was written, or positive
+ * infinity if its road could not be driven in its direction then.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | edge < 0 || edge >= getEdgeCount()
+ */
+public float getTravelTime(int edge) throws IndexOutOfBoundsException {
+	checkIndex(edge, this.edgeCount);
+	return this.buffer.getFloat(this.sections[EDGE_TIMES] + 4*edge);
+}
+
+/**
+ * Return the location at the given index, creating it the first time it is asked for.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | node < 0 || node >= getLocationCount()
+ */
+public synchronized Location getLocation(int node) throws IndexOutOfBoundsException {
+	Location location = this.locations.get(node);
+	if(location == null) {
+		location = new Location(this.network, this.getCoordinates(node), this.getAddress(node));
+		this.locations.put(node, location);
+	}
+	return location;
+}
+
+/**
+ * Return the road at the given index, creating it and its endpoints the first time it
+ * is asked for.
+ *   A created road has the kind, identification, endpoints, length, speeds, delays
+ *   and blockages stored for it.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ * @throws IllegalArgumentException
+ *         The road must be created, and its identification is in use by another road.
+ *       | !getNetwork().isValidIdentification(getIdentification(road))
+ */
+public synchronized Road getRoad(int road) throws IndexOutOfBoundsException, IllegalArgumentException {
+	Road result = this.roads.get(road);
+	if(result == null) {
+		String identification = this.getIdentification(road);
+		Location first = this.getLocation(this.getEndpoint(road, true));
+		Location second = this.getLocation(this.getEndpoint(road, false));
+		int length = this.getLength(road);
+		float speedLimit = this.getSpeedLimit(road);
+		float averageSpeed = this.getAverageSpeed(road);
+		byte kind = this.getRoadKind(road);
+		if(kind == ONE_WAY_ROAD) {
+			result = new OneWayRoad(identification, first, second, length, speedLimit, averageSpeed);
+		}
+		else if(kind == ALTERNATING_ROAD) {
+			result = new AlternatingRoad(identification, first, second, length, speedLimit, averageSpeed);
+		}
+		else {
+			result = new TwoWayRoad(identification, first, second, length, speedLimit, averageSpeed);
+		}
+		for(int i = 0;i<2;i++) {
+			boolean direction = i == 0;
+			if(result.canBeTraversedInDirection(direction)) {
+				if(Road.isValidDelay(this.getDelay(road, direction))) {
+					result.setDelay(this.getDelay(road, direction), direction);
+				}
+				result.setIsBlocked(this.getIsBlocked(road, direction), direction);
+			}
+		}
+		this.roads.put(road, result);
+	}
+	return result;
+}
+
+/**
+ * Return the position of the record of the road at the given index.
+ */
+private int getRoadPosition(int road) throws IndexOutOfBoundsException {
+	checkIndex(road, this.roadCount);
+	return this.sections[ROADS] + ROAD_SIZE*road;
+}
+
+/**
+ * Return the string at the given index of the strings stored in the given sections.
+ */
+private String getString(int offsetSection, int byteSection, int index) {
+	int position = this.sections[offsetSection] + 4*index;
+	int start = this.buffer.getInt(position);
+	int length = this.buffer.getInt(position + 4) - start;
+	byte[] bytes = new byte[length];
+	ByteBuffer view = this.buffer.duplicate();
+	view.position(this.sections[byteSection] + start);
+	view.get(bytes);
+	return new String(bytes, StandardCharsets.UTF_8);
+}
+
+/**
+ * Check whether the given index lies below the given count.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | index < 0 || index >= count
+ */
+private static void checkIndex(int index, int count) throws IndexOutOfBoundsException {
+	if(index < 0 || index >= count) {
+		throw new IndexOutOfBoundsException();
+	}
+}
+}
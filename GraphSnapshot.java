@@ -0,0 +1,330 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of immutable snapshots of a network in compressed sparse row form.
+ *
+ * Locations and roads get dense indices. Every road that is not a loop gets an edge in
+ * both directions, from each endpoint to the other one; the edges leaving each location
+ * are stored consecutively, so the edges of the location at index i are the edges
+ * getFirstEdge(i) up to getFirstEdge(i+1). For each edge, the snapshot stores its head,
+ * its road and its travel time at the moment the snapshot was taken, which is positive
+ * infinity if the road could not be driven in that direction then. The same edges are
+ * also listed by head, for searches that run backwards.
+ *
+ * Since blocked and reversed roads only change travel times, a snapshot is refreshed by
+ * recomputing its travel times, which results in a new snapshot sharing all other arrays
+ * with this one. Roads created after a snapshot was taken are only part of snapshots
+ * taken anew.
+ */
+public class GraphSnapshot {
+
+/**
+ * Initialize this new snapshot with all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public GraphSnapshot() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new snapshot with the given roads, in a single pass over them.
+ *
+ * @param  roads
+ *         The roads of the network.
+ */
+public GraphSnapshot(Collection<Road> roads) {
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	ArrayList<Road> included = new ArrayList<Road>();
+	for(Road road:roads) {
+		if(!road.isTerminated() && road.endpoint1 != road.endpoint2) {
+			included.add(road);
+		}
+	}
+	this.roads = included.toArray(new Road[included.size()]);
+	this.roadIndices = new HashMap<Road,Integer>();
+	int edgeCount = 2*this.roads.length;
+	this.offsets = new int[size + 1];
+	this.tails = new int[edgeCount];
+	this.heads = new int[edgeCount];
+	this.edgeRoads = new int[edgeCount];
+	this.roadEdges = new int[edgeCount];
+	// Count the edges of each location, and let each location start after the previous one.
+	for(Road road:this.roads) {
+		this.offsets[this.index.getIndexOf(road.endpoint1) + 1]++;
+		this.offsets[this.index.getIndexOf(road.endpoint2) + 1]++;
+	}
+	for(int node = 0;node<size;node++) {
+		this.offsets[node + 1] = this.offsets[node + 1] + this.offsets[node];
+	}
+	int[] next = Arrays.copyOf(this.offsets, size);
+	for(int road = 0;road<this.roads.length;road++) {
+		int first = this.index.getIndexOf(this.roads[road].endpoint1);
+		int second = this.index.getIndexOf(this.roads[road].endpoint2);
+		this.roadIndices.put(this.roads[road], road);
+		for(int i = 0;i<2;i++) {
+			int tail = i == 0 ? first : second;
+			int edge = next[tail]++;
+			this.tails[edge] = tail;
+			this.heads[edge] = i == 0 ? second : first;
+			this.edgeRoads[edge] = road;
+			this.roadEdges[2*road + i] = edge;
+		}
+	}
+	this.reverseOffsets = new int[size + 1];
+	this.reverseEdges = new int[edgeCount];
+	for(int edge = 0;edge<edgeCount;edge++) {
+		this.reverseOffsets[this.heads[edge] + 1]++;
+	}
+	for(int node = 0;node<size;node++) {
+		this.reverseOffsets[node + 1] = this.reverseOffsets[node + 1] + this.reverseOffsets[node];
+	}
+	next = Arrays.copyOf(this.reverseOffsets, size);
+	for(int edge = 0;edge<edgeCount;edge++) {
+		this.reverseEdges[next[this.heads[edge]]++] = edge;
+	}
+	this.times = new float[edgeCount];
+	for(int edge = 0;edge<edgeCount;edge++) {
+		this.computeTime(edge);
+	}
+}
+
+/**
+ * Initialize this new snapshot with the structure of the given snapshot and the
+ * given travel times.
+ */
+private GraphSnapshot(GraphSnapshot structure, float[] times) {
+	this.index = structure.index;
+	this.roads = structure.roads;
+	this.roadIndices = structure.roadIndices;
+	this.offsets = structure.offsets;
+	this.tails = structure.tails;
+	this.heads = structure.heads;
+	this.edgeRoads = structure.edgeRoads;
+	this.roadEdges = structure.roadEdges;
+	this.reverseOffsets = structure.reverseOffsets;
+	this.reverseEdges = structure.reverseEdges;
+	this.times = times;
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Array registering the road at each index, and a map registering the index of each road.
+ */
+private final Road[] roads;
+private final HashMap<Road,Integer> roadIndices;
+
+/**
+ * Arrays registering the first edge of each location, followed by the number of edges,
+ * and the tail, head and road of each edge.
+ */
+final int[] offsets;
+final int[] tails;
+final int[] heads;
+final int[] edgeRoads;
+
+/**
+ * Array registering the edges of each road: the edge from its first endpoint at 2*road,
+ * and the edge from its second endpoint at 2*road+1.
+ */
+private final int[] roadEdges;
+
+/**
+ * Arrays registering the first entry of each location in the edges listed by head,
+ * followed by the number of edges, and the edges listed by head.
+ */
+final int[] reverseOffsets;
+final int[] reverseEdges;
+
+/**
+ * Array registering the travel time of each edge.
+ */
+final float[] times;
+
+/**
+ * Return the numbering of the locations of this snapshot.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Return the number of locations of this snapshot.
+ */
+public int getLocationCount() {
+	return this.index.getSize();
+}
+
+/**
+ * Return the number of roads of this snapshot.
+ */
+public int getRoadCount() {
+	return this.roads.length;
+}
+
+/**
+ * Return the road at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | index < 0 || index >= getRoadCount()
+ */
+public Road getRoadAt(int index) throws IndexOutOfBoundsException {
+	return this.roads[index];
+}
+
+/**
+ * Return the index of the given road, or -1 if it is not part of this snapshot.
+ */
+public int getIndexOf(Road road) {
+	Integer index = this.roadIndices.get(road);
+	if(index == null) {
+		return -1;
+	}
+	return index;
+}
+
+/**
+ * Return the number of edges of this snapshot.
+ *
+ * @return | result == 2*getRoadCount()
+ */
+public int getEdgeCount() {
+	return this.heads.length;
+}
+
+/**
+ * Return the first edge leaving the location at the given index; the edges leaving it
+ * end before the first edge of the next location.
+ *
+ * @param  node
+ *         The index of a location, or the number of locations.
+ */
+public int getFirstEdge(int node) {
+	return this.offsets[node];
+}
+
+/**
+ * Return the index of the location the given edge leaves from.
+ */
+public int getTail(int edge) {
+	return this.tails[edge];
+}
+
+/**
+ * Return the index of the location the given edge arrives at.
+ */
+public int getHead(int edge) {
+	return this.heads[edge];
+}
+
+/**
+ * Return the index of the road of the given edge.
+ */
+public int getEdgeRoad(int edge) {
+	return this.edgeRoads[edge];
+}
+
+/**
+ * Return the first entry of the location at the given index in the edges listed by
+ * head; the entries of the edges arriving at it end before the first entry of the
+ * next location.
+ *
+ * @param  node
+ *         The index of a location, or the number of locations.
+ */
+public int getFirstReverseEdge(int node) {
+	return this.reverseOffsets[node];
+}
+
+/**
+ * Return the edge at the given entry of the edges listed by head.
+ */
+public int getReverseEdge(int entry) {
+	return this.reverseEdges[entry];
+}
+
+/**
+ * Return the edge of the road at the given index leaving its first endpoint if the
+ * given direction is true, or leaving its second endpoint otherwise, where the
+ * endpoints are those of the road when this snapshot was taken.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | road < 0 || road >= getRoadCount()
+ */
+public int getRoadEdge(int road, boolean direction) throws IndexOutOfBoundsException {
+	if(road < 0 || road >= this.roads.length) {
+		throw new IndexOutOfBoundsException();
+	}
+	return this.roadEdges[direction ? 2*road : 2*road + 1];
+}
+
+/**
+ * Return the travel time of the given edge when this snapshot was taken, or positive
+ * infinity if its road could not be driven in its direction then.
+ */
+public float getTravelTime(int edge) {
+	return this.times[edge];
+}
+
+/**
+ * Return a snapshot with the same locations, roads and edges as this snapshot, and
+ * the current travel times of all edges.
+ */
+public GraphSnapshot refresh() {
+	GraphSnapshot result = new GraphSnapshot(this, new float[this.times.length]);
+	for(int edge = 0;edge<this.times.length;edge++) {
+		result.computeTime(edge);
+	}
+	return result;
+}
+
+/**
+ * Return a snapshot with the same locations, roads and edges as this snapshot, the
+ * current travel times of the edges of the given roads, and the travel times of this
+ * snapshot for all other edges.
+ *
+ * @param  changedRoads
+ *         The roads whose travel times may have changed. Roads that are not part of
+ *         this snapshot are ignored.
+ */
+public GraphSnapshot refresh(Collection<Road> changedRoads) {
+	return this.refresh(changedRoads, new float[this.times.length]);
+}
+
+/**
+ * Return a snapshot as refresh(changedRoads) does, storing its travel times in the given
+ * array, which must have one element per edge and must not be used by any other snapshot.
+ */
+GraphSnapshot refresh(Collection<Road> changedRoads, float[] buffer) {
+	System.arraycopy(this.times, 0, buffer, 0, this.times.length);
+	GraphSnapshot result = new GraphSnapshot(this, buffer);
+	for(Road road:changedRoads) {
+		int index = this.getIndexOf(road);
+		if(index >= 0) {
+			result.computeTime(this.roadEdges[2*index]);
+			result.computeTime(this.roadEdges[2*index + 1]);
+		}
+	}
+	return result;
+}
+
+/**
+ * Store the current travel time of the given edge.
+ */
+private void computeTime(int edge) {
+	Road road = this.roads[this.edgeRoads[edge]];
+	this.times[edge] = (float) Router.getTravelTimeFrom(road, this.index.getLocationAt(this.tails[edge]));
+}
+}
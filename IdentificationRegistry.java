@@ -0,0 +1,556 @@
+package connections;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A class of registries of the road identifications in use.
+ *
+ * Identifications consisting of an uppercase letter from A to Z followed by one or two
+ * digits from 0 to 9 form a dense space of 26*110 codes: the identifications of each
+ * letter form a series, with the one-digit identifications before the two-digit ones.
+ * These identifications are registered as bits of an array of atomic words, so
+ * checking, registering and releasing them takes constant time without locking, and
+ * the first free identification of a series is found by scanning at most 110 bits.
+ *
+ * Extended identifications consist of a region, a slash, an uppercase letter and one
+ * to nine digits, as in BE.VLG/N12345. A region consists of one or more segments
+ * separated by dots, each of one to eight uppercase letters and digits starting with
+ * a letter. Each region gets a number the first time it is registered, and each
+ * extended identification is registered as a single long combining the number of its
+ * region with the code of its letter and digits, in one of several hash sets of
+ * primitive longs, each guarded by its own lock. For each region and letter, the
+ * registry keeps a cursor below which all extended identifications are in use, so
+ * handing out the free identifications of a series one after the other takes amortized
+ * constant time; releasing an identification moves the cursor of its series back.
+ *
+ * Other identifications, such as those with letters or digits outside the ASCII range,
+ * are registered in a concurrent hash set of strings.
+ *
+ * A registry can be used by several threads at once. Registering an identification
+ * checks and marks it as in use in one atomic step, so of several threads registering
+ * the same identification, exactly one succeeds.
+ */
+public class IdentificationRegistry {
+
+/**
+ * The number of identifications in each series.
+ */
+public static final int SERIES_SIZE = 110;
+
+/**
+ * The number of identifications in the dense space of codes.
+ */
+public static final int CODE_COUNT = 26*SERIES_SIZE;
+
+/**
+ * The largest number of digits of an extended identification.
+ */
+public static final int MAX_EXTENDED_DIGITS = 9;
+
+/**
+ * The number of codes of each letter of extended identifications, and the number of
+ * bits of these codes.
+ */
+private static final long EXTENDED_SERIES_SIZE = 1111111110L;
+private static final int EXTENDED_CODE_BITS = 35;
+
+/**
+ * Initialize this new registry without identifications.
+ */
+public IdentificationRegistry() {
+}
+
+/**
+ * Words registering the codes of the identifications in use, 64 codes per word.
+ */
+private final AtomicLongArray codes = new AtomicLongArray((CODE_COUNT + 63)/64);
+
+/**
+ * Map registering the number of each region, and the number of regions numbered.
+ */
+private final ConcurrentHashMap<String,Integer> regionNumbers = new ConcurrentHashMap<String,Integer>();
+private final AtomicInteger regionCount = new AtomicInteger();
+
+/**
+ * The number of sets registering the extended identifications. It is a power of two.
+ */
+private static final int EXTENDED_STRIPES = 16;
+
+/**
+ * Sets registering the extended identifications in use, by region number and code.
+ *   Each key is kept in the set given by getExtendedStripe, which is only used while
+ *   holding its lock.
+ */
+private final LongSet[] extended = newExtendedSets();
+
+/**
+ * Map registering, by the key given by getCursorKey, the cursor of each region and
+ * letter of which a free extended identification was asked for.
+ */
+private final ConcurrentHashMap<Long,Cursor> cursors = new ConcurrentHashMap<Long,Cursor>();
+
+/**
+ * Set registering the identifications in use that have no code.
+ */
+private final Set<String> others = ConcurrentHashMap.newKeySet();
+
+private static LongSet[] newExtendedSets() {
+	LongSet[] result = new LongSet[EXTENDED_STRIPES];
+	for(int i = 0;i<EXTENDED_STRIPES;i++) {
+		result[i] = new LongSet();
+	}
+	return result;
+}
+
+/**
+ * Return the set the given key of an extended identification is kept in.
+ */
+private LongSet getExtendedStripe(long key) {
+	return this.extended[(int) (key*0xC2B2AE3D27D4EB4FL >>> 60) & EXTENDED_STRIPES - 1];
+}
+
+private boolean containsExtended(long key) {
+	LongSet set = this.getExtendedStripe(key);
+	synchronized(set) {
+		return set.contains(key);
+	}
+}
+
+/**
+ * Check whether the given code is marked as in use.
+ */
+private boolean getBit(int code) {
+	return (this.codes.get(code >>> 6) & 1L << code) != 0;
+}
+
+/**
+ * Mark the given code as in use or not in use, and return whether it was in use.
+ */
+private boolean setBit(int code, boolean inUse) {
+	int word = code >>> 6;
+	long mask = 1L << code;
+	while(true) {
+		long old = this.codes.get(word);
+		long updated = inUse ? old | mask : old & ~mask;
+		if(old == updated || this.codes.compareAndSet(word, old, updated)) {
+			return (old & mask) != 0;
+		}
+	}
+}
+
+/**
+ * Return the code of the given identification, or -1 if it has none.
+ *
+ * @return | if(identification matches [A-Z][0-9]) then result == 110*(letter - 'A') + digit
+ *         | else if(identification matches [A-Z][0-9][0-9]) then result == 110*(letter - 'A') + 10 + 10*digit + digit
+ *         | else result == -1
+ */
+public static int getCode(String identification) {
+	int length = identification.length();
+	if(length < 2 || length > 3) {
+		return -1;
+	}
+	char letter = identification.charAt(0);
+	if(letter < 'A' || letter > 'Z') {
+		return -1;
+	}
+	int number = 0;
+	for(int i = 1;i<length;i++) {
+		char digit = identification.charAt(i);
+		if(digit < '0' || digit > '9') {
+			return -1;
+		}
+		number = 10*number + digit - '0';
+	}
+	return SERIES_SIZE*(letter - 'A') + (length == 2 ? number : 10 + number);
+}
+
+/**
+ * Check whether the given region is a valid region of extended identifications.
+ *
+ * @return | result == (region consists of segments separated by dots, each of 1 to 8
+ *         |   characters from A-Z and 0-9 starting with a character from A-Z)
+ */
+public static boolean isValidRegion(String region) {
+	int segmentLength = 0;
+	for(int i = 0;i<region.length();i++) {
+		char next = region.charAt(i);
+		if(next == '.') {
+			if(segmentLength == 0) {
+				return false;
+			}
+			segmentLength = 0;
+		}
+		else if(next >= 'A' && next <= 'Z' || segmentLength > 0 && next >= '0' && next <= '9') {
+			segmentLength++;
+			if(segmentLength > 8) {
+				return false;
+			}
+		}
+		else {
+			return false;
+		}
+	}
+	return segmentLength > 0;
+}
+
+/**
+ * Return the code of the letter and digits of the given extended identification
+ * within its region, or -1 if it is not a valid extended identification.
+ *   Codes of the same letter are numbered by number of digits, and then by number, so
+ *   for the letter A, the codes of one and two digits equal the codes of non-extended
+ *   identifications.
+ */
+public static long getExtendedCode(String identification) {
+	int slash = identification.lastIndexOf('/');
+	int length = identification.length() - slash - 1;
+	if(slash < 0 || length < 2 || length > MAX_EXTENDED_DIGITS + 1 || !isValidRegion(identification.substring(0, slash))) {
+		return -1;
+	}
+	char letter = identification.charAt(slash + 1);
+	if(letter < 'A' || letter > 'Z') {
+		return -1;
+	}
+	long number = 0;
+	long offset = 0;
+	long size = 1;
+	for(int i = slash + 2;i<identification.length();i++) {
+		char digit = identification.charAt(i);
+		if(digit < '0' || digit > '9') {
+			return -1;
+		}
+		number = 10*number + digit - '0';
+		offset = offset + size;
+		size = 10*size;
+	}
+	return EXTENDED_SERIES_SIZE*(letter - 'A') + offset - 1 + number;
+}
+
+/**
+ * Check whether the given identification is a valid extended identification.
+ *
+ * @return | result == (getExtendedCode(identification) >= 0)
+ */
+public static boolean isExtendedIdentification(String identification) {
+	return getExtendedCode(identification) >= 0;
+}
+
+/**
+ * Return the identification with the given code.
+ *
+ * @throws IllegalArgumentException
+ *         | code < 0 || code >= CODE_COUNT
+ */
+public static String getIdentification(int code) throws IllegalArgumentException {
+	if(code < 0 || code >= CODE_COUNT) {
+		throw new IllegalArgumentException();
+	}
+	char letter = (char) ('A' + code/SERIES_SIZE);
+	int number = code % SERIES_SIZE;
+	if(number < 10) {
+		return "" + letter + number;
+	}
+	number = number - 10;
+	return "" + letter + (char) ('0' + number/10) + (char) ('0' + number % 10);
+}
+
+/**
+ * Return the number of identifications in use.
+ */
+public int getSize() {
+	int size = this.others.size();
+	for(int word = 0;word<this.codes.length();word++) {
+		size = size + Long.bitCount(this.codes.get(word));
+	}
+	for(LongSet set:this.extended) {
+		synchronized(set) {
+			size = size + set.getSize();
+		}
+	}
+	return size;
+}
+
+/**
+ * Check whether the given identification is in use.
+ */
+public boolean isInUse(String identification) {
+	int code = getCode(identification);
+	if(code >= 0) {
+		return this.getBit(code);
+	}
+	long key = this.getExtendedKey(identification, false);
+	if(key >= 0) {
+		return this.containsExtended(key);
+	}
+	return key == -1 && this.others.contains(identification);
+}
+
+/**
+ * Register the given identification as in use.
+ *
+ * @return True if and only if the identification was not in use.
+ * @post   | new.isInUse(identification)
+ */
+public boolean register(String identification) {
+	int code = getCode(identification);
+	if(code >= 0) {
+		return !this.setBit(code, true);
+	}
+	long key = this.getExtendedKey(identification, true);
+	if(key >= 0) {
+		LongSet set = this.getExtendedStripe(key);
+		synchronized(set) {
+			return set.add(key);
+		}
+	}
+	return this.others.add(identification);
+}
+
+/**
+ * Register the given identification as no longer in use.
+ *
+ * @return True if and only if the identification was in use.
+ * @post   | !new.isInUse(identification)
+ */
+public boolean release(String identification) {
+	int code = getCode(identification);
+	if(code >= 0) {
+		return this.setBit(code, false);
+	}
+	long key = this.getExtendedKey(identification, false);
+	if(key >= 0) {
+		LongSet set = this.getExtendedStripe(key);
+		boolean result;
+		synchronized(set) {
+			result = set.remove(key);
+		}
+		if(result) {
+			this.moveCursorBack(key);
+		}
+		return result;
+	}
+	return key == -1 && this.others.remove(identification);
+}
+
+/**
+ * Return the key of the given identification in the set of extended identifications,
+ * -1 if it is not an extended identification, or -2 if its region has no number and
+ * the given flag is false.
+ *
+ * @param  numberRegion
+ *         True if the region must get a number if it has none.
+ */
+private long getExtendedKey(String identification, boolean numberRegion) {
+	long code = getExtendedCode(identification);
+	if(code < 0) {
+		return -1;
+	}
+	String region = identification.substring(0, identification.lastIndexOf('/'));
+	Integer number = numberRegion ? this.regionNumbers.computeIfAbsent(region, key -> this.regionCount.getAndIncrement())
+			: this.regionNumbers.get(region);
+	if(number == null) {
+		return -2;
+	}
+	return (long) number << EXTENDED_CODE_BITS | code;
+}
+
+/**
+ * Return the first identification of the series of the given letter that is not in
+ * use, or null if all of them are in use. The identification is not registered.
+ *
+ * @param  series
+ *         The letter of the series.
+ * @throws IllegalArgumentException
+ *         | series < 'A' || series > 'Z'
+ */
+public String getFreeIdentification(char series) throws IllegalArgumentException {
+	if(series < 'A' || series > 'Z') {
+		throw new IllegalArgumentException();
+	}
+	int first = SERIES_SIZE*(series - 'A');
+	for(int code = first;code<first + SERIES_SIZE;code++) {
+		if(!this.getBit(code)) {
+			return getIdentification(code);
+		}
+	}
+	return null;
+}
+
+/**
+ * Return the first extended identification of the given region and the series of the
+ * given letter that is not in use, trying identifications with fewer digits first, or
+ * null if all of them are in use. The identification is not registered.
+ *
+ * @param  region
+ *         The region of the identification.
+ * @param  series
+ *         The letter of the series.
+ * @throws IllegalArgumentException
+ *         | !isValidRegion(region) || series < 'A' || series > 'Z'
+ */
+public String getFreeIdentification(String region, char series) throws IllegalArgumentException {
+	if(!isValidRegion(region) || series < 'A' || series > 'Z') {
+		throw new IllegalArgumentException();
+	}
+	Integer number = this.regionNumbers.get(region);
+	if(number == null) {
+		return region + "/" + series + "0";
+	}
+	long base = (long) number << EXTENDED_CODE_BITS | EXTENDED_SERIES_SIZE*(series - 'A');
+	Cursor cursor = this.cursors.computeIfAbsent(getCursorKey(number, series - 'A'), key -> new Cursor());
+	long offset;
+	synchronized(cursor) {
+		while(cursor.next < EXTENDED_SERIES_SIZE && this.containsExtended(base + cursor.next)) {
+			cursor.next++;
+		}
+		offset = cursor.next;
+	}
+	if(offset == EXTENDED_SERIES_SIZE) {
+		return null;
+	}
+	// Find the number of digits of the offset, and its value among the numbers with that many digits.
+	int digits = 1;
+	long size = 10;
+	while(offset >= size) {
+		offset = offset - size;
+		size = 10*size;
+		digits++;
+	}
+	char[] result = new char[region.length() + 2 + digits];
+	region.getChars(0, region.length(), result, 0);
+	result[region.length()] = '/';
+	result[region.length() + 1] = series;
+	for(int i = result.length - 1;i>region.length() + 1;i--) {
+		result[i] = (char) ('0' + offset % 10);
+		offset = offset/10;
+	}
+	return new String(result);
+}
+
+/**
+ * Return the key of the cursor of the region with the given number and the letter with
+ * the given index.
+ */
+private static long getCursorKey(long regionNumber, long letter) {
+	return 26*regionNumber + letter;
+}
+
+/**
+ * Move the cursor of the series of the given released key of an extended
+ * identification back to that identification, if it lies beyond it.
+ */
+private void moveCursorBack(long key) {
+	long code = key & (1L << EXTENDED_CODE_BITS) - 1;
+	Cursor cursor = this.cursors.get(getCursorKey(key >>> EXTENDED_CODE_BITS, code/EXTENDED_SERIES_SIZE));
+	if(cursor != null) {
+		synchronized(cursor) {
+			cursor.next = Math.min(cursor.next, code % EXTENDED_SERIES_SIZE);
+		}
+	}
+}
+
+/**
+ * A class of cursors of a series of extended identifications, each registering the
+ * offset in its series below which all identifications are in use.
+ *   A cursor is only used while holding its lock.
+ */
+private static class Cursor {
+
+	long next = 0;
+}
+
+/**
+ * A class of sets of longs that are not negative, stored in an open-addressing table.
+ */
+private static class LongSet {
+
+	/**
+	 * The table of the set, with -1 in each free slot. Its length is a power of two,
+	 * and at least twice the size of the set.
+	 */
+	private long[] table = newTable(16);
+
+	private int size = 0;
+
+	/**
+	 * Return the slot the given key is looked up from in a table with the given mask.
+	 */
+	private static int getHome(long key, int mask) {
+		return (int) (key*0x9E3779B97F4A7C15L >>> 32) & mask;
+	}
+
+	private static long[] newTable(int length) {
+		long[] table = new long[length];
+		Arrays.fill(table, -1);
+		return table;
+	}
+
+	int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Return the slot of the given key, or the free slot it would go in.
+	 */
+	private int getSlot(long key) {
+		int mask = this.table.length - 1;
+		int slot = getHome(key, mask);
+		while(this.table[slot] != -1 && this.table[slot] != key) {
+			slot = slot + 1 & mask;
+		}
+		return slot;
+	}
+
+	boolean contains(long key) {
+		return this.table[this.getSlot(key)] == key;
+	}
+
+	boolean add(long key) {
+		int slot = this.getSlot(key);
+		if(this.table[slot] == key) {
+			return false;
+		}
+		this.table[slot] = key;
+		this.size++;
+		if(2*this.size > this.table.length) {
+			long[] old = this.table;
+			this.table = newTable(2*old.length);
+			for(long next:old) {
+				if(next != -1) {
+					this.table[this.getSlot(next)] = next;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Remove the given key, and move the keys after it that would no longer be found
+	 * into the freed slot.
+	 */
+	boolean remove(long key) {
+		int slot = this.getSlot(key);
+		if(this.table[slot] != key) {
+			return false;
+		}
+		int mask = this.table.length - 1;
+		int free = slot;
+		int next = slot + 1 & mask;
+		while(this.table[next] != -1) {
+			int home = getHome(this.table[next], mask);
+			// The key at next can move to the free slot if its home does not lie after the free slot.
+			if((next - home & mask) >= (next - free & mask)) {
+				this.table[free] = this.table[next];
+				free = next;
+			}
+			next = next + 1 & mask;
+		}
+		this.table[free] = -1;
+		this.size--;
+		return true;
+	}
+}
+}
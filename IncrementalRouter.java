@@ -0,0 +1,294 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers that keep their search state between queries towards the same
+ * end location, and only repair the part of it that is affected by changed roads.
+ *
+ * The router follows D* Lite without a heuristic: it searches backwards from the end
+ * location, and keeps for each location the travel time g from it to the end location
+ * as computed so far, together with the one-step lookahead rhs, the fastest travel
+ * time over one of its roads to a location with a known g. A location is consistent if
+ * both are equal; only inconsistent locations are in the heap. When roads change, only
+ * their endpoints are made inconsistent, and the next query only expands locations
+ * whose travel time actually changed and is not larger than the travel time of the
+ * start location. Since the search runs backwards, a query from another start location
+ * to the same end location, such as a driver who has moved on along the route, reuses
+ * all state as well.
+ *
+ * Changes to roads are not detected by the router: they must be reported with
+ * updateRoads before the next query.
+ */
+public class IncrementalRouter extends Router {
+
+/**
+ * Initialize this new router for all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public IncrementalRouter() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new router for the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ */
+public IncrementalRouter(Collection<Road> roads) {
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	this.g = new double[size];
+	this.rhs = new double[size];
+	this.touched = new int[size];
+	this.isTouched = new boolean[size];
+	this.heap = new IndexedHeap(size);
+	Arrays.fill(this.g, Double.POSITIVE_INFINITY);
+	Arrays.fill(this.rhs, Double.POSITIVE_INFINITY);
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Arrays registering the travel time from each location to the end location as
+ * computed so far, and the one-step lookahead of that travel time.
+ */
+private final double[] g;
+private final double[] rhs;
+
+/**
+ * Arrays registering the indices of the locations whose travel times have been finite
+ * since the last reset.
+ */
+private final int[] touched;
+private final boolean[] isTouched;
+private int touchedCount = 0;
+
+/**
+ * Heap registering the inconsistent locations, keyed by the smallest of both travel times.
+ */
+private final IndexedHeap heap;
+
+/**
+ * Variable registering the index of the end location the state of this router belongs
+ * to, or -1 if this router has no state.
+ */
+private int goal = -1;
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Return the end location the search state of this router belongs to, or null if
+ * this router has no search state.
+ */
+public Location getGoal() {
+	if(this.goal < 0) {
+		return null;
+	}
+	return this.index.getLocationAt(this.goal);
+}
+
+/**
+ * Register that the given roads have changed since the last query.
+ *   A road has changed if its delay, blockage, average speed or length changed, if it
+ *   was reversed or if it was terminated. The endpoints of each road are made
+ *   inconsistent; their travel times are repaired by the next query.
+ *
+ * @param  changedRoads
+ *         The roads that have changed.
+ */
+public void updateRoads(Collection<Road> changedRoads) {
+	if(this.goal < 0) {
+		return;
+	}
+	for(Road road:changedRoads) {
+		int first = this.index.getIndexOf(road.endpoint1);
+		int second = this.index.getIndexOf(road.endpoint2);
+		if(first >= 0) {
+			this.updateLocation(first);
+		}
+		if(second >= 0) {
+			this.updateLocation(second);
+		}
+	}
+}
+
+/**
+ * Forget the search state of this router.
+ *
+ * @post | new.getGoal() == null
+ */
+public void reset() {
+	for(int i = 0;i<this.touchedCount;i++) {
+		this.g[this.touched[i]] = Double.POSITIVE_INFINITY;
+		this.rhs[this.touched[i]] = Double.POSITIVE_INFINITY;
+		this.isTouched[this.touched[i]] = false;
+	}
+	this.touchedCount = 0;
+	this.heap.clear();
+	this.goal = -1;
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *   If the end location is the end location of the previous query, the search state of
+ *   that query is repaired for the roads reported as changed since; otherwise it is
+ *   forgotten and the search starts anew.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(from == to) {
+		this.setLastSettledCount(0);
+		return this.buildRoute(from, new ArrayList<Road>());
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	if(target != this.goal) {
+		this.reset();
+		this.goal = target;
+		this.setRhs(target, 0);
+		this.heap.push(target, 0);
+	}
+	this.setLastSettledCount(this.computeTravelTimes(source));
+	if(this.g[source] == Double.POSITIVE_INFINITY) {
+		this.setNoRouteFound();
+		return null;
+	}
+	ArrayList<Road> roads = new ArrayList<Road>();
+	int node = source;
+	while(node != target) {
+		Location location = this.index.getLocationAt(node);
+		Road best = null;
+		int bestNext = -1;
+		double bestTime = Double.POSITIVE_INFINITY;
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == location;
+			Location other = getDestination(road, direction);
+			int next = this.index.getIndexOf(other);
+			if(next < 0 || other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			double time = road.getTravelTime(direction) + this.g[next];
+			if(time < bestTime) {
+				best = road;
+				bestNext = next;
+				bestTime = time;
+			}
+		}
+		roads.add(best);
+		node = bestNext;
+	}
+	return this.buildRoute(from, roads);
+}
+
+/**
+ * Expand inconsistent locations until the travel time of the location at the given
+ * index is known.
+ *
+ * @return The number of expanded locations.
+ */
+private int computeTravelTimes(int source) {
+	int expanded = 0;
+	while(!this.heap.isEmpty() && (this.heap.peekKey() < Math.min(this.g[source], this.rhs[source])
+			|| this.rhs[source] != this.g[source])) {
+		int node = this.heap.poll();
+		expanded++;
+		Location location = this.index.getLocationAt(node);
+		if(this.g[node] > this.rhs[node]) {
+			this.g[node] = this.rhs[node];
+			for(Road road:location.adjoiningRoads) {
+				boolean direction = road.endpoint2 == location;
+				Location other = getOrigin(road, direction);
+				int previous = this.index.getIndexOf(other);
+				if(previous < 0 || other == location || previous == this.goal || !road.isOpenInDirection(direction)) {
+					continue;
+				}
+				double time = road.getTravelTime(direction) + this.g[node];
+				if(time < this.rhs[previous]) {
+					this.setRhs(previous, time);
+					if(this.g[previous] != time) {
+						this.heap.update(previous, Math.min(this.g[previous], time));
+					}
+					else {
+						this.heap.remove(previous);
+					}
+				}
+			}
+		}
+		else {
+			this.g[node] = Double.POSITIVE_INFINITY;
+			this.updateLocation(node);
+			for(Road road:location.adjoiningRoads) {
+				boolean direction = road.endpoint2 == location;
+				Location other = getOrigin(road, direction);
+				int previous = this.index.getIndexOf(other);
+				if(previous >= 0 && other != location) {
+					this.updateLocation(previous);
+				}
+			}
+		}
+	}
+	return expanded;
+}
+
+/**
+ * Recompute the lookahead of the location at the given index from its roads, and
+ * put it in the heap if and only if it is inconsistent.
+ */
+private void updateLocation(int node) {
+	if(node != this.goal) {
+		Location location = this.index.getLocationAt(node);
+		double best = Double.POSITIVE_INFINITY;
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == location;
+			Location other = getDestination(road, direction);
+			int next = this.index.getIndexOf(other);
+			if(next < 0 || other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			best = Math.min(best, road.getTravelTime(direction) + this.g[next]);
+		}
+		this.setRhs(node, best);
+	}
+	if(this.g[node] != this.rhs[node]) {
+		this.heap.update(node, Math.min(this.g[node], this.rhs[node]));
+	}
+	else {
+		this.heap.remove(node);
+	}
+}
+
+/**
+ * Set the lookahead of the location at the given index, registering the location as
+ * touched if the lookahead is finite.
+ */
+private void setRhs(int node, double time) {
+	if(!this.isTouched[node] && time != Double.POSITIVE_INFINITY) {
+		this.isTouched[node] = true;
+		this.touched[this.touchedCount++] = node;
+	}
+	this.rhs[node] = time;
+}
+}
@@ -0,0 +1,200 @@
+package connections;
+import java.util.Arrays;
+
+/**
+ * A class of binary min-heaps over the indices 0..capacity-1, each with a key.
+ * An index is in the heap at most once; pushing an index that is already in the
+ * heap only lowers its key. The heap allocates nothing after its construction,
+ * so one heap can be reused for many searches.
+ */
+class IndexedHeap {
+
+/**
+ * Initialize this new heap for the indices 0..capacity-1.
+ */
+IndexedHeap(int capacity) {
+	this.heap = new int[capacity];
+	this.positions = new int[capacity];
+	this.keys = new double[capacity];
+	Arrays.fill(this.positions, -1);
+}
+
+/**
+ * Array registering the indices in the heap, in heap order.
+ */
+private final int[] heap;
+
+/**
+ * Array registering the position of each index in the heap, or -1 if it is not in the heap.
+ */
+private final int[] positions;
+
+/**
+ * Array registering the key of each index.
+ */
+private final double[] keys;
+
+/**
+ * Variable registering the number of indices in the heap.
+ */
+private int size = 0;
+
+boolean isEmpty() {
+	return this.size == 0;
+}
+
+int getSize() {
+	return this.size;
+}
+
+boolean contains(int index) {
+	return this.positions[index] >= 0;
+}
+
+/**
+ * Return the index with the smallest key.
+ */
+int peek() {
+	return this.heap[0];
+}
+
+/**
+ * Return the smallest key in the heap, or positive infinity if the heap is empty.
+ */
+double peekKey() {
+	if(this.size == 0) {
+		return Double.POSITIVE_INFINITY;
+	}
+	return this.keys[this.heap[0]];
+}
+
+/**
+ * Return the key of the given index, which must be in the heap.
+ */
+double getKey(int index) {
+	return this.keys[index];
+}
+
+/**
+ * Add the given index with the given key, or lower its key if it is in the heap
+ * with a larger key.
+ */
+void push(int index, double key) {
+	int position = this.positions[index];
+	if(position < 0) {
+		position = this.size++;
+		this.heap[position] = index;
+		this.positions[index] = position;
+	}
+	else if(key >= this.keys[index]) {
+		return;
+	}
+	this.keys[index] = key;
+	this.siftUp(position);
+}
+
+/**
+ * Add the given index with the given key, or change its key to the given key if it
+ * is in the heap already, whether that key is smaller or larger.
+ */
+void update(int index, double key) {
+	int position = this.positions[index];
+	if(position < 0) {
+		this.push(index, key);
+		return;
+	}
+	double old = this.keys[index];
+	this.keys[index] = key;
+	if(key < old) {
+		this.siftUp(position);
+	}
+	else {
+		this.siftDown(position);
+	}
+}
+
+/**
+ * Remove the given index from the heap, if it is in the heap.
+ */
+void remove(int index) {
+	int position = this.positions[index];
+	if(position < 0) {
+		return;
+	}
+	this.positions[index] = -1;
+	this.size--;
+	if(position < this.size) {
+		int last = this.heap[this.size];
+		this.heap[position] = last;
+		this.positions[last] = position;
+		this.siftUp(position);
+		this.siftDown(this.positions[last]);
+	}
+}
+
+/**
+ * Remove and return the index with the smallest key.
+ */
+int poll() {
+	int top = this.heap[0];
+	this.positions[top] = -1;
+	this.size--;
+	if(this.size > 0) {
+		int last = this.heap[this.size];
+		this.heap[0] = last;
+		this.positions[last] = 0;
+		this.siftDown(0);
+	}
+	return top;
+}
+
+/**
+ * Remove all indices from the heap.
+ */
+void clear() {
+	for(int i = 0;i<this.size;i++) {
+		this.positions[this.heap[i]] = -1;
+	}
+	this.size = 0;
+}
+
+private void siftUp(int position) {
+	int index = this.heap[position];
+	double key = this.keys[index];
+	while(position > 0) {
+		int parent = (position - 1) >>> 1;
+		int parentIndex = this.heap[parent];
+		if(this.keys[parentIndex] <= key) {
+			break;
+		}
+		this.heap[position] = parentIndex;
+		this.positions[parentIndex] = position;
+		position = parent;
+	}
+	this.heap[position] = index;
+	this.positions[index] = position;
+}
+
+private void siftDown(int position) {
+	int index = this.heap[position];
+	double key = this.keys[index];
+	while(true) {
+		int child = 2*position + 1;
+		if(child >= this.size) {
+			break;
+		}
+		if(child + 1 < this.size && this.keys[this.heap[child + 1]] < this.keys[this.heap[child]]) {
+			child++;
+		}
+		int childIndex = this.heap[child];
+		if(this.keys[childIndex] >= key) {
+			break;
+		}
+		this.heap[position] = childIndex;
+		this.positions[childIndex] = position;
+		position = child;
+	}
+	this.heap[position] = index;
+	this.positions[index] = position;
+}
+}
@@ -0,0 +1,240 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of searches for all locations that can be reached from a start location
+ * within a given travel time.
+ *
+ * A search expands locations in order of their travel time from the start location,
+ * and stops as soon as the next location lies beyond the travel time budget, so the
+ * rest of the network is never visited. The travel times are returned in an array
+ * indexed by the location index of the search. The arrays used by a search are reused
+ * by the next search, so searches must not run concurrently.
+ *
+ * The searches run on a snapshot of the network, so the travel times are those of the
+ * roads when the snapshot was taken or last refreshed.
+ */
+public class IsochroneSearch {
+
+/**
+ * Initialize this new search for all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public IsochroneSearch() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new search for the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to search.
+ */
+public IsochroneSearch(Collection<Road> roads) {
+	this(new GraphSnapshot(roads));
+}
+
+/**
+ * Initialize this new search for the given snapshot.
+ *
+ * @param  snapshot
+ *         The snapshot of the network to search.
+ * @post   | new.getSnapshot() == snapshot
+ * @throws IllegalArgumentException
+ *         | snapshot == null
+ */
+public IsochroneSearch(GraphSnapshot snapshot) throws IllegalArgumentException {
+	if(snapshot == null) {
+		throw new IllegalArgumentException();
+	}
+	this.snapshot = snapshot;
+	this.index = snapshot.getLocationIndex();
+	int size = this.index.getSize();
+	this.times = new double[size];
+	this.touched = new int[size];
+	this.settledOrder = new int[size];
+	this.heap = new IndexedHeap(size);
+	Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+}
+
+/**
+ * Variable registering the snapshot of the network.
+ */
+private GraphSnapshot snapshot;
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Arrays and heap holding the state of a search.
+ */
+private final double[] times;
+private final int[] touched;
+private int touchedCount = 0;
+private final int[] settledOrder;
+private final IndexedHeap heap;
+
+/**
+ * Variable registering the number of locations expanded by the last search.
+ */
+private int lastSettledCount = 0;
+
+/**
+ * Return the numbering of the locations of the network of this search.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Return the snapshot of the network of this search.
+ */
+@Basic
+public GraphSnapshot getSnapshot() {
+	return this.snapshot;
+}
+
+/**
+ * Let this search use the current travel times of the roads of its snapshot.
+ *
+ * @post | new.getSnapshot() == getSnapshot().refresh()
+ */
+public void refresh() {
+	this.snapshot = this.snapshot.refresh();
+}
+
+/**
+ * Return the number of locations expanded by the last search.
+ */
+@Basic
+public int getLastSettledCount() {
+	return this.lastSettledCount;
+}
+
+/**
+ * Check whether the given travel time can be used as the budget of a search.
+ *
+ * @return | result == (budget >= 0)
+ */
+public static boolean isValidBudget(double budget) {
+	return budget >= 0;
+}
+
+/**
+ * Return the travel time from the given start location to each location that can be
+ * reached within the given budget.
+ *
+ * @param  from
+ *         The location to start from.
+ * @param  budget
+ *         The largest travel time to search for.
+ * @return An array with the size of the location index of this search, holding the
+ *         travel time from the given start location to the location at each index if
+ *         it is at most the given budget, and positive infinity otherwise.
+ *       | for each i in 0..getLocationIndex().getSize()-1:
+ *       |   let time = new DijkstraRouter(roads).getFastestRoute(from, getLocationIndex().getLocationAt(i)).getLastTravelTime()
+ *       |   in if(time <= budget) then result[i] == (float) time else result[i] == Float.POSITIVE_INFINITY
+ * @throws IllegalArgumentException
+ *         | !Router.canHaveAsRouteEnd(from) || !isValidBudget(budget)
+ */
+public float[] getTravelTimesWithin(Location from, double budget) throws IllegalArgumentException {
+	if(!Router.canHaveAsRouteEnd(from) || !isValidBudget(budget)) {
+		throw new IllegalArgumentException();
+	}
+	float[] result = new float[this.index.getSize()];
+	Arrays.fill(result, Float.POSITIVE_INFINITY);
+	int settled = this.search(from, budget);
+	for(int i = 0;i<settled;i++) {
+		int node = this.settledOrder[i];
+		result[node] = (float) this.times[node];
+	}
+	this.reset();
+	return result;
+}
+
+/**
+ * Return all locations that can be reached from the given start location within the
+ * given budget, in order of their travel time.
+ *
+ * @param  from
+ *         The location to start from.
+ * @param  budget
+ *         The largest travel time to search for.
+ * @return The given start location, followed by each location of the network whose
+ *         travel time from it is at most the given budget.
+ * @throws IllegalArgumentException
+ *         | !Router.canHaveAsRouteEnd(from) || !isValidBudget(budget)
+ */
+public Location[] getLocationsWithin(Location from, double budget) throws IllegalArgumentException {
+	if(!Router.canHaveAsRouteEnd(from) || !isValidBudget(budget)) {
+		throw new IllegalArgumentException();
+	}
+	ArrayList<Location> result = new ArrayList<Location>();
+	int settled = this.search(from, budget);
+	if(settled == 0) {
+		result.add(from);
+	}
+	for(int i = 0;i<settled;i++) {
+		result.add(this.index.getLocationAt(this.settledOrder[i]));
+	}
+	this.reset();
+	return result.toArray(new Location[result.size()]);
+}
+
+/**
+ * Expand all locations within the given budget from the given start location.
+ *   The expanded locations are registered in the order in which they were expanded.
+ *
+ * @return The number of expanded locations.
+ */
+private int search(Location from, double budget) {
+	int source = this.index.getIndexOf(from);
+	int settled = 0;
+	if(source >= 0) {
+		int[] offsets = this.snapshot.offsets;
+		int[] heads = this.snapshot.heads;
+		float[] edgeTimes = this.snapshot.times;
+		this.reach(source, 0);
+		while(!this.heap.isEmpty() && this.heap.peekKey() <= budget) {
+			int node = this.heap.poll();
+			for(int edge = offsets[node];edge<offsets[node + 1];edge++) {
+				if(edgeTimes[edge] != Float.POSITIVE_INFINITY) {
+					this.reach(heads[edge], this.times[node] + edgeTimes[edge]);
+				}
+			}
+			this.settledOrder[settled++] = node;
+		}
+	}
+	this.lastSettledCount = settled;
+	return settled;
+}
+
+private void reach(int node, double time) {
+	if(time < this.times[node]) {
+		if(this.times[node] == Double.POSITIVE_INFINITY) {
+			this.touched[this.touchedCount++] = node;
+		}
+		this.times[node] = time;
+		this.heap.push(node, time);
+	}
+}
+
+/**
+ * Forget the travel times of the last search.
+ */
+private void reset() {
+	this.heap.clear();
+	for(int i = 0;i<this.touchedCount;i++) {
+		this.times[this.touched[i]] = Double.POSITIVE_INFINITY;
+	}
+	this.touchedCount = 0;
+}
+}
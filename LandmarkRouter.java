@@ -0,0 +1,315 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.stream.IntStream;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers computing the fastest route with A* search directed by landmarks.
+ *
+ * During preprocessing, a few landmark locations are picked far apart from each other,
+ * and the travel times from each landmark to every location and from every location to
+ * each landmark are stored as single precision floats. By the triangle inequality, the
+ * difference between the travel times of two locations to or from a landmark is a lower
+ * bound on the travel time between them.
+ *
+ * The tables remain lower bounds as long as travel times only increase: higher delays,
+ * new blockages, lower average speeds or longer roads. Once a road gets faster, is
+ * unblocked or reversed, the tables must be refreshed; refresh(changedRoads) only does
+ * so when one of the given roads actually got faster.
+ */
+public class LandmarkRouter extends Router {
+
+/**
+ * Initialize this new router for all roads of the default network, with 8 landmarks.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads(), 8)
+ */
+public LandmarkRouter() {
+	this(RoadNetwork.getDefault().getRoads(), 8);
+}
+
+/**
+ * Initialize this new router for the given roads, with the given number of landmarks.
+ *   The first landmark is the location farthest from the first location of the network;
+ *   each next landmark is the location farthest from all landmarks picked so far,
+ *   preferring locations none of them can reach.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ * @param  landmarkCount
+ *         The number of landmarks to pick.
+ * @throws IllegalArgumentException
+ *         | landmarkCount <= 0
+ */
+public LandmarkRouter(Collection<Road> roads, int landmarkCount) throws IllegalArgumentException {
+	if(landmarkCount <= 0) {
+		throw new IllegalArgumentException();
+	}
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	landmarkCount = Math.min(landmarkCount, size);
+	this.landmarks = new int[landmarkCount];
+	this.fromLandmarks = new float[landmarkCount][size];
+	this.toLandmarks = new float[landmarkCount][size];
+	if(size > 0) {
+		float[] nearest = new float[size];
+		this.index.searchTravelTimes(0, true, nearest);
+		for(int i = 0;i<landmarkCount;i++) {
+			int farthest = 0;
+			for(int node = 1;node<size;node++) {
+				if(nearest[node] > nearest[farthest]) {
+					farthest = node;
+				}
+			}
+			this.landmarks[i] = farthest;
+			this.index.searchTravelTimes(farthest, true, this.fromLandmarks[i]);
+			if(i == 0) {
+				Arrays.fill(nearest, Float.POSITIVE_INFINITY);
+			}
+			for(int node = 0;node<size;node++) {
+				nearest[node] = Math.min(nearest[node], this.fromLandmarks[i][node]);
+			}
+			nearest[farthest] = -1;
+		}
+	}
+	this.refresh();
+	this.times = new double[size];
+	this.bounds = new double[size];
+	this.parents = new Road[size];
+	Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+	Arrays.fill(this.bounds, -1);
+	this.heap = new IndexedHeap(size);
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Array registering the index of each landmark.
+ */
+private final int[] landmarks;
+
+/**
+ * Arrays registering, per landmark, the travel time from the landmark to each location
+ * and from each location to the landmark.
+ */
+private final float[][] fromLandmarks;
+private final float[][] toLandmarks;
+
+/**
+ * Variable registering the margin subtracted from each bound, to absorb the rounding
+ * of the travel times to single precision.
+ */
+private double margin;
+
+/**
+ * Maps registering, for each road, its first endpoint at the last refresh, and its
+ * travel time from that endpoint to the other one and back at the last refresh.
+ */
+private final HashMap<Road,Location> refreshedEndpoints = new HashMap<Road,Location>();
+private final HashMap<Road,double[]> refreshedTimes = new HashMap<Road,double[]>();
+
+/**
+ * Arrays and heap holding the state of a query.
+ */
+private final double[] times;
+private final double[] bounds;
+private final Road[] parents;
+private final IndexedHeap heap;
+private final ArrayList<Integer> touched = new ArrayList<Integer>();
+
+/**
+ * Return the landmarks of this router.
+ */
+public Location[] getLandmarks() {
+	Location[] result = new Location[this.landmarks.length];
+	for(int i = 0;i<result.length;i++) {
+		result[i] = this.index.getLocationAt(this.landmarks[i]);
+	}
+	return result;
+}
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Recompute the travel times between the landmarks and all locations, for all
+ * landmarks in parallel, and remember the current travel time of every road.
+ */
+public void refresh() {
+	IntStream.range(0, 2*this.landmarks.length).parallel().forEach(i -> {
+		if(i%2 == 0) {
+			this.index.searchTravelTimes(this.landmarks[i/2], true, this.fromLandmarks[i/2]);
+		}
+		else {
+			this.index.searchTravelTimes(this.landmarks[i/2], false, this.toLandmarks[i/2]);
+		}
+	});
+	// The bounds subtract times of both tables, so the margin covers the rounding of the largest time of either.
+	float maximum = 0;
+	for(float[][] tables:new float[][][] {this.fromLandmarks, this.toLandmarks}) {
+		for(float[] table:tables) {
+			for(float time:table) {
+				if(time != Float.POSITIVE_INFINITY) {
+					maximum = Math.max(maximum, time);
+				}
+			}
+		}
+	}
+	this.margin = 2*Math.ulp(maximum);
+	this.refreshedEndpoints.clear();
+	this.refreshedTimes.clear();
+	for(int node = 0;node<this.index.getSize();node++) {
+		for(Road road:this.index.getLocationAt(node).adjoiningRoads) {
+			if(!this.refreshedEndpoints.containsKey(road)) {
+				this.refreshedEndpoints.put(road, road.endpoint1);
+				this.refreshedTimes.put(road, new double[] {getTravelTimeFrom(road, road.endpoint1),
+						getTravelTimeFrom(road, road.endpoint2)});
+			}
+		}
+	}
+}
+
+/**
+ * Refresh this router if one of the given roads got faster since the last refresh
+ * in a direction it is driven in, or if the network changed in another way.
+ *
+ * @param  changedRoads
+ *         The roads whose delay, blockage, speed, length or direction changed.
+ * @return True if and only if the tables were recomputed.
+ * @effect | if(result) then refresh()
+ */
+public boolean refresh(Collection<Road> changedRoads) {
+	for(Road road:changedRoads) {
+		Location first = this.refreshedEndpoints.get(road);
+		if(first == null) {
+			if(road.isTerminated() || (this.index.getIndexOf(road.endpoint1) < 0 && this.index.getIndexOf(road.endpoint2) < 0)) {
+				continue;
+			}
+			this.refresh();
+			return true;
+		}
+		Location second = first == road.endpoint1 ? road.endpoint2 : road.endpoint1;
+		double[] refreshed = this.refreshedTimes.get(road);
+		if(getTravelTimeFrom(road, first) < refreshed[0] || getTravelTimeFrom(road, second) < refreshed[1]) {
+			this.refresh();
+			return true;
+		}
+	}
+	return false;
+}
+
+/**
+ * Return a lower bound on the travel time from the location at the given index to the
+ * location at the given target index, based on all landmarks.
+ */
+private double getBound(int node, int target) {
+	double bound = 0;
+	for(int i = 0;i<this.landmarks.length;i++) {
+		double forward = (double) this.fromLandmarks[i][target] - this.fromLandmarks[i][node];
+		double backward = (double) this.toLandmarks[i][node] - this.toLandmarks[i][target];
+		// NaN when neither location can be reached from or reach the landmark
+		if(forward > bound) {
+			bound = forward;
+		}
+		if(backward > bound) {
+			bound = backward;
+		}
+	}
+	return Math.max(0, bound - this.margin);
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *   Locations are expanded in order of their travel time from the start location plus
+ *   their bound towards the end location. Rounded bounds may be slightly inconsistent,
+ *   so a location is expanded again whenever a faster way to it is found.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(from == to) {
+		this.setLastSettledCount(0);
+		return this.buildRoute(from, new ArrayList<Road>());
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	this.reach(source, 0, null, target);
+	int settled = 0;
+	boolean found = false;
+	while(!this.heap.isEmpty() && this.heap.peekKey() != Double.POSITIVE_INFINITY) {
+		int node = this.heap.poll();
+		settled++;
+		if(node == target) {
+			found = true;
+			break;
+		}
+		Location location = this.index.getLocationAt(node);
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == location;
+			Location other = getDestination(road, direction);
+			int next = this.index.getIndexOf(other);
+			if(next < 0 || other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			this.reach(next, this.times[node] + road.getTravelTime(direction), road, target);
+		}
+	}
+	this.setLastSettledCount(settled);
+	Route route = null;
+	if(found) {
+		ArrayList<Road> roads = new ArrayList<Road>();
+		Location tracker = to;
+		while(tracker != from) {
+			Road road = this.parents[this.index.getIndexOf(tracker)];
+			roads.add(0, road);
+			tracker = road.endpoint2 == tracker ? road.endpoint1 : road.endpoint2;
+		}
+		route = this.buildRoute(from, roads);
+	}
+	else {
+		this.setNoRouteFound();
+	}
+	this.heap.clear();
+	for(int node:this.touched) {
+		this.times[node] = Double.POSITIVE_INFINITY;
+		this.bounds[node] = -1;
+	}
+	this.touched.clear();
+	return route;
+}
+
+/**
+ * Register that the location at the given index is reached at the given travel time
+ * over the given road, if that is faster than before.
+ */
+private void reach(int node, double time, Road road, int target) {
+	if(time < this.times[node]) {
+		if(this.bounds[node] < 0) {
+			this.touched.add(node);
+			this.bounds[node] = this.getBound(node, target);
+		}
+		this.times[node] = time;
+		this.parents[node] = road;
+		this.heap.push(node, time + this.bounds[node]);
+	}
+}
+}
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import be.kuleuven.cs.som.annotate.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.*;
 public class Location {
 
@@ -36,17 +37,51 @@ public class Location {
  *       | if (isValidAddress(address))
  *       |   then new.getAddress() == address
  *       |   else new.getAddress() == "Null"
+ * @effect The new location belongs to the default network, which only refers to it
+ *         weakly.
+ *       | this(RoadNetwork.getDefault(), coordinates, address)
  */
 
 public Location(double[] coordinates, String address) {
+	this(RoadNetwork.getDefault(), coordinates, address);
+}
+
+/**
+ * Initialize this new location of the given network with given coordinate and given address.
+ *
+ * @param  network
+ *         The network for this new location.
+ * @post   The new location belongs to the given network.
+ *       | new.getNetwork() == network
+ * @effect The new location is initialized with the given coordinate and address.
+ *       | this(coordinates, address)
+ * @throws IllegalArgumentException
+ *         The given network is not effective.
+ *       | network == null
+ */
+public Location(RoadNetwork network, double[] coordinates, String address) throws IllegalArgumentException {
+	if(network == null) {
+		throw new IllegalArgumentException();
+	}
 	assert this.canHaveAsCoordinates(coordinates);
+	this.network = network;
 	this.coordinates = coordinates.clone();
 		setAddress(address);
+	this.serial = network.getNextSerial();
+	network.addLocation(this);
 }
+/**
+ * Variable registering the network of this location
+ */
+private final RoadNetwork network;
+/**
+ * Number registering the order in which this location was created in its network
+ */
+final long serial;
 /**
  * Variable registering the state of the object
  */
-private boolean isTerminated = false;
+private volatile boolean isTerminated = false;
 /**
  * Variable registering the coordinate of this location.
  */
@@ -56,9 +91,10 @@ private double[] coordinates;
  */
 private String address;
 /**
- * A HashSet registering the adjoining roads for a given location
+ * A concurrent set registering the adjoining roads for a given location,
+ * only changed while holding the stripe of this location in its network
  */
-Collection<Road>adjoiningRoads = new HashSet<Road>();
+Collection<Road>adjoiningRoads = ConcurrentHashMap.newKeySet();
 
 /**
  * A method to return the value of the isTerminated variable;
@@ -69,6 +105,14 @@ public boolean isTerminated() {
 	return this.isTerminated;
 }
 
+/**
+ * Return the network this location belongs to.
+ */
+@Basic @Raw @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
 /**
  * A method to terminate a Location object
  * 
@@ -79,14 +123,26 @@ public boolean isTerminated() {
  */
 
 public void terminate() {
-	if(this.isTerminated() == false) {
-		Collection<Road>cloneRoads = new HashSet<Road>();
-		cloneRoads.addAll(this.adjoiningRoads);
-		for(Road road:cloneRoads) {
-			road.terminate();
+	// Once terminated under its stripe, no new road can be connected to this location.
+	int[] stripes = this.network.lockStripes(this, this);
+	try {
+		if(this.isTerminated()) {
+			return;
 		}
-	this.adjoiningRoads.clear();
-	this.isTerminated = true;
+		this.isTerminated = true;
+	}
+	finally {
+		this.network.unlockStripes(stripes);
+	}
+	Collection<Road>cloneRoads = new HashSet<Road>();
+	cloneRoads.addAll(this.adjoiningRoads);
+	for(Road road:cloneRoads) {
+		road.terminate();
+	}
+	this.network.removeLocation(this);
+	ChangeBus bus = this.network.getChangeBus();
+	if(bus.hasSubscribers()) {
+		bus.publish(new ChangeEvent(ChangeEvent.Kind.LOCATION_TERMINATED, null, this, true, 0));
 	}
 }
 //***********************************************************************************************//
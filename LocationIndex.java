@@ -0,0 +1,127 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class numbering the locations of a network with dense indices, starting at 0.
+ * The locations of a network are the endpoints of its roads that are not terminated.
+ * Locations are numbered in the order in which the roads are given, so the same
+ * roads always lead to the same numbering.
+ *
+ * @invar  Each index below the size of this index belongs to exactly one location.
+ *       | for each i in 0..getSize()-1: getIndexOf(getLocationAt(i)) == i
+ */
+public class LocationIndex {
+
+/**
+ * Initialize this new index with the endpoints of the given roads.
+ *
+ * @param  roads
+ *         The roads whose endpoints must be numbered.
+ * @post   Each endpoint of a road that is not terminated has an index.
+ *       | for each road in roads: if(!road.isTerminated())
+ *       |   new.getIndexOf(road.getEndpoints()[0]) >= 0 && new.getIndexOf(road.getEndpoints()[1]) >= 0
+ */
+public LocationIndex(Collection<Road> roads) {
+	for(Road road:roads) {
+		if(!road.isTerminated()) {
+			this.addLocation(road.endpoint1);
+			this.addLocation(road.endpoint2);
+		}
+	}
+}
+
+/**
+ * List registering the location at each index.
+ */
+private final ArrayList<Location> locations = new ArrayList<Location>();
+
+/**
+ * Map registering the index of each location.
+ */
+private final HashMap<Location,Integer> indices = new HashMap<Location,Integer>();
+
+/**
+ * Give the given location the next index, if it has none yet.
+ */
+private void addLocation(Location location) {
+	if(!this.indices.containsKey(location)) {
+		this.indices.put(location, this.locations.size());
+		this.locations.add(location);
+	}
+}
+
+/**
+ * Return the number of locations in this index.
+ */
+@Basic
+public int getSize() {
+	return this.locations.size();
+}
+
+/**
+ * Return the location at the given index.
+ *
+ * @throws IndexOutOfBoundsException
+ *         | index < 0 || index >= getSize()
+ */
+public Location getLocationAt(int index) throws IndexOutOfBoundsException {
+	return this.locations.get(index);
+}
+
+/**
+ * Return the index of the given location, or -1 if it is not part of the network.
+ */
+public int getIndexOf(Location location) {
+	Integer index = this.indices.get(location);
+	if(index == null) {
+		return -1;
+	}
+	return index;
+}
+
+/**
+ * Compute the fastest travel time between the location at the given index and every
+ * location of this index, over the roads that can currently be driven.
+ *
+ * @param  source
+ *         The index of the location to search from.
+ * @param  forward
+ *         True to compute the travel times from the source to each location,
+ *         false to compute the travel times from each location to the source.
+ * @param  times
+ *         The array to store the travel time of each location in, by index.
+ *         Locations that cannot be reached get positive infinity.
+ */
+void searchTravelTimes(int source, boolean forward, float[] times) {
+	double[] exact = new double[this.getSize()];
+	Arrays.fill(exact, Double.POSITIVE_INFINITY);
+	IndexedHeap heap = new IndexedHeap(this.getSize());
+	exact[source] = 0;
+	heap.push(source, 0);
+	while(!heap.isEmpty()) {
+		int node = heap.poll();
+		Location location = this.locations.get(node);
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = forward ? road.endpoint1 == location : road.endpoint2 == location;
+			Location other = forward ? Router.getDestination(road, direction) : Router.getOrigin(road, direction);
+			int next = this.getIndexOf(other);
+			if(next < 0 || other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			double time = exact[node] + road.getTravelTime(direction);
+			if(time < exact[next]) {
+				exact[next] = time;
+				heap.push(next, time);
+			}
+		}
+	}
+	for(int i = 0;i<times.length;i++) {
+		times[i] = (float) exact[i];
+	}
+}
+}
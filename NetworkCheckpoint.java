@@ -0,0 +1,558 @@
+package connections;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of checkpoints of the complete state of a network: its locations, its roads
+ * with their delays, blockages, orientation, travel time profiles and terminated state,
+ * and a collection of routes, including the routes nested in them.
+ *
+ * A checkpoint file starts with a magic number and the version of the format, followed
+ * by a dictionary of the words occurring in the addresses of the locations, the
+ * locations, the roads and the routes, and ends with a CRC-32 checksum of everything
+ * before it. Counts, indices and lengths are stored as variable-length integers, so
+ * small numbers take a single byte; each address is stored as the indices of its words
+ * in the dictionary. Nested routes are stored before the routes containing them, and a
+ * route used several times is stored once.
+ *
+ * Restoring a checkpoint reads the whole file, checks its checksum and creates all
+ * objects directly through their constructors and setters.
+ */
+public class NetworkCheckpoint {
+
+/**
+ * The magic number every checkpoint file starts with.
+ */
+public static final int MAGIC = 0x524E4350;
+
+/**
+ * The version of the format written by this class.
+ */
+public static final int VERSION = 1;
+
+/**
+ * The flags of the locations and roads in a checkpoint file.
+ */
+private static final int TERMINATED = 1;
+private static final int BLOCKED_FORWARD = 2;
+private static final int BLOCKED_BACKWARD = 4;
+private static final int PROFILE_FORWARD = 8;
+private static final int PROFILE_BACKWARD = 16;
+
+/**
+ * Write a checkpoint of the given roads, their endpoints and the given routes to a
+ * file at the given path.
+ *   Roads used by the given routes are also written, as are the starting locations of
+ *   the routes. Terminated roads and locations are written as terminated.
+ *
+ * @param  roads
+ *         The roads to write.
+ * @param  routes
+ *         The routes to write.
+ * @param  path
+ *         The path of the file to write.
+ * @throws IOException
+ *         The file cannot be written.
+ */
+public static void write(Collection<Road> roads, Collection<Route> routes, Path path) throws IOException {
+	IdentityHashMap<Route,Integer> routeIndices = new IdentityHashMap<Route,Integer>();
+	ArrayList<Route> routeList = new ArrayList<Route>();
+	for(Route route:routes) {
+		addRoute(route, routeIndices, routeList);
+	}
+	HashMap<Road,Integer> roadIndices = new HashMap<Road,Integer>();
+	ArrayList<Road> roadList = new ArrayList<Road>();
+	for(Road road:roads) {
+		addObject(road, roadIndices, roadList);
+	}
+	for(Route route:routeList) {
+		for(Object segment:route.getRouteSegments()) {
+			if(segment instanceof Road) {
+				addObject((Road) segment, roadIndices, roadList);
+			}
+		}
+	}
+	HashMap<Location,Integer> locationIndices = new HashMap<Location,Integer>();
+	ArrayList<Location> locationList = new ArrayList<Location>();
+	for(Road road:roadList) {
+		addObject(road.endpoint1, locationIndices, locationList);
+		addObject(road.endpoint2, locationIndices, locationList);
+	}
+	for(Route route:routeList) {
+		addObject(route.getStartingLocation(), locationIndices, locationList);
+	}
+	HashMap<String,Integer> wordIndices = new HashMap<String,Integer>();
+	ArrayList<String> wordList = new ArrayList<String>();
+	for(Location location:locationList) {
+		for(String word:location.getAddress().split(" ", -1)) {
+			addObject(word, wordIndices, wordList);
+		}
+	}
+	Encoder out = new Encoder();
+	out.writeInt(MAGIC);
+	out.writeVarInt(VERSION);
+	out.writeVarInt(wordList.size());
+	for(String word:wordList) {
+		out.writeString(word);
+	}
+	out.writeVarInt(locationList.size());
+	for(Location location:locationList) {
+		double[] coordinates = location.getCoordinates();
+		out.writeDouble(coordinates[0]);
+		out.writeDouble(coordinates[1]);
+		out.write(location.isTerminated() ? TERMINATED : 0);
+		String[] words = location.getAddress().split(" ", -1);
+		out.writeVarInt(words.length);
+		for(String word:words) {
+			out.writeVarInt(wordIndices.get(word));
+		}
+	}
+	out.writeVarInt(roadList.size());
+	for(Road road:roadList) {
+		boolean twoWay = road.canBeTraversedInDirection(false);
+		int flags = 0;
+		if(road.isTerminated()) {
+			flags = flags | TERMINATED;
+		}
+		if(road.getIsBlocked(true)) {
+			flags = flags | BLOCKED_FORWARD;
+		}
+		if(twoWay && road.getIsBlocked(false)) {
+			flags = flags | BLOCKED_BACKWARD;
+		}
+		if(road.getTravelTimeProfile(true) != null) {
+			flags = flags | PROFILE_FORWARD;
+		}
+		if(twoWay && road.getTravelTimeProfile(false) != null) {
+			flags = flags | PROFILE_BACKWARD;
+		}
+		out.write(road instanceof OneWayRoad ? GraphFile.ONE_WAY_ROAD : road instanceof AlternatingRoad ? GraphFile.ALTERNATING_ROAD : GraphFile.TWO_WAY_ROAD);
+		out.write(flags);
+		out.writeString(road.getIdentification());
+		out.writeVarInt(locationIndices.get(road.endpoint1));
+		out.writeVarInt(locationIndices.get(road.endpoint2));
+		out.writeVarInt(road.getLength());
+		out.writeFloat(road.getSpeedLimit());
+		out.writeFloat(road.getAverageSpeed());
+		out.writeFloat(road.getDelay(true));
+		if(twoWay) {
+			out.writeFloat(road.getDelay(false));
+		}
+		for(int i = 0;i<2;i++) {
+			if((flags & (i == 0 ? PROFILE_FORWARD : PROFILE_BACKWARD)) != 0) {
+				TravelTimeProfile profile = road.getTravelTimeProfile(i == 0);
+				float[] times = profile.getTimes();
+				float[] travelTimes = profile.getTravelTimes();
+				out.writeVarInt(times.length);
+				for(int j = 0;j<times.length;j++) {
+					out.writeFloat(times[j]);
+					out.writeFloat(travelTimes[j]);
+				}
+			}
+		}
+	}
+	out.writeVarInt(routeList.size());
+	for(Route route:routeList) {
+		Object[] segments = route.getRouteSegments();
+		out.writeVarInt(locationIndices.get(route.getStartingLocation()));
+		out.writeVarInt(segments.length);
+		for(Object segment:segments) {
+			if(segment instanceof Road) {
+				out.writeVarInt(roadIndices.get(segment) << 1);
+			}
+			else {
+				out.writeVarInt(routeIndices.get(segment) << 1 | 1);
+			}
+		}
+	}
+	CRC32 checksum = new CRC32();
+	checksum.update(out.getBuffer(), 0, out.size());
+	out.writeInt((int) checksum.getValue());
+	try(OutputStream stream = new BufferedOutputStream(Files.newOutputStream(path))) {
+		out.writeTo(stream);
+	}
+}
+
+/**
+ * Add the given route to the given list after all routes nested in it, unless it has
+ * been added before.
+ */
+private static void addRoute(Route route, IdentityHashMap<Route,Integer> indices, ArrayList<Route> list) {
+	if(!indices.containsKey(route)) {
+		for(Object segment:route.getRouteSegments()) {
+			if(segment instanceof Route) {
+				addRoute((Route) segment, indices, list);
+			}
+		}
+		indices.put(route, list.size());
+		list.add(route);
+	}
+}
+
+/**
+ * Add the given object to the given list, unless it has been added before.
+ */
+private static <T> void addObject(T object, HashMap<T,Integer> indices, ArrayList<T> list) {
+	if(!indices.containsKey(object)) {
+		indices.put(object, list.size());
+		list.add(object);
+	}
+}
+
+/**
+ * Write a checkpoint of the roads and routes of the given network to a file at the
+ * given path.
+ *
+ * @effect | write(network.getRoads(), network.getRoutes(), path)
+ */
+public static void write(RoadNetwork network, Path path) throws IOException {
+	write(network.getRoads(), network.getRoutes(), path);
+}
+
+/**
+ * Initialize this new checkpoint by restoring the checkpoint file at the given path
+ * in the default network.
+ *
+ * @effect | this(path, RoadNetwork.getDefault())
+ */
+public NetworkCheckpoint(Path path) throws IOException, IllegalArgumentException {
+	this(path, RoadNetwork.getDefault());
+}
+
+/**
+ * Initialize this new checkpoint by restoring the checkpoint file at the given path
+ * in the given network.
+ *   All locations, roads and routes of the file are created anew, and the routes are
+ *   registered in the network. Terminated roads and locations are created and then
+ *   terminated, after the routes using them.
+ *
+ * @param  path
+ *         The path of the file to restore.
+ * @param  network
+ *         The network to restore the file in.
+ * @throws IOException
+ *         The file cannot be read, is not a checkpoint file, has another version, or
+ *         its checksum does not match its contents.
+ * @throws IllegalArgumentException
+ *         The network is not effective, or the identification of some road of the
+ *         file is in use in it.
+ */
+public NetworkCheckpoint(Path path, RoadNetwork network) throws IOException, IllegalArgumentException {
+	if(network == null) {
+		throw new IllegalArgumentException();
+	}
+	this.network = network;
+	byte[] bytes = Files.readAllBytes(path);
+	if(bytes.length < 8) {
+		throw new IOException("Not a checkpoint file: " + path);
+	}
+	ByteBuffer in = ByteBuffer.wrap(bytes);
+	CRC32 checksum = new CRC32();
+	checksum.update(bytes, 0, bytes.length - 4);
+	if(in.getInt(0) != MAGIC) {
+		throw new IOException("Not a checkpoint file: " + path);
+	}
+	if(in.getInt(bytes.length - 4) != (int) checksum.getValue()) {
+		throw new IOException("Corrupt checkpoint file: " + path);
+	}
+	try {
+		in.position(4);
+		int version = readVarInt(in);
+		if(version != VERSION) {
+			throw new IOException("Unsupported checkpoint file version " + version + ": " + path);
+		}
+		this.read(in);
+	}
+	catch(BufferUnderflowException | IndexOutOfBoundsException exc) {
+		this.undo();
+		throw new IOException("Corrupt checkpoint file: " + path);
+	}
+	catch(IOException | RuntimeException exc) {
+		this.undo();
+		throw exc;
+	}
+}
+
+/**
+ * Remove the routes restored so far from the network, and terminate the roads and
+ * locations restored so far, so a restore that fails leaves the network as it was.
+ */
+private void undo() {
+	for(Route route:this.routes) {
+		this.network.removeRoute(route);
+	}
+	for(Road road:this.roads) {
+		if(road != null) {
+			road.terminate();
+		}
+	}
+	for(Location location:this.locations) {
+		location.terminate();
+	}
+	this.routes.clear();
+	this.roads.clear();
+	this.locations.clear();
+}
+
+/**
+ * Variable registering the network this checkpoint is restored in.
+ */
+private final RoadNetwork network;
+
+/**
+ * Return the network this checkpoint is restored in.
+ */
+@Basic @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
+/**
+ * Lists registering the restored locations, roads and routes, in the order of the file.
+ */
+private final ArrayList<Location> locations = new ArrayList<Location>();
+private final ArrayList<Road> roads = new ArrayList<Road>();
+private final ArrayList<Route> routes = new ArrayList<Route>();
+
+/**
+ * Return the restored locations.
+ */
+public List<Location> getLocations() {
+	return new ArrayList<Location>(this.locations);
+}
+
+/**
+ * Return the restored roads.
+ */
+public List<Road> getRoads() {
+	return new ArrayList<Road>(this.roads);
+}
+
+/**
+ * Return the restored routes, with each nested route before the routes containing it.
+ */
+public List<Route> getRoutes() {
+	return new ArrayList<Route>(this.routes);
+}
+
+/**
+ * Create the locations, roads and routes stored in the given buffer.
+ */
+private void read(ByteBuffer in) throws IOException, IllegalArgumentException {
+	String[] words = new String[readVarInt(in)];
+	for(int i = 0;i<words.length;i++) {
+		words[i] = readString(in);
+	}
+	int locationCount = readVarInt(in);
+	boolean[] terminatedLocations = new boolean[locationCount];
+	double[][] coordinates = new double[locationCount][];
+	String[] addresses = new String[locationCount];
+	StringBuilder address = new StringBuilder();
+	for(int i = 0;i<locationCount;i++) {
+		coordinates[i] = new double[] {in.getDouble(), in.getDouble()};
+		terminatedLocations[i] = (in.get() & TERMINATED) != 0;
+		address.setLength(0);
+		int wordCount = readVarInt(in);
+		for(int j = 0;j<wordCount;j++) {
+			if(j > 0) {
+				address.append(' ');
+			}
+			address.append(words[readVarInt(in)]);
+		}
+		addresses[i] = address.toString();
+	}
+	int roadCount = readVarInt(in);
+	int[] positions = new int[roadCount];
+	HashSet<String> identifications = new HashSet<String>();
+	for(int i = 0;i<roadCount;i++) {
+		positions[i] = in.position();
+		byte kind = in.get();
+		int flags = in.get();
+		String identification = readString(in);
+		if((flags & TERMINATED) == 0 && !identifications.add(identification) || !this.network.isValidIdentification(identification)) {
+			throw new IllegalArgumentException();
+		}
+		readVarInt(in);
+		readVarInt(in);
+		readVarInt(in);
+		in.position(in.position() + (kind == GraphFile.TWO_WAY_ROAD ? 16 : 12));
+		for(int j = 0;j<2;j++) {
+			if((flags & (j == 0 ? PROFILE_FORWARD : PROFILE_BACKWARD)) != 0) {
+				int size = readVarInt(in);
+				in.position(in.position() + 8*size);
+			}
+		}
+		this.roads.add(null);
+	}
+	// The locations are only created once the identifications of the roads are known to be free.
+	for(int i = 0;i<locationCount;i++) {
+		this.locations.add(new Location(this.network, coordinates[i], addresses[i]));
+	}
+	int end = in.position();
+	// Terminated roads free their identification, so they are created before the other roads.
+	for(int pass = 0;pass<2;pass++) {
+		for(int i = 0;i<roadCount;i++) {
+			in.position(positions[i]);
+			if(((in.get(positions[i] + 1) & TERMINATED) != 0) == (pass == 0)) {
+				this.roads.set(i, this.readRoad(in));
+			}
+		}
+	}
+	in.position(end);
+	int routeCount = readVarInt(in);
+	for(int i = 0;i<routeCount;i++) {
+		Location start = this.locations.get(readVarInt(in));
+		Object[] segments = new Object[readVarInt(in)];
+		for(int j = 0;j<segments.length;j++) {
+			int segment = readVarInt(in);
+			segments[j] = (segment & 1) == 0 ? this.roads.get(segment >>> 1) : this.routes.get(segment >>> 1);
+		}
+		this.routes.add(this.network.createRoute(start, segments));
+	}
+	if(in.remaining() != 4) {
+		throw new IOException("Corrupt checkpoint file");
+	}
+	for(int i = 0;i<locationCount;i++) {
+		if(terminatedLocations[i]) {
+			this.locations.get(i).terminate();
+		}
+	}
+}
+
+/**
+ * Create the road stored at the position of the given buffer.
+ */
+private Road readRoad(ByteBuffer in) {
+	byte kind = in.get();
+	int flags = in.get();
+	String identification = readString(in);
+	Location first = this.locations.get(readVarInt(in));
+	Location second = this.locations.get(readVarInt(in));
+	int length = readVarInt(in);
+	float speedLimit = in.getFloat();
+	float averageSpeed = in.getFloat();
+	Road road;
+	if(kind == GraphFile.ONE_WAY_ROAD) {
+		road = new OneWayRoad(identification, first, second, length, speedLimit, averageSpeed);
+	}
+	else if(kind == GraphFile.ALTERNATING_ROAD) {
+		road = new AlternatingRoad(identification, first, second, length, speedLimit, averageSpeed);
+	}
+	else {
+		road = new TwoWayRoad(identification, first, second, length, speedLimit, averageSpeed);
+	}
+	float[] delays = new float[] {in.getFloat(), kind == GraphFile.TWO_WAY_ROAD ? in.getFloat() : 0};
+	for(int i = 0;i<2;i++) {
+		boolean direction = i == 0;
+		if(road.canBeTraversedInDirection(direction)) {
+			if(Road.isValidDelay(delays[i])) {
+				road.setDelay(delays[i], direction);
+			}
+			road.setIsBlocked((flags & (direction ? BLOCKED_FORWARD : BLOCKED_BACKWARD)) != 0, direction);
+		}
+		if((flags & (direction ? PROFILE_FORWARD : PROFILE_BACKWARD)) != 0) {
+			float[] times = new float[readVarInt(in)];
+			float[] travelTimes = new float[times.length];
+			for(int j = 0;j<times.length;j++) {
+				times[j] = in.getFloat();
+				travelTimes[j] = in.getFloat();
+			}
+			road.setTravelTimeProfile(TravelTimeProfile.getProfile(times, travelTimes), direction);
+		}
+	}
+	if((flags & TERMINATED) != 0) {
+		road.terminate();
+	}
+	return road;
+}
+
+/**
+ * Return the variable-length integer at the position of the given buffer.
+ */
+private static int readVarInt(ByteBuffer in) {
+	int result = 0;
+	for(int shift = 0;shift<32;shift = shift + 7) {
+		byte next = in.get();
+		result = result | (next & 0x7F) << shift;
+		if(next >= 0) {
+			return result;
+		}
+	}
+	throw new IndexOutOfBoundsException();
+}
+
+/**
+ * Return the string at the position of the given buffer.
+ */
+private static String readString(ByteBuffer in) {
+	int length = readVarInt(in);
+	String result = new String(in.array(), in.position(), length, StandardCharsets.UTF_8);
+	in.position(in.position() + length);
+	return result;
+}
+
+/**
+ * A class of growing byte arrays to encode a checkpoint in.
+ */
+private static class Encoder extends ByteArrayOutputStream {
+
+	Encoder() {
+		super(1 << 16);
+	}
+
+	byte[] getBuffer() {
+		return this.buf;
+	}
+
+	void writeInt(int value) {
+		this.write(value >>> 24);
+		this.write(value >>> 16);
+		this.write(value >>> 8);
+		this.write(value);
+	}
+
+	void writeFloat(float value) {
+		this.writeInt(Float.floatToIntBits(value));
+	}
+
+	void writeDouble(double value) {
+		long bits = Double.doubleToLongBits(value);
+		this.writeInt((int) (bits >>> 32));
+		this.writeInt((int) bits);
+	}
+
+	/**
+	 * Write the given integer in groups of seven bits, lowest first, with the highest
+	 * bit of each byte set if another group follows.
+	 */
+	void writeVarInt(int value) {
+		while((value & ~0x7F) != 0) {
+			this.write(value & 0x7F | 0x80);
+			value = value >>> 7;
+		}
+		this.write(value);
+	}
+
+	void writeString(String value) {
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		this.writeVarInt(bytes.length);
+		this.write(bytes, 0, bytes.length);
+	}
+}
+}
@@ -0,0 +1,541 @@
+package connections;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of importers creating locations and roads from exported files, one record
+ * at a time.
+ *
+ * An importer reads CSV files and GeoJSON feature collections. In a CSV file, each
+ * line is a record whose first field gives its kind:
+ *   location,key,x,y,address
+ *   road,identification,kind,from,to,length,speedLimit,averageSpeed
+ * where kind is two-way, one-way or alternating, and from and to are the keys of
+ * locations imported before. Fields may be quoted with double quotes, so addresses can
+ * contain commas; empty lines and lines starting with # are skipped. In a GeoJSON
+ * file, each Point feature is a location and each LineString feature is a road, with
+ * the same fields as properties; a location takes its coordinates from its geometry.
+ *
+ * Only the record being read is kept in memory besides the created objects and an
+ * index of the locations by key, which resolves the endpoints of the roads. Each
+ * record is checked before anything is created for it. Invalid records are skipped
+ * and reported as errors with their line or feature number, instead of aborting the
+ * import. A progress listener is told the number of records read at regular intervals.
+ */
+public class NetworkImporter {
+
+/**
+ * Initialize this new importer without progress listener, importing into the default
+ * network.
+ *
+ * @effect | this(RoadNetwork.getDefault())
+ */
+public NetworkImporter() {
+	this(RoadNetwork.getDefault());
+}
+
+/**
+ * Initialize this new importer without progress listener, importing into the given
+ * network.
+ *
+ * @param  network
+ *         The network to import the locations and roads into.
+ * @throws IllegalArgumentException
+ *         | network == null
+ */
+public NetworkImporter(RoadNetwork network) throws IllegalArgumentException {
+	if(network == null) {
+		throw new IllegalArgumentException();
+	}
+	this.network = network;
+}
+
+/**
+ * Variable registering the network the locations and roads are imported into.
+ */
+private final RoadNetwork network;
+
+/**
+ * Return the network the locations and roads are imported into.
+ */
+@Basic @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
+/**
+ * Map registering the imported locations by key.
+ */
+private final HashMap<String,Location> locations = new HashMap<String,Location>();
+
+/**
+ * List registering the imported roads, in the order in which they were imported.
+ */
+private final ArrayList<Road> roads = new ArrayList<Road>();
+
+/**
+ * List registering the errors of the skipped records.
+ */
+private final ArrayList<String> errors = new ArrayList<String>();
+
+/**
+ * Variable registering the number of records read by this importer.
+ */
+private long recordCount = 0;
+
+/**
+ * Variables registering the listener told about the progress of an import, and the
+ * number of records between two reports.
+ */
+private LongConsumer progressListener = null;
+private int progressInterval = 10000;
+
+/**
+ * Return the location imported with the given key, or null if there is none.
+ */
+public Location getLocation(String key) {
+	return this.locations.get(key);
+}
+
+/**
+ * Return the number of locations imported by this importer.
+ */
+public int getLocationCount() {
+	return this.locations.size();
+}
+
+/**
+ * Return the roads imported by this importer, in the order in which they were imported.
+ */
+public List<Road> getRoads() {
+	return new ArrayList<Road>(this.roads);
+}
+
+/**
+ * Return a description of each record skipped by this importer.
+ */
+public List<String> getErrors() {
+	return new ArrayList<String>(this.errors);
+}
+
+/**
+ * Return the number of records read by this importer, including skipped records.
+ */
+@Basic
+public long getRecordCount() {
+	return this.recordCount;
+}
+
+/**
+ * Let the given listener be told the number of records read after every given number
+ * of records, and at the end of each import.
+ *
+ * @param  listener
+ *         The listener, or null to stop reporting progress.
+ * @param  interval
+ *         The number of records between two reports.
+ * @throws IllegalArgumentException
+ *         | interval <= 0
+ */
+public void setProgressListener(LongConsumer listener, int interval) throws IllegalArgumentException {
+	if(interval <= 0) {
+		throw new IllegalArgumentException();
+	}
+	this.progressListener = listener;
+	this.progressInterval = interval;
+}
+
+/**
+ * Import all records of the given CSV file.
+ *
+ * @param  reader
+ *         The reader to read the file from.
+ * @throws IOException
+ *         The file cannot be read, or has a quoted field that is not closed.
+ */
+public void importCsv(Reader reader) throws IOException {
+	BufferedReader lines = new BufferedReader(reader);
+	ArrayList<String> fields = new ArrayList<String>();
+	String line;
+	long lineNumber = 0;
+	while((line = lines.readLine()) != null) {
+		lineNumber++;
+		if(line.isEmpty() || line.startsWith("#")) {
+			continue;
+		}
+		if(!splitCsvLine(line, fields)) {
+			throw new IOException("Unclosed quote on line " + lineNumber);
+		}
+		String error;
+		if(fields.get(0).equals("location")) {
+			error = fields.size() != 5 ? "expected 5 fields" : this.importLocation(fields.get(1), parseNumber(fields.get(2)), parseNumber(fields.get(3)), fields.get(4));
+		}
+		else if(fields.get(0).equals("road")) {
+			error = fields.size() != 8 ? "expected 8 fields" : this.importRoad(fields.get(1), fields.get(2), fields.get(3), fields.get(4),
+					parseNumber(fields.get(5)), parseNumber(fields.get(6)), parseNumber(fields.get(7)));
+		}
+		else {
+			error = "unknown record kind " + fields.get(0);
+		}
+		this.endRecord("line " + lineNumber, error);
+	}
+	this.endImport();
+}
+
+/**
+ * Split the given line into its fields.
+ *
+ * @return False if and only if a quoted field is not closed.
+ */
+private static boolean splitCsvLine(String line, ArrayList<String> fields) {
+	fields.clear();
+	StringBuilder field = new StringBuilder();
+	boolean quoted = false;
+	for(int i = 0;i<line.length();i++) {
+		char next = line.charAt(i);
+		if(quoted) {
+			if(next != '"') {
+				field.append(next);
+			}
+			else if(i + 1 < line.length() && line.charAt(i + 1) == '"') {
+				field.append('"');
+				i++;
+			}
+			else {
+				quoted = false;
+			}
+		}
+		else if(next == '"') {
+			quoted = true;
+		}
+		else if(next == ',') {
+			fields.add(field.toString());
+			field.setLength(0);
+		}
+		else {
+			field.append(next);
+		}
+	}
+	fields.add(field.toString());
+	return !quoted;
+}
+
+/**
+ * Return the number in the given field, or NaN if it holds no number.
+ */
+private static double parseNumber(String field) {
+	try {
+		return Double.parseDouble(field.trim());
+	}
+	catch(NumberFormatException exc) {
+		return Double.NaN;
+	}
+}
+
+/**
+ * Import all features of the given GeoJSON feature collection.
+ *   Each feature is read and imported before the next one is read.
+ *
+ * @param  reader
+ *         The reader to read the file from.
+ * @throws IOException
+ *         The file cannot be read or is not a JSON object.
+ */
+public void importGeoJson(Reader reader) throws IOException {
+	JsonReader in = new JsonReader(reader);
+	in.expect('{');
+	boolean first = true;
+	while(!in.consume('}')) {
+		if(!first) {
+			in.expect(',');
+		}
+		first = false;
+		String key = in.readString();
+		in.expect(':');
+		if(!key.equals("features")) {
+			in.readValue();
+			continue;
+		}
+		in.expect('[');
+		long featureNumber = 0;
+		boolean firstFeature = true;
+		while(!in.consume(']')) {
+			if(!firstFeature) {
+				in.expect(',');
+			}
+			firstFeature = false;
+			featureNumber++;
+			this.endRecord("feature " + featureNumber, this.importFeature(in.readValue()));
+		}
+	}
+	this.endImport();
+}
+
+/**
+ * Import the given GeoJSON feature.
+ *
+ * @return A description of the problem with the feature, or null if it was imported.
+ */
+private String importFeature(Object feature) {
+	if(!(feature instanceof Map) || !(((Map<?,?>) feature).get("geometry") instanceof Map)
+			|| !(((Map<?,?>) feature).get("properties") instanceof Map)) {
+		return "expected a feature with geometry and properties";
+	}
+	Map<?,?> geometry = (Map<?,?>) ((Map<?,?>) feature).get("geometry");
+	Map<?,?> properties = (Map<?,?>) ((Map<?,?>) feature).get("properties");
+	if("Point".equals(geometry.get("type"))) {
+		Object coordinates = geometry.get("coordinates");
+		if(!(coordinates instanceof List) || ((List<?>) coordinates).size() != 2) {
+			return "expected a point with two coordinates";
+		}
+		return this.importLocation(getString(properties, "key"), getNumber(((List<?>) coordinates).get(0)),
+				getNumber(((List<?>) coordinates).get(1)), getString(properties, "address"));
+	}
+	if("LineString".equals(geometry.get("type"))) {
+		return this.importRoad(getString(properties, "identification"), getString(properties, "kind"),
+				getString(properties, "from"), getString(properties, "to"), getNumber(properties.get("length")),
+				getNumber(properties.get("speedLimit")), getNumber(properties.get("averageSpeed")));
+	}
+	return "unknown geometry type " + geometry.get("type");
+}
+
+/**
+ * Return the string property with the given name, or null if there is none.
+ */
+private static String getString(Map<?,?> properties, String name) {
+	Object value = properties.get(name);
+	return value instanceof String ? (String) value : null;
+}
+
+/**
+ * Return the given value if it is a number, and NaN otherwise.
+ */
+private static double getNumber(Object value) {
+	return value instanceof Double ? (Double) value : Double.NaN;
+}
+
+/**
+ * Create a location with the given key, coordinates and address, if they are valid.
+ *
+ * @return A description of the problem with the fields, or null if the location was created.
+ */
+private String importLocation(String key, double x, double y, String address) {
+	if(key == null || key.isEmpty() || this.locations.containsKey(key)) {
+		return "missing or duplicate location key " + key;
+	}
+	if(!Double.isFinite(x) || !Double.isFinite(y)) {
+		return "invalid coordinates";
+	}
+	if(!Location.isValidAddress(address)) {
+		return "invalid address " + address;
+	}
+	this.locations.put(key, new Location(this.network, new double[] {x, y}, address));
+	return null;
+}
+
+/**
+ * Create a road with the given fields, if they are valid.
+ *
+ * @return A description of the problem with the fields, or null if the road was created.
+ */
+private String importRoad(String identification, String kind, String from, String to, double length, double speedLimit, double averageSpeed) {
+	if(identification == null || !this.network.isValidIdentification(identification)) {
+		return "invalid or duplicate identification " + identification;
+	}
+	Location first = this.locations.get(from);
+	Location second = this.locations.get(to);
+	if(first == null || second == null) {
+		return "unknown endpoint " + (first == null ? from : to);
+	}
+	if(length != (int) length || !Road.isValidLength((int) length)) {
+		return "invalid length";
+	}
+	if(!Road.isValidSpeedLimit((float) speedLimit) || !Road.isValidAverageSpeed((float) averageSpeed)
+			|| (float) averageSpeed > (float) speedLimit) {
+		return "invalid speeds";
+	}
+	Road road;
+	if("two-way".equals(kind)) {
+		road = new TwoWayRoad(identification, first, second, (int) length, (float) speedLimit, (float) averageSpeed);
+	}
+	else if("one-way".equals(kind)) {
+		road = new OneWayRoad(identification, first, second, (int) length, (float) speedLimit, (float) averageSpeed);
+	}
+	else if("alternating".equals(kind)) {
+		road = new AlternatingRoad(identification, first, second, (int) length, (float) speedLimit, (float) averageSpeed);
+	}
+	else {
+		return "unknown road kind " + kind;
+	}
+	this.roads.add(road);
+	return null;
+}
+
+/**
+ * Register that a record has been read, with the given problem if it was skipped.
+ */
+private void endRecord(String position, String error) {
+	if(error != null) {
+		this.errors.add(position + ": " + error);
+	}
+	this.recordCount++;
+	if(this.progressListener != null && this.recordCount % this.progressInterval == 0) {
+		this.progressListener.accept(this.recordCount);
+	}
+}
+
+/**
+ * Finish the current import.
+ */
+private void endImport() {
+	if(this.progressListener != null) {
+		this.progressListener.accept(this.recordCount);
+	}
+}
+
+/**
+ * A class of readers of JSON values, reading one character ahead.
+ */
+private static class JsonReader {
+
+	JsonReader(Reader reader) throws IOException {
+		this.reader = reader instanceof BufferedReader ? reader : new BufferedReader(reader);
+		this.next = this.reader.read();
+	}
+
+	private final Reader reader;
+
+	/**
+	 * The next character, or -1 at the end of the input.
+	 */
+	private int next;
+
+	private void skipWhitespace() throws IOException {
+		while(this.next == ' ' || this.next == '\t' || this.next == '\n' || this.next == '\r') {
+			this.next = this.reader.read();
+		}
+	}
+
+	/**
+	 * Skip the given character, after any whitespace, if it comes next.
+	 *
+	 * @return True if and only if the character came next.
+	 */
+	boolean consume(char character) throws IOException {
+		this.skipWhitespace();
+		if(this.next == character) {
+			this.next = this.reader.read();
+			return true;
+		}
+		return false;
+	}
+
+	void expect(char character) throws IOException {
+		if(!this.consume(character)) {
+			throw new IOException("Expected " + character + " in JSON input");
+		}
+	}
+
+	/**
+	 * Read the next value: a map, list, string, double, boolean or null.
+	 */
+	Object readValue() throws IOException {
+		this.skipWhitespace();
+		if(this.consume('{')) {
+			LinkedHashMap<String,Object> result = new LinkedHashMap<String,Object>();
+			if(!this.consume('}')) {
+				do {
+					String key = this.readString();
+					this.expect(':');
+					result.put(key, this.readValue());
+				} while(this.consume(','));
+				this.expect('}');
+			}
+			return result;
+		}
+		if(this.consume('[')) {
+			ArrayList<Object> result = new ArrayList<Object>();
+			if(!this.consume(']')) {
+				do {
+					result.add(this.readValue());
+				} while(this.consume(','));
+				this.expect(']');
+			}
+			return result;
+		}
+		if(this.next == '"') {
+			return this.readString();
+		}
+		StringBuilder literal = new StringBuilder();
+		while(this.next >= 0 && "{}[],: \t\r\n\"".indexOf(this.next) < 0) {
+			literal.append((char) this.next);
+			this.next = this.reader.read();
+		}
+		String text = literal.toString();
+		if(text.equals("true") || text.equals("false")) {
+			return Boolean.valueOf(text);
+		}
+		if(text.equals("null")) {
+			return null;
+		}
+		try {
+			return Double.valueOf(text);
+		}
+		catch(NumberFormatException exc) {
+			throw new IOException("Unexpected " + text + " in JSON input");
+		}
+	}
+
+	String readString() throws IOException {
+		this.expect('"');
+		StringBuilder result = new StringBuilder();
+		while(this.next != '"') {
+			if(this.next < 0) {
+				throw new IOException("Unclosed string in JSON input");
+			}
+			if(this.next == '\\') {
+				this.next = this.reader.read();
+				switch(this.next) {
+				case 'n': result.append('\n'); break;
+				case 't': result.append('\t'); break;
+				case 'r': result.append('\r'); break;
+				case 'b': result.append('\b'); break;
+				case 'f': result.append('\f'); break;
+				case 'u':
+					char[] digits = new char[4];
+					for(int i = 0;i<4;i++) {
+						digits[i] = (char) this.reader.read();
+					}
+					try {
+						result.append((char) Integer.parseInt(new String(digits), 16));
+					}
+					catch(NumberFormatException exc) {
+						throw new IOException("Invalid escape in JSON input");
+					}
+					break;
+				default:
+					if(this.next < 0) {
+						throw new IOException("Unclosed string in JSON input");
+					}
+					result.append((char) this.next);
+				}
+			}
+			else {
+				result.append((char) this.next);
+			}
+			this.next = this.reader.read();
+		}
+		this.next = this.reader.read();
+		return result.toString();
+	}
+}
+}
@@ -134,6 +134,17 @@ public float getDelay(boolean direction) {
 		return super.getDelay(true);
 	}
 }
+/**
+ * Check whether this road can be driven in the given direction at all
+ * @param direction
+ * 			The direction to check
+ * @return	True only for the forward direction
+ * 			| result == direction
+ */
+@Override
+public boolean canBeTraversedInDirection(boolean direction) {
+	return direction;
+}
 /**
  * returns possible start locations of the road array of length 1
  */
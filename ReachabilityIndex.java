@@ -0,0 +1,528 @@
+package connections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of indices of the strongly connected components of a network, answering
+ * whether a location can be reached from another one without searching for a route.
+ *
+ * The network is the directed graph with an edge from one location to another for each
+ * road that can currently be driven from the first to the second. Two locations in the
+ * same component can reach each other, which is answered in constant time. The components
+ * are kept in a topological order, in which every edge leads to a later component, so a
+ * location in a later component never reaches one in an earlier component; only the
+ * remaining questions search the components in between.
+ *
+ * The index is updated incrementally with the roads that changed. These are either
+ * given by the caller, or found by update() by comparing the version of each road of
+ * the network with the version it had when it was last recorded; the version of a road
+ * changes whenever it is blocked, unblocked, reversed or terminated, also when one of
+ * its locations is terminated. A new edge within a
+ * component or towards a later component changes nothing, and a removed edge between
+ * different components changes nothing either. Otherwise, only the components between
+ * both ends of the edge in the topological order are recomputed with Tarjan's algorithm.
+ *
+ * An index cannot be shared between threads: even canReach, which only answers a
+ * question, marks the components it visits in the index.
+ *
+ * @invar  | for each road: for each edge u -> v of road: getPosition(u) <= getPosition(v)
+ */
+public class ReachabilityIndex {
+
+/**
+ * Initialize this new index for all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public ReachabilityIndex() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new index for the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to index.
+ */
+public ReachabilityIndex(Collection<Road> roads) {
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	this.components = new int[size];
+	this.members = new int[size][];
+	this.positions = new int[size];
+	this.visits = new int[size];
+	this.local = new int[size];
+	Arrays.fill(this.local, -1);
+	for(int node = 0;node<size;node++) {
+		this.roadsAt.add(new ArrayList<Road>());
+	}
+	for(Road road:roads) {
+		this.versions.put(road, road.getVersion());
+		if(!road.isTerminated()) {
+			this.record(road);
+		}
+	}
+	this.recompute();
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Array registering the identifier of the component of each location.
+ */
+private final int[] components;
+
+/**
+ * Array registering the locations of each component, by identifier, or null for
+ * identifiers that are not in use.
+ */
+private final int[][] members;
+
+/**
+ * List registering the identifiers of the components in topological order, and an
+ * array registering the position of each component in that list.
+ */
+private final ArrayList<Integer> order = new ArrayList<Integer>();
+private final int[] positions;
+
+/**
+ * List registering the identifiers that are not in use.
+ */
+private final ArrayDeque<Integer> freeIdentifiers = new ArrayDeque<Integer>();
+
+/**
+ * Map registering, for each road, the edges it had when it was last recorded: the tail
+ * and head of its edge in each direction, or -1 if there was no edge in that direction.
+ */
+private final HashMap<Road,int[]> edges = new HashMap<Road,int[]>();
+
+/**
+ * Map registering the roads of the network, each with its version when it was last
+ * recorded.
+ */
+private final HashMap<Road,Long> versions = new HashMap<Road,Long>();
+
+/**
+ * List registering, for each location, the roads recorded with an edge at it.
+ */
+private final ArrayList<ArrayList<Road>> roadsAt = new ArrayList<ArrayList<Road>>();
+
+/**
+ * Array registering, for each component, the last reachability question it was visited by.
+ */
+private final int[] visits;
+private int visit = 0;
+
+/**
+ * Array registering the position of each location in the subnetwork being recomputed,
+ * or -1 if it is not part of it.
+ */
+private final int[] local;
+
+/**
+ * Variable registering the number of locations visited by recomputations since the
+ * creation of this index.
+ */
+private long recomputedCount = 0;
+
+/**
+ * Return the numbering of the locations of the network of this index.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Return the number of strongly connected components of the network.
+ */
+public int getComponentCount() {
+	return this.order.size();
+}
+
+/**
+ * Return the number of locations visited by recomputations since the creation of
+ * this index, including the initial computation.
+ */
+@Basic
+public long getRecomputedCount() {
+	return this.recomputedCount;
+}
+
+/**
+ * Return the position of the component of the given location in the topological order
+ * of the components, or -1 if the location is not part of the network.
+ */
+public int getPosition(Location location) {
+	int node = this.index.getIndexOf(location);
+	if(node < 0) {
+		return -1;
+	}
+	return this.positions[this.components[node]];
+}
+
+/**
+ * Return the number of locations in the component of the given location, or 0 if the
+ * location is not part of the network.
+ */
+public int getComponentSize(Location location) {
+	int node = this.index.getIndexOf(location);
+	if(node < 0) {
+		return 0;
+	}
+	return this.members[this.components[node]].length;
+}
+
+/**
+ * Check whether the given locations can reach each other.
+ *
+ * @return | result == (canReach(first, second) && canReach(second, first))
+ */
+public boolean areStronglyConnected(Location first, Location second) {
+	if(first == second) {
+		return true;
+	}
+	int firstNode = this.index.getIndexOf(first);
+	int secondNode = this.index.getIndexOf(second);
+	return firstNode >= 0 && secondNode >= 0 && this.components[firstNode] == this.components[secondNode];
+}
+
+/**
+ * Check whether the given end location can be reached from the given start location.
+ *   The components visited are marked in this index, so this method must not be
+ *   called by several threads at once.
+ *
+ * @param  from
+ *         The location to start from.
+ * @param  to
+ *         The location to reach.
+ * @return | result == (new DijkstraRouter(roads).getFastestRoute(from, to) != null)
+ * @throws IllegalArgumentException
+ *         | !Router.canHaveAsRouteEnd(from) || !Router.canHaveAsRouteEnd(to)
+ */
+public boolean canReach(Location from, Location to) throws IllegalArgumentException {
+	if(!Router.canHaveAsRouteEnd(from) || !Router.canHaveAsRouteEnd(to)) {
+		throw new IllegalArgumentException();
+	}
+	if(from == to) {
+		return true;
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		return false;
+	}
+	int sourceComponent = this.components[source];
+	int targetComponent = this.components[target];
+	if(sourceComponent == targetComponent) {
+		return true;
+	}
+	int last = this.positions[targetComponent];
+	if(this.positions[sourceComponent] > last) {
+		return false;
+	}
+	// Search the components between both, in topological order.
+	this.visit++;
+	ArrayDeque<Integer> stack = new ArrayDeque<Integer>();
+	stack.push(sourceComponent);
+	this.visits[sourceComponent] = this.visit;
+	while(!stack.isEmpty()) {
+		int component = stack.pop();
+		for(int node:this.members[component]) {
+			for(Road road:this.roadsAt.get(node)) {
+				int[] edge = this.edges.get(road);
+				for(int i = 0;i<4;i = i + 2) {
+					if(edge[i] != node || edge[i + 1] < 0) {
+						continue;
+					}
+					int next = this.components[edge[i + 1]];
+					if(next == targetComponent) {
+						return true;
+					}
+					if(this.visits[next] != this.visit && this.positions[next] < last) {
+						this.visits[next] = this.visit;
+						stack.push(next);
+					}
+				}
+			}
+		}
+	}
+	return false;
+}
+
+/**
+ * Update this index for all roads of its network that changed since they were last
+ * recorded.
+ *   This compares the version of every road of the network, but only updates the
+ *   components for the roads whose version changed.
+ *
+ * @effect | update(the roads of the network whose version changed)
+ */
+public void update() {
+	ArrayList<Road> changedRoads = new ArrayList<Road>();
+	for(Road road:this.versions.keySet()) {
+		if(road.getVersion() != this.versions.get(road)) {
+			changedRoads.add(road);
+		}
+	}
+	this.update(changedRoads);
+}
+
+/**
+ * Update this index for the given roads, which may have been blocked, unblocked,
+ * reversed, terminated or created since they were last recorded.
+ *   Roads to or from locations that are not part of the network are ignored. Roads
+ *   that are not yet part of the network of this index become part of it, so later
+ *   changes to them are found by update().
+ *
+ * @param  changedRoads
+ *         The roads that may have changed.
+ */
+public void update(Collection<Road> changedRoads) {
+	for(Road road:changedRoads) {
+		this.versions.put(road, road.getVersion());
+		int[] previous = this.edges.get(road);
+		int[] current = this.record(road);
+		for(int i = 0;i<4;i = i + 2) {
+			boolean wasEdge = previous != null && previous[i + 1] >= 0;
+			boolean isEdge = current != null && current[i + 1] >= 0;
+			if(wasEdge && !(isEdge && previous[i] == current[i] && previous[i + 1] == current[i + 1])) {
+				this.removeEdge(previous[i], previous[i + 1]);
+			}
+		}
+		for(int i = 0;i<4;i = i + 2) {
+			boolean wasEdge = previous != null && previous[i + 1] >= 0;
+			boolean isEdge = current != null && current[i + 1] >= 0;
+			if(isEdge && !(wasEdge && previous[i] == current[i] && previous[i + 1] == current[i + 1])) {
+				this.addEdge(current[i], current[i + 1]);
+			}
+		}
+	}
+}
+
+/**
+ * Update this index for all roads recorded at the given location, for instance after
+ * the location has been terminated.
+ *
+ * @effect | update(the roads recorded at location)
+ */
+public void update(Location location) {
+	int node = this.index.getIndexOf(location);
+	if(node >= 0) {
+		this.update(new ArrayList<Road>(this.roadsAt.get(node)));
+	}
+}
+
+/**
+ * Recompute all components of the network.
+ */
+public void recompute() {
+	this.freeIdentifiers.clear();
+	this.order.clear();
+	Arrays.fill(this.members, null);
+	for(int i = 0;i<this.members.length;i++) {
+		this.freeIdentifiers.add(i);
+	}
+	int[] nodes = new int[this.index.getSize()];
+	for(int node = 0;node<nodes.length;node++) {
+		nodes[node] = node;
+	}
+	this.replaceComponents(0, -1, nodes);
+}
+
+/**
+ * Record the current edges of the given road, and return them.
+ *
+ * @return The tail and head of the edge of the given road in each direction, or
+ *         null if the road has no edges.
+ */
+private int[] record(Road road) {
+	int[] previous = this.edges.get(road);
+	int[] current = new int[] {-1, -1, -1, -1};
+	boolean hasEdge = false;
+	for(int i = 0;i<2;i++) {
+		boolean direction = i == 0;
+		if(road.isTerminated() || !road.isOpenInDirection(direction)) {
+			continue;
+		}
+		int tail = this.index.getIndexOf(Router.getOrigin(road, direction));
+		int head = this.index.getIndexOf(Router.getDestination(road, direction));
+		if(tail >= 0 && head >= 0 && tail != head) {
+			current[2*i] = tail;
+			current[2*i + 1] = head;
+			hasEdge = true;
+		}
+	}
+	if(previous != null) {
+		for(int i = 0;i<4;i = i + 2) {
+			if(previous[i] >= 0) {
+				this.roadsAt.get(previous[i]).remove(road);
+			}
+		}
+	}
+	if(!hasEdge) {
+		this.edges.remove(road);
+		return null;
+	}
+	this.edges.put(road, current);
+	for(int i = 0;i<4;i = i + 2) {
+		if(current[i] >= 0 && !this.roadsAt.get(current[i]).contains(road)) {
+			this.roadsAt.get(current[i]).add(road);
+		}
+	}
+	return current;
+}
+
+/**
+ * Update the components for a new edge from the given tail to the given head.
+ *   Only a new edge towards an earlier component can close a cycle, through the
+ *   components between both ends.
+ */
+private void addEdge(int tail, int head) {
+	int first = this.positions[this.components[head]];
+	int last = this.positions[this.components[tail]];
+	if(first < last) {
+		this.recomputeRange(first, last);
+	}
+}
+
+/**
+ * Update the components for a removed edge from the given tail to the given head.
+ *   Only a removed edge within a component can split that component.
+ */
+private void removeEdge(int tail, int head) {
+	if(this.components[tail] == this.components[head]) {
+		int position = this.positions[this.components[tail]];
+		this.recomputeRange(position, position);
+	}
+}
+
+/**
+ * Recompute the components at the given positions in the topological order.
+ */
+private void recomputeRange(int first, int last) {
+	int count = 0;
+	for(int position = first;position<=last;position++) {
+		count = count + this.members[this.order.get(position)].length;
+	}
+	int[] nodes = new int[count];
+	count = 0;
+	for(int position = first;position<=last;position++) {
+		int component = this.order.get(position);
+		for(int node:this.members[component]) {
+			nodes[count++] = node;
+		}
+		this.members[component] = null;
+		this.freeIdentifiers.add(component);
+	}
+	this.replaceComponents(first, last, nodes);
+}
+
+/**
+ * Compute the components of the subnetwork with the given locations with Tarjan's
+ * algorithm, and let them replace the components at the given positions in the
+ * topological order.
+ */
+private void replaceComponents(int first, int last, int[] nodes) {
+	this.recomputedCount = this.recomputedCount + nodes.length;
+	int[] local = this.local;
+	for(int i = 0;i<nodes.length;i++) {
+		local[nodes[i]] = i;
+	}
+	int[][] successors = new int[nodes.length][];
+	for(int i = 0;i<nodes.length;i++) {
+		int[] heads = new int[this.roadsAt.get(nodes[i]).size()*2];
+		int count = 0;
+		for(Road road:this.roadsAt.get(nodes[i])) {
+			int[] edge = this.edges.get(road);
+			for(int j = 0;j<4;j = j + 2) {
+				if(edge[j] == nodes[i] && edge[j + 1] >= 0 && local[edge[j + 1]] >= 0) {
+					heads[count++] = local[edge[j + 1]];
+				}
+			}
+		}
+		successors[i] = Arrays.copyOf(heads, count);
+	}
+	for(int node:nodes) {
+		local[node] = -1;
+	}
+	// Tarjan's algorithm, without recursion.
+	int[] discovery = new int[nodes.length];
+	int[] low = new int[nodes.length];
+	int[] next = new int[nodes.length];
+	boolean[] onStack = new boolean[nodes.length];
+	int[] stack = new int[nodes.length];
+	int[] calls = new int[nodes.length];
+	int stackSize = 0;
+	int time = 0;
+	Arrays.fill(discovery, -1);
+	ArrayList<int[]> found = new ArrayList<int[]>();
+	for(int root = 0;root<nodes.length;root++) {
+		if(discovery[root] >= 0) {
+			continue;
+		}
+		int callCount = 0;
+		calls[callCount++] = root;
+		discovery[root] = low[root] = time++;
+		stack[stackSize++] = root;
+		onStack[root] = true;
+		while(callCount > 0) {
+			int node = calls[callCount - 1];
+			if(next[node] < successors[node].length) {
+				int successor = successors[node][next[node]++];
+				if(discovery[successor] < 0) {
+					discovery[successor] = low[successor] = time++;
+					stack[stackSize++] = successor;
+					onStack[successor] = true;
+					calls[callCount++] = successor;
+				}
+				else if(onStack[successor]) {
+					low[node] = Math.min(low[node], discovery[successor]);
+				}
+				continue;
+			}
+			callCount--;
+			if(callCount > 0) {
+				int parent = calls[callCount - 1];
+				low[parent] = Math.min(low[parent], low[node]);
+			}
+			if(low[node] == discovery[node]) {
+				int start = stackSize;
+				do {
+					start--;
+					onStack[stack[start]] = false;
+				} while(stack[start] != node);
+				int[] component = new int[stackSize - start];
+				for(int i = start;i<stackSize;i++) {
+					component[i - start] = nodes[stack[i]];
+				}
+				stackSize = start;
+				found.add(component);
+			}
+		}
+	}
+	// Tarjan's algorithm finds the components in reverse topological order.
+	ArrayList<Integer> identifiers = new ArrayList<Integer>();
+	for(int i = found.size() - 1;i>=0;i--) {
+		int identifier = this.freeIdentifiers.poll();
+		this.members[identifier] = found.get(i);
+		for(int node:found.get(i)) {
+			this.components[node] = identifier;
+		}
+		identifiers.add(identifier);
+	}
+	this.order.subList(first, last + 1).clear();
+	this.order.addAll(first, identifiers);
+	for(int position = first;position<this.order.size();position++) {
+		this.positions[this.order.get(position)] = position;
+	}
+}
+}
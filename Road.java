@@ -1,5 +1,6 @@
 package connections;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import be.kuleuven.cs.som.annotate.*;
 
 /**
@@ -53,9 +54,17 @@ public abstract class Road {
  *		|new.getSpeedLimit = speedLimit
  * @post The average speed of this new road is equal to the given average speed
  *		|new.getAverageSpeed = averageSpeed
+ * @post The new road belongs to the network of its endpoints
+ * 		|new.getNetwork() == l1.getNetwork()
+ * @throws IllegalArgumentException
+ * 		The endpoints belong to different networks, or one of them is terminated
+ * 		|l1.getNetwork() != l2.getNetwork() || l1.isTerminated() || l2.isTerminated()
  */	 
 public Road(String identification, Location l1, Location l2, int length ,float speedLimit, float averageSpeed){
-	this.setIdentification(identification);
+	this.network = l1.getNetwork();
+	if(l2.getNetwork() != this.network) {
+		throw new IllegalArgumentException();
+	}
 	assert this.canHaveAsEndpoints(l1);
 	assert this.canHaveAsEndpoints(l2);
 	this.endpoint1 = l1;
@@ -63,9 +72,24 @@ public Road(String identification, Location l1, Location l2, int length ,float s
 	this.setlength(length);
 	this.setSpeedLimit(speedLimit);
 	this.setAverageSpeed(averageSpeed);
-	listofroads.add(this);
-	l1.addAdjoiningRoad(this);
-	l2.addAdjoiningRoad(this);
+	// The identification is registered last, so it is not left in use when another argument is invalid.
+	this.setIdentification(identification);
+	this.serial = this.network.getNextSerial();
+	int[] stripes = this.network.lockStripes(l1, l2);
+	try {
+		if(l1.isTerminated() || l2.isTerminated()) {
+			this.network.getIdentificationRegistry().release(identification);
+			throw new IllegalArgumentException();
+		}
+		this.network.addRoad(this);
+		l1.addAdjoiningRoad(this);
+		l2.addAdjoiningRoad(this);
+	}
+	finally {
+		this.network.unlockStripes(stripes);
+	}
+	this.isCreated = true;
+	this.registerChange(true, ChangeEvent.Kind.ROAD_CREATED, true);
 	}
 
 @Basic @Raw
@@ -74,11 +98,24 @@ public boolean isTerminated() {
 }
 
 public void terminate() {
+	boolean changed = false;
+	int[] stripes = this.network.lockStripes(this.endpoint1, this.endpoint2);
+	try {
 	if(this.isTerminated() == false) {
 	this.getEndpoints()[0].adjoiningRoads.remove(this);	
 	this.getEndpoints()[1].adjoiningRoads.remove(this);
-	idArray.remove(this.getIdentification());
+	this.network.getIdentificationRegistry().release(this.getIdentification());
+	this.network.removeRoad(this);
 	this.isTerminated = true;
+	changed = true;
+	}
+	}
+	finally {
+		this.network.unlockStripes(stripes);
+	}
+	// Listeners are called without holding any stripe, so they can change the network themselves.
+	if(changed) {
+		this.registerChange(false, ChangeEvent.Kind.ROAD_TERMINATED, true);
 	}
 }
 //*************************************************************************************//
@@ -87,11 +124,15 @@ public void terminate() {
 /**
  * Variable registering the identifiation of this Road.
  */
-private String identification;
+private volatile String identification;
+/**
+ * Variable registering the network this road belongs to.
+ */
+private final RoadNetwork network;
 /**
- * ArrayList containing the list of identification numbers in use
+ * Number registering the order in which this road was created in its network.
  */
-static ArrayList<String> idArray = new ArrayList<String>();
+final long serial;
 /**
  * Variable registering the length of this road.
  */
@@ -127,8 +168,12 @@ boolean direction;
 boolean isBlocked1;
 boolean isBlocked2;
 
-private boolean isTerminated = false;
-static Collection<Road>listofroads = new ArrayList<Road>();
+private volatile boolean isTerminated = false;
+/**
+ * Variable registering whether the construction of this road has completed, before
+ * which no change events are published for it.
+ */
+private boolean isCreated = false;
 
 // ********************************************************************************//
 // IDENTIFICATION
@@ -141,26 +186,27 @@ public String getIdentification() {
 	return this.identification;
 }
 
+/**
+ * Return the network this road belongs to, which is the network of its endpoints.
+ */
+@Basic @Raw @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
 /**
  * Check whether the given identifiation is a valid identifiation for
- * any Road.
+ * any Road of the default network.
  *  
  * @param  identifiation
  *         The identifiation to check.
  * @return True if the identification is of acceptable size and format
- * 		   result = true
- * 		| if(isValidFormat(identification) && isValidSize(identification))
- *		  if(!idArray.contains(identification)) 		
+ * 		   and not in use in the default network
+ * 		| result == RoadNetwork.getDefault().isValidIdentification(identification)
  *       
 */
 public static boolean isValidIdentification(String identification) {
-	// the second character may contain special characters as well, so just check the first??
-	if(isValidFormat(identification) && isValidSize(identification)){
-		if(!idArray.contains(identification)) {
-			return true;
-		}
-	}
-	return false;
+	return RoadNetwork.getDefault().isValidIdentification(identification);
 }
 
 /**
@@ -185,8 +231,12 @@ public static boolean isValidSize(String identification) {
  * 			The identification to check
  * @return result = true
  * 		   |if the identification is of valid format
+ * 		   |or IdentificationRegistry.isExtendedIdentification(identification)
  */
 public static boolean isValidFormat(String identification) {
+	if(IdentificationRegistry.isExtendedIdentification(identification)) {
+		return true;
+	}
 	int len = identification.length();
 	if(len == 2) {
 	char first = identification.charAt(0);
@@ -220,15 +270,15 @@ public static boolean isValidFormat(String identification) {
  *       | new.getIdentification() == identification
  * @throws IllegalArgumentException
  *         The given identifiation is not a valid identifiation for any
- *         Road.
- *       | ! isValidIdentification(getIdentification())
+ *         Road of its network, or another thread registered it first.
+ *       | ! getNetwork().isValidIdentification(identification)
  */
 @Raw
 public void setIdentification(String identification) 
 		throws IllegalArgumentException {
-	if (isValidIdentification(identification)) {
-		this.identification = identification;
-		idArray.add(identification);}
+	if (this.getNetwork().isValidIdentification(identification)
+			&& this.getNetwork().getIdentificationRegistry().register(identification)) {
+		this.identification = identification;}
 	else {
 	throw new IllegalArgumentException();
 }}
@@ -241,13 +291,65 @@ public void setIdentification(String identification)
  * remove old identification from the arraylist. then check if the new identification number is valid.
  * then set the new identification number
  * 		|new.getIdentification = id
- * 			
+ * @throws IllegalArgumentException
+ * 		The new identification is not valid, in which case the road keeps its
+ * 		old identification
+ * 		|id != getIdentification() && !getNetwork().isValidIdentification(id)
+ * @throws IllegalStateException
+ * 		The road is terminated, so its old identification may already belong to
+ * 		another road
+ * 		|isTerminated()
  * 
  */
-public void changeIdentification(String id) throws IllegalArgumentException {
-	//DO THE DOCUMENTATION
-	idArray.remove(this.getIdentification());
-	this.setIdentification(id);
+public void changeIdentification(String id) throws IllegalArgumentException, IllegalStateException {
+	int[] stripes = this.network.lockStripes(this.endpoint1, this.endpoint2);
+	try {
+		// Terminating a road locks the same stripes, so the road cannot be terminated after this check.
+		if(this.isTerminated()) {
+			throw new IllegalStateException();
+		}
+		String old = this.getIdentification();
+		if(id != null && id.equals(old)) {
+			return;
+		}
+		this.setIdentification(id);
+		this.getNetwork().getIdentificationRegistry().release(old);
+		this.network.renameRoad(this, old);
+	}
+	finally {
+		this.network.unlockStripes(stripes);
+	}
+	this.publishChange(ChangeEvent.Kind.IDENTIFICATION, true);
+}
+
+/**
+ * Return the first identification of the given series that is not in use in the default
+ * network, or null if all identifications of the series are in use.
+ *
+ * @param  series
+ *         The uppercase letter the identification must start with.
+ * @return | result == null || (isValidIdentification(result) && result.charAt(0) == series)
+ * @throws IllegalArgumentException
+ *         | series < 'A' || series > 'Z'
+ */
+public static String getFreeIdentification(char series) throws IllegalArgumentException {
+	return RoadNetwork.getDefault().getFreeIdentification(series);
+}
+
+/**
+ * Return the first extended identification of the given region and series that is not
+ * in use in the default network, or null if all identifications of the series are in use.
+ *
+ * @param  region
+ *         The region the identification must belong to.
+ * @param  series
+ *         The uppercase letter the code of the identification must start with.
+ * @return | result == null || isValidIdentification(result)
+ * @throws IllegalArgumentException
+ *         | !IdentificationRegistry.isValidRegion(region) || series < 'A' || series > 'Z'
+ */
+public static String getFreeIdentification(String region, char series) throws IllegalArgumentException {
+	return RoadNetwork.getDefault().getFreeIdentification(region, series);
 }
 
 /**
@@ -308,10 +410,14 @@ public static boolean isValidLength(int length) {
  */
 @Raw 
 public void setlength(int length) {
+	int oldLength = this.length;
 	if (!isValidLength(length)) {
 		 this.length = 100;}
 	else {
 	this.length = length;}
+	if(this.length != oldLength) {
+		this.registerChange(this.length < oldLength, ChangeEvent.Kind.LENGTH, true);
+	}
 }
 
 //******************************************************************************************//
@@ -411,7 +517,11 @@ public static boolean isValidSpeedLimit(float speedLimit) {
 public void setSpeedLimit(float speedLimit) 
 		throws IllegalArgumentException{
 	if (isValidSpeedLimit(speedLimit) && speedLimit>this.getAverageSpeed()) {
+		boolean changed = speedLimit != this.speedLimit;
 		this.speedLimit = speedLimit;
+		if(changed) {
+			this.publishChange(ChangeEvent.Kind.SPEED_LIMIT, true);
+		}
 		}
 	else {
 	throw new IllegalArgumentException();}
@@ -461,7 +571,11 @@ public static boolean isValidAverageSpeed(float averageSpeed) {
 public void setAverageSpeed(float averageSpeed) 
 		throws IllegalArgumentException {
 	if (isValidAverageSpeed(averageSpeed) &&  averageSpeed <=this.getSpeedLimit()) {
-		this.averageSpeed = averageSpeed;}
+		float oldAverageSpeed = this.averageSpeed;
+		this.averageSpeed = averageSpeed;
+		if(averageSpeed != oldAverageSpeed) {
+			this.registerChange(averageSpeed > oldAverageSpeed, ChangeEvent.Kind.AVERAGE_SPEED, true);
+		}}
 	else {throw new IllegalArgumentException();}
 }
 
@@ -508,10 +622,14 @@ public static boolean isValidDelay(float delay) {
 @Raw
 public void setDelay(float delay,boolean direction) {
 	assert isValidDelay(delay);
+	float oldDelay = this.getDelay(direction);
 	if(direction == true) {
 	this.delay1 = delay;}
 	else {
 		this.delay2 = delay;}
+	if(delay != oldDelay) {
+		this.registerChange(delay < oldDelay, ChangeEvent.Kind.DELAY, direction);
+	}
 	}
 
 //*************************************************************************************//
@@ -543,9 +661,223 @@ public boolean getIsBlocked(boolean direction) {
  * 			new.getBlocked(direction) = isBlocked
  */
 public void setIsBlocked(boolean isBlocked,boolean direction) {
+	boolean changed = isBlocked != this.getIsBlocked(direction);
 	if(direction == true) {
 	this.isBlocked1 = isBlocked;}
 	else {isBlocked2 = isBlocked;}
+	if(changed) {
+		this.registerChange(!isBlocked, ChangeEvent.Kind.BLOCKAGE, direction);
+	}
+}
+
+//*************************************************************************************//
+//VERSIONS
+
+/**
+ * Variable registering the number of changes to this road that may have changed
+ * its travel time.
+ */
+private long version = 0;
+
+/**
+ * Variable registering the number of changes to any road that may have made a
+ * road faster, including the creation of roads.
+ */
+private static final AtomicLong improvementCount = new AtomicLong();
+
+/**
+ * Set registering the segments of routes keeping their aggregates up to date that are
+ * this road, or null if there are none yet.
+ *   The set refers to them weakly, so routes that are no longer used can be garbage
+ *   collected.
+ */
+private volatile Set<Route.Segment> routeSegments = null;
+
+/**
+ * Return the version of this road, which is increased by each change to its
+ * length, average speed, delays, blockages, direction or termination.
+ */
+@Basic
+public long getVersion() {
+	return this.version;
+}
+
+/**
+ * Return the number of changes to any road that may have made a road faster:
+ * a shorter length, a higher average speed, a lower delay, an unblocked direction,
+ * a reversed direction, or a new road.
+ */
+@Basic
+public static long getImprovementCount() {
+	return improvementCount.get();
+}
+
+/**
+ * Register the given segment of a route, which is this road.
+ */
+void addRouteSegment(Route.Segment segment) {
+	synchronized(this) {
+		if(this.routeSegments == null) {
+			this.routeSegments = Route.newSegmentSet();
+		}
+	}
+	synchronized(this.routeSegments) {
+		this.routeSegments.add(segment);
+	}
+}
+
+/**
+ * Remove the given segment of a route, which is this road, from the registered ones.
+ */
+void removeRouteSegment(Route.Segment segment) {
+	Set<Route.Segment> segments = this.routeSegments;
+	if(segments != null) {
+		synchronized(segments) {
+			segments.remove(segment);
+		}
+	}
+}
+
+/**
+ * Register a change to this road that may have changed its travel time, update the
+ * aggregates of the routes that have this road as segment and keep them up to date,
+ * and publish the change on the change bus of its network.
+ * @param faster
+ * 			True if the change may have made this road faster
+ * @param kind
+ * 			The kind of the change
+ * @param direction
+ * 			The direction of the change, if its kind is directional
+ * @post	| new.getVersion() == this.getVersion() + 1
+ * @post	| if(faster) then new.getImprovementCount() == getImprovementCount() + 1
+ * @effect	| publishChange(kind, direction)
+ */
+void registerChange(boolean faster, ChangeEvent.Kind kind, boolean direction) {
+	this.version++;
+	if(faster) {
+		improvementCount.incrementAndGet();
+	}
+	Route.notifyChanged(this.routeSegments);
+	this.publishChange(kind, direction);
+}
+
+/**
+ * Publish a change of the given kind in the given direction to this road on the change
+ * bus of its network, if anybody is subscribed to it and this road has been created.
+ */
+void publishChange(ChangeEvent.Kind kind, boolean direction) {
+	ChangeBus bus = this.network.getChangeBus();
+	if(bus.hasSubscribers() && this.isCreated) {
+		bus.publish(new ChangeEvent(kind, this, null, direction, this.version));
+	}
+}
+
+//*************************************************************************************//
+//TRAVEL TIME
+
+/**
+ * Check whether this road can be driven in the given direction at all,
+ * regardless of its blockage status.
+ * @param direction
+ * 			The direction to check, true being from the first endpoint to the second
+ * @return
+ * 			| result == true
+ */
+public boolean canBeTraversedInDirection(boolean direction) {
+	return true;
+}
+
+/**
+ * Check whether this road can currently be driven in the given direction.
+ * @param direction
+ * 			The direction to check, true being from the first endpoint to the second
+ * @return	True if the road is not terminated, can be driven in the given direction,
+ * 			is not blocked in that direction and has a positive average speed
+ * 			| result == !isTerminated() && canBeTraversedInDirection(direction) &&
+ * 			|	!getIsBlocked(direction) && getAverageSpeed() > 0
+ */
+public boolean isOpenInDirection(boolean direction) {
+	if(this.isTerminated() || !this.canBeTraversedInDirection(direction)) {
+		return false;
+	}
+	return !this.getIsBlocked(direction) && this.getAverageSpeed() > 0;
+}
+
+/**
+ * Return the time needed to drive this road in the given direction.
+ * @param direction
+ * 			The direction of travel, true being from the first endpoint to the second
+ * @return
+ * 			| result == getLength()/getAverageSpeed() + getDelay(direction)
+ */
+public float getTravelTime(boolean direction) {
+	return this.getLength()/this.getAverageSpeed() + this.getDelay(direction);
+}
+
+/**
+ * Variables registering the travel time profile of this road in each direction,
+ * or null if its travel time does not depend on the time of day.
+ */
+private TravelTimeProfile profile1 = null;
+private TravelTimeProfile profile2 = null;
+
+/**
+ * Return the travel time profile of this road in the given direction, or null if
+ * its travel time in that direction does not depend on the time of day.
+ */
+@Basic
+public TravelTimeProfile getTravelTimeProfile(boolean direction) {
+	if(direction == true) {
+		return this.profile1;
+	}
+	return this.profile2;
+}
+
+/**
+ * Set the travel time profile of this road in the given direction.
+ * @param profile
+ * 			The new profile, or null to use the length and average speed again
+ * @param direction
+ * 			The direction of travel, true being from the first endpoint to the second
+ * @post	| new.getTravelTimeProfile(direction) == profile
+ * @throws IllegalArgumentException
+ * 			The road cannot be driven in the given direction
+ * 			| !canBeTraversedInDirection(direction)
+ */
+public void setTravelTimeProfile(TravelTimeProfile profile, boolean direction) throws IllegalArgumentException {
+	if(!this.canBeTraversedInDirection(direction)) {
+		throw new IllegalArgumentException();
+	}
+	boolean changed = profile != this.getTravelTimeProfile(direction);
+	if(direction == true) {
+		this.profile1 = profile;
+	}
+	else {
+		this.profile2 = profile;
+	}
+	if(changed) {
+		this.registerChange(true, ChangeEvent.Kind.TRAVEL_TIME_PROFILE, direction);
+	}
+}
+
+/**
+ * Return the time needed to drive this road in the given direction when entering
+ * it at the given time.
+ * @param direction
+ * 			The direction of travel, true being from the first endpoint to the second
+ * @param time
+ * 			The time at which the road is entered, in seconds since the start of a day
+ * @return	The travel time of the profile at the given time plus the delay, or the
+ * 			travel time regardless of the time if there is no profile
+ * 			| if(getTravelTimeProfile(direction) == null) then result == getTravelTime(direction)
+ * 			| else result == getTravelTimeProfile(direction).getTravelTime(time) + getDelay(direction)
+ */
+public double getTravelTime(boolean direction, double time) {
+	TravelTimeProfile profile = this.getTravelTimeProfile(direction);
+	if(profile == null) {
+		return this.getTravelTime(direction);
+	}
+	return profile.getTravelTime(time) + this.getDelay(direction);
 }
 
 /**
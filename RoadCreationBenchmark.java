@@ -0,0 +1,72 @@
+package connections;
+import java.util.Random;
+
+/**
+ * A benchmark measuring how many roads threads creating, renaming and terminating roads
+ * of a single network at once get through per second, for an increasing number of
+ * threads.
+ *
+ * The benchmark is run on its own, with the largest number of threads and the number
+ * of roads per thread as optional arguments; it is not part of the tests, because the
+ * numbers it prints depend on the machine it runs on.
+ */
+public class RoadCreationBenchmark {
+
+/**
+ * The number of times each number of threads is measured before it is measured for
+ * the result.
+ */
+private static final int WARMUP_COUNT = 3;
+
+public static void main(String[] args) throws InterruptedException {
+	int maxThreadCount = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+	int roadsPerThread = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+	for(int threadCount = 1;threadCount<=maxThreadCount;threadCount *= 2) {
+		for(int i = 0;i<WARMUP_COUNT;i++) {
+			run(threadCount, roadsPerThread);
+		}
+		long elapsed = Math.max(1, run(threadCount, roadsPerThread));
+		System.out.println(threadCount + " threads: " + threadCount * (long) roadsPerThread * 1000000000L / elapsed + " roads/s");
+	}
+}
+
+/**
+ * Let the given number of threads each create, rename and terminate the given number
+ * of roads between the hubs of a new network, and return the time this took in
+ * nanoseconds.
+ */
+private static long run(int threadCount, int roadsPerThread) throws InterruptedException {
+	RoadNetwork network = new RoadNetwork();
+	Location[] hubs = new Location[16];
+	for(int i = 0;i<hubs.length;i++) {
+		hubs[i] = network.createLocation(new double[] {i, 0}, "Hub " + i);
+	}
+	Thread[] threads = new Thread[threadCount];
+	for(int t = 0;t<threadCount;t++) {
+		int index = t;
+		threads[t] = new Thread(() -> {
+			Random random = new Random(index);
+			Road[] roads = new Road[roadsPerThread];
+			for(int i = 0;i<roadsPerThread;i++) {
+				int first = random.nextInt(hubs.length);
+				int second = (first + 1 + random.nextInt(hubs.length - 1)) % hubs.length;
+				roads[i] = new TwoWayRoad("T" + index + "/R" + i, hubs[first], hubs[second], 1000, 20, 10);
+			}
+			for(int i = 0;i<roadsPerThread;i += 2) {
+				roads[i].changeIdentification("U" + index + "/R" + i);
+			}
+			for(Road road:roads) {
+				road.terminate();
+			}
+		});
+	}
+	long start = System.nanoTime();
+	for(Thread thread:threads) {
+		thread.start();
+	}
+	for(Thread thread:threads) {
+		thread.join();
+	}
+	return System.nanoTime() - start;
+}
+}
@@ -0,0 +1,440 @@
+package connections;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.AbstractCollection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of road networks, each owning its own locations, roads, routes and registry
+ * of road identifications.
+ *
+ * Every location belongs to one network, and every road to the network of its
+ * endpoints, so the same identification can be used by roads of different networks.
+ * Locations and roads created without naming a network belong to the default network.
+ * Terminated locations and roads are removed from their network, so they can be
+ * garbage collected once nothing else refers to them. Conversely, a network created
+ * explicitly refers to all its locations and roads that are not terminated, so none of
+ * them is garbage collected while the network itself is in use. The default network is
+ * referred to by a static variable, and so is never dropped: it refers to its roads,
+ * and thereby to their endpoints, but only weakly to its locations. A location created
+ * without naming a network, including through the facade, that no road, route or other
+ * object refers to can thus be garbage collected, after which it is no longer among the
+ * locations of the default network.
+ *
+ * Separate networks share no state that is changed when they change, apart from the
+ * interned travel time profiles and the count of changes that may have made a road
+ * faster, which are safe to update from several threads.
+ *
+ * Several threads may also create, terminate and change the identification of the
+ * locations and roads of a single network at once. The identifications, locations,
+ * roads and routes of a network are registered in concurrent collections, and the
+ * adjoining roads of each location are changed while holding one of a fixed number of
+ * locks, the stripe of that location. A thread creating or terminating a road locks the
+ * stripes of both its endpoints, always in increasing order, so threads working on
+ * different parts of a network rarely wait for each other and never deadlock. Changes
+ * to the length, speeds, delays and blockages of a single road must still not be made
+ * by several threads at once.
+ */
+public class RoadNetwork {
+
+/**
+ * Initialize this new network without locations, roads or routes.
+ *
+ * @effect | this(false)
+ */
+public RoadNetwork() {
+	this(false);
+}
+
+/**
+ * Initialize this new network without locations, roads or routes, referring weakly to
+ * its locations if and only if the given flag is true.
+ */
+private RoadNetwork(boolean holdsLocationsWeakly) {
+	this.locations = holdsLocationsWeakly ? null : new ConcurrentSkipListMap<Long,Location>();
+	this.weakLocations = holdsLocationsWeakly ? new ConcurrentSkipListMap<Long,LocationReference>() : null;
+}
+
+/**
+ * Variable registering the network of locations and roads created without network.
+ */
+private static final RoadNetwork defaultNetwork = new RoadNetwork(true);
+
+/**
+ * Variable registering the identifications in use in this network.
+ */
+private final IdentificationRegistry identifications = new IdentificationRegistry();
+
+/**
+ * Maps registering the locations and roads of this network that are not terminated,
+ * by the number giving the order in which they were created, and set registering the
+ * routes registered in it.
+ *   A network referring weakly to its locations registers them in weakLocations
+ *   instead, and leaves locations null.
+ */
+private final ConcurrentSkipListMap<Long,Location> locations;
+private final ConcurrentSkipListMap<Long,LocationReference> weakLocations;
+private final ConcurrentSkipListMap<Long,Road> roads = new ConcurrentSkipListMap<Long,Road>();
+private final Set<Route> routes = ConcurrentHashMap.newKeySet();
+
+/**
+ * Queue registering the references to the locations of this network that were garbage
+ * collected, so they can be removed from weakLocations.
+ */
+private final ReferenceQueue<Location> collectedLocations = new ReferenceQueue<Location>();
+
+/**
+ * Map registering the roads of this network that are not terminated by identification.
+ */
+private final ConcurrentHashMap<String,Road> roadsByIdentification = new ConcurrentHashMap<String,Road>();
+
+/**
+ * Variable registering the bus publishing the changes to the roads and locations of this network.
+ */
+private final ChangeBus changeBus = new ChangeBus();
+
+/**
+ * Variable registering the number to give to the next location or road created in this network.
+ */
+private final AtomicLong nextSerial = new AtomicLong();
+
+/**
+ * The number of locks guarding the adjoining roads of the locations of a network.
+ * It is a power of two.
+ */
+private static final int STRIPE_COUNT = 64;
+
+/**
+ * Locks guarding the adjoining roads of the locations of this network.
+ */
+private final ReentrantLock[] stripes = newStripes();
+
+private static ReentrantLock[] newStripes() {
+	ReentrantLock[] result = new ReentrantLock[STRIPE_COUNT];
+	for(int i = 0;i<STRIPE_COUNT;i++) {
+		result[i] = new ReentrantLock();
+	}
+	return result;
+}
+
+/**
+ * Return the network of the locations and roads created without network.
+ */
+@Basic @Immutable
+public static RoadNetwork getDefault() {
+	return defaultNetwork;
+}
+
+/**
+ * Return the bus publishing the changes to the roads and locations of this network.
+ */
+@Basic @Immutable
+public ChangeBus getChangeBus() {
+	return this.changeBus;
+}
+
+/**
+ * Return the registry of the identifications in use in this network.
+ */
+IdentificationRegistry getIdentificationRegistry() {
+	return this.identifications;
+}
+
+/**
+ * Return the locations of this network that are not terminated, in the order in which
+ * they were created.
+ *   The result is a view that cannot be changed, and follows the changes to this network.
+ */
+public Collection<Location> getLocations() {
+	if(this.weakLocations != null) {
+		return new WeakLocations();
+	}
+	return Collections.unmodifiableCollection(this.locations.values());
+}
+
+/**
+ * Return the roads of this network that are not terminated, in the order in which
+ * they were created.
+ *   The result is a view that cannot be changed, and follows the changes to this network.
+ */
+public Collection<Road> getRoads() {
+	return Collections.unmodifiableCollection(this.roads.values());
+}
+
+/**
+ * Return the road of this network with the given identification that is not
+ * terminated, or null if there is none.
+ */
+public Road getRoad(String identification) {
+	if(identification == null) {
+		return null;
+	}
+	return this.roadsByIdentification.get(identification);
+}
+
+/**
+ * Return the routes registered in this network.
+ *   The result is a view that cannot be changed, and follows the changes to this network.
+ */
+public Collection<Route> getRoutes() {
+	return Collections.unmodifiableCollection(this.routes);
+}
+
+/**
+ * Check whether the given identification can be given to a road of this network.
+ *
+ * @return | result == (Road.isValidFormat(identification) && Road.isValidSize(identification)
+ *         |   && !isInUse(identification))
+ */
+public boolean isValidIdentification(String identification) {
+	return Road.isValidFormat(identification) && Road.isValidSize(identification)
+			&& !this.identifications.isInUse(identification);
+}
+
+/**
+ * Check whether the given identification is used by a road of this network that is
+ * not terminated.
+ */
+public boolean isInUse(String identification) {
+	return this.identifications.isInUse(identification);
+}
+
+/**
+ * Return the first identification of the given series that is not in use in this
+ * network, or null if all of them are in use.
+ *
+ * @see IdentificationRegistry#getFreeIdentification(char)
+ */
+public String getFreeIdentification(char series) throws IllegalArgumentException {
+	return this.identifications.getFreeIdentification(series);
+}
+
+/**
+ * Return the first extended identification of the given region and series that is not
+ * in use in this network, or null if all of them are in use.
+ *
+ * @see IdentificationRegistry#getFreeIdentification(String, char)
+ */
+public String getFreeIdentification(String region, char series) throws IllegalArgumentException {
+	return this.identifications.getFreeIdentification(region, series);
+}
+
+/**
+ * Return a new location of this network with the given coordinates and address.
+ *
+ * @effect | new Location(this, coordinates, address)
+ */
+public Location createLocation(double[] coordinates, String address) {
+	return new Location(this, coordinates, address);
+}
+
+/**
+ * Return a new route with the given starting location and segments, registered in
+ * this network.
+ *
+ * @throws IllegalArgumentException
+ *         The starting location does not belong to this network, or the route cannot
+ *         have the given starting location or segments.
+ *       | startingLocation.getNetwork() != this
+ */
+public Route createRoute(Location startingLocation, Object... segments) throws IllegalArgumentException {
+	if(startingLocation == null || startingLocation.getNetwork() != this) {
+		throw new IllegalArgumentException();
+	}
+	Route route = new Route(startingLocation, segments);
+	this.routes.add(route);
+	return route;
+}
+
+/**
+ * Register the given route in this network.
+ *
+ * @throws IllegalArgumentException
+ *         | route.getStartingLocation().getNetwork() != this
+ */
+public void addRoute(Route route) throws IllegalArgumentException {
+	if(route.getStartingLocation().getNetwork() != this) {
+		throw new IllegalArgumentException();
+	}
+	this.routes.add(route);
+}
+
+/**
+ * Remove the given route from the routes registered in this network.
+ *
+ * @post | !new.getRoutes().contains(route)
+ */
+public void removeRoute(Route route) {
+	this.routes.remove(route);
+}
+
+/**
+ * Return the number giving the order in which a new location or road was created in
+ * this network.
+ */
+long getNextSerial() {
+	return this.nextSerial.getAndIncrement();
+}
+
+/**
+ * Register the given new location in this network.
+ */
+void addLocation(Location location) {
+	if(this.weakLocations != null) {
+		this.removeCollectedLocations();
+		this.weakLocations.put(location.serial, new LocationReference(location, this.collectedLocations));
+	}
+	else {
+		this.locations.put(location.serial, location);
+	}
+}
+
+/**
+ * Remove the given terminated location from this network.
+ */
+void removeLocation(Location location) {
+	if(this.weakLocations != null) {
+		this.weakLocations.remove(location.serial);
+		this.removeCollectedLocations();
+	}
+	else {
+		this.locations.remove(location.serial, location);
+	}
+}
+
+/**
+ * Remove the references to garbage collected locations from weakLocations.
+ */
+private void removeCollectedLocations() {
+	for(Object reference = this.collectedLocations.poll();reference != null;reference = this.collectedLocations.poll()) {
+		this.weakLocations.remove(((LocationReference) reference).serial, reference);
+	}
+}
+
+/**
+ * Register the given new road in this network.
+ */
+void addRoad(Road road) {
+	this.roads.put(road.serial, road);
+	this.roadsByIdentification.put(road.getIdentification(), road);
+}
+
+/**
+ * Remove the given terminated road from this network.
+ */
+void removeRoad(Road road) {
+	this.roads.remove(road.serial, road);
+	this.roadsByIdentification.remove(road.getIdentification(), road);
+}
+
+/**
+ * Register the new identification of the given road of this network, which had the
+ * given old identification.
+ */
+void renameRoad(Road road, String oldIdentification) {
+	this.roadsByIdentification.remove(oldIdentification, road);
+	this.roadsByIdentification.put(road.getIdentification(), road);
+}
+
+/**
+ * A class of weak references to the locations of a network, registering the number
+ * under which the location was registered.
+ */
+private static final class LocationReference extends WeakReference<Location> {
+
+	LocationReference(Location location, ReferenceQueue<Location> queue) {
+		super(location, queue);
+		this.serial = location.serial;
+	}
+
+	final long serial;
+}
+
+/**
+ * A class of views on the locations of a network referring weakly to them, leaving
+ * out those that were garbage collected.
+ *   The size of such a view is computed by going over the locations, and may drop at
+ *   any time as locations are garbage collected.
+ */
+private final class WeakLocations extends AbstractCollection<Location> {
+
+	@Override
+	public Iterator<Location> iterator() {
+		Iterator<LocationReference> references = weakLocations.values().iterator();
+		return new Iterator<Location>() {
+
+			private Location next = null;
+
+			@Override
+			public boolean hasNext() {
+				while(this.next == null && references.hasNext()) {
+					this.next = references.next().get();
+				}
+				return this.next != null;
+			}
+
+			@Override
+			public Location next() {
+				if(!this.hasNext()) {
+					throw new NoSuchElementException();
+				}
+				Location result = this.next;
+				this.next = null;
+				return result;
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		int result = 0;
+		for(Iterator<Location> iterator = this.iterator();iterator.hasNext();iterator.next()) {
+			result++;
+		}
+		return result;
+	}
+}
+
+/**
+ * Return the index of the stripe of the given location.
+ */
+private static int getStripe(Location location) {
+	int hash = System.identityHashCode(location);
+	return (hash ^ hash >>> 16) & STRIPE_COUNT - 1;
+}
+
+/**
+ * Lock the stripes of the given locations, in increasing order, and return the indices
+ * of the locked stripes.
+ *   The stripes must be unlocked with unlockStripes by the same thread.
+ */
+int[] lockStripes(Location first, Location second) {
+	int firstStripe = getStripe(first);
+	int secondStripe = getStripe(second);
+	int[] result = firstStripe == secondStripe ? new int[] {firstStripe}
+			: new int[] {Math.min(firstStripe, secondStripe), Math.max(firstStripe, secondStripe)};
+	for(int stripe:result) {
+		this.stripes[stripe].lock();
+	}
+	return result;
+}
+
+/**
+ * Unlock the given stripes, locked by lockStripes.
+ */
+void unlockStripes(int[] stripes) {
+	for(int i = stripes.length - 1;i>=0;i--) {
+		this.stripes[stripes[i]].unlock();
+	}
+}
+}
@@ -1,8 +1,8 @@
 package connections;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collection;
-import java.util.HashSet;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
 
 import be.kuleuven.cs.som.annotate.*;
 
@@ -14,6 +14,20 @@ import be.kuleuven.cs.som.annotate.*;
 * @invar  Each route can have its segments as its segments
 * 		 |areValidSegments(this.getRouteSegments())
 * 
+* A route keeps a segment object for each of its segments, in a list that grows at its
+* end, registering the location at which the segment is entered and left. A nested
+* route tells the routes it is part of when it changes, so they know where it ends and
+* whether its segments still connect without going over their segments again; adding
+* a segment or removing the last one takes constant time, apart from passing the change
+* on to the enclosing routes. Removing another segment, which must start and end at
+* the same location, also only shifts the references to the segments after it in the
+* list.
+*
+* The total length, travel time and number of blocked segments of a route are kept up
+* to date from the first time one of them is asked for. From then on, the segment
+* objects also keep the contribution of each segment, and the roads of the route tell
+* it when they change, so it only updates the contribution of the changed segment.
+* 
 * @author Ajay Sundaresan
 * @author Ubaid ur Rehman
 */
@@ -45,7 +59,9 @@ public Route(Location startingLocation,Object... roads) throws IllegalArgumentEx
 	this.startingLocation = startingLocation;
 	}
 	if(areValidSegments(roads) == true) {
-		this.roadList = roads.clone();
+		for(Object road:roads) {
+			this.append(road);
+		}
 	}
 	else {
 		throw new IllegalArgumentException();
@@ -56,18 +72,40 @@ public Route(Location startingLocation,Object... roads) throws IllegalArgumentEx
  * Variable registering the starting location of this route.
  */
 private final Location startingLocation;
+
 /**
-* A variable containing the endpoint of the route
-*/
-Location other;
+ * List registering the segments of this route, in order.
+ */
+private final ArrayList<Segment> segments = new ArrayList<Segment>();
+
 /**
-* A variable containing the segments of the route
-*/
-Object[] roadList;
+ * Variable registering whether the aggregates of this route are kept up to date.
+ */
+private boolean isAggregated = false;
+
 /**
-* A variable containing all the locations of the route
-*/
-ArrayList<Location>locationList = new ArrayList<Location>();
+ * Variables registering the aggregates of this route: the sum of the lengths of its
+ * roads, the sum of the travel times of its roads that can be driven in the direction
+ * in which the route follows them, and the number of its roads that cannot. They are
+ * only kept up to date once the route is aggregated.
+ */
+private long totalLength = 0;
+private double totalTravelTime = 0;
+private int blockedCount = 0;
+
+/**
+ * Variable registering the number of places where a segment of this route, or of its
+ * nested routes, does not start where the previous one ends.
+ */
+private int brokenCount = 0;
+
+/**
+ * Set registering the segments of other routes that are this route, or null if there
+ * are none yet.
+ *   The set refers to them weakly, so routes that are no longer used can be garbage
+ *   collected.
+ */
+private volatile Set<Segment> parents = null;
 
 /**
  * Return the starting location of this route.
@@ -98,8 +136,11 @@ public static boolean canHaveAsStartingLocation(Location startingLocation) {
 /**
  * A method to return a copy of the segments of the given route
  */
-public Object[] getRouteSegments() {
-	Object[] segments =  this.roadList.clone();
+public synchronized Object[] getRouteSegments() {
+	Object[] segments = new Object[this.segments.size()];
+	for(int i = 0;i<segments.length;i++) {
+		segments[i] = this.segments.get(i).segment;
+	}
 	return segments;
 }
 
@@ -120,32 +161,24 @@ public Object[] getRouteSegments() {
 *		  |result == false
 */
 public boolean areValidSegments(Object... roads) {
-	if(roads.length == 0) {
-		this.other = this.getStartingLocation();
-		return true;
+	if(roads == null) {
+		return false;
 	}
 	Location tracker = this.getStartingLocation();
-	this.locationList.add(tracker);
 	for(Object road:roads) {
 		if(road instanceof Road) {
-			tracker = ((Road) road).getOtherLocation(tracker);
-			this.locationList.add(tracker);
-		}
-		
-		else if(road instanceof Route) {
-			if(tracker == ((Route) road).getStartingLocation()) {
-				tracker = ((Route) road).getAllLocations()[((Route) road).getAllLocations().length-1];
-				Location[] arr1 = ((Route) road).getAllLocations();
-				for(int i = 1;i<arr1.length;i++) {
-					this.locationList.add(arr1[i]);
-				}
-			}
-			else {
+			if(!((Road) road).isValidAddLocation(tracker)) {
 				return false;
 			}
+			tracker = ((Road) road).getOtherLocation(tracker);
+		}
+		else if(road instanceof Route && tracker == ((Route) road).getStartingLocation()) {
+			tracker = ((Route) road).getEndLocation();
+		}
+		else {
+			return false;
 		}
 	}
-	this.other = tracker;
 	return true;
 	}
 
@@ -157,59 +190,46 @@ public boolean areValidSegments(Object... roads) {
  * 		  |if(segment instanceof Road)
  * 		  |if(isValidAddLocation(segment)
  * 		  |else if(segment instanceof Route)
- * 		  |if(this.other == segment.getStartingLocation())
+ * 		  |if(this.getEndLocation() == segment.getStartingLocation())
  * @post  The number of segments of this route is
  *	      increased by 1.
  *        |new.getRouteSegments().length == getRouteSegments().length + 1
  * @post  The segment is inserted at the end
  * 		  |new.getRouteSegments(new.getRouteSegments.length-1) == road 	   
  * @throws IllegalArgumentException
- *		  |other != road.getEndpoints()[0] | other != road.getEndpoints()[1]
+ *		  The segment does not start where this route ends, or is or contains this route
+ *		  |!areValidSegments(getRouteSegments() + segment) || segment == this
  * @throws IllegalStateException
  * 		   if the route is no longer a valid route
+ * 		  |!hasValidComposition()
  */
-public void addRouteSegments(Object segment) throws IllegalStateException {
-	ArrayList<Object>list = new ArrayList<Object>(Arrays.asList(this.roadList));
-	if(segment != null) {
-	if(segment instanceof Road) {
-		if(((Road) segment).isValidAddLocation(this.other)) {
-			list.add(segment);
-			this.roadList = list.toArray(roadList);
-			this.other = ((Road) segment).getOtherLocation(this.other);
-			if(!areValidSegments(this.getRouteSegments()))
-				throw new IllegalStateException();
-		}
-		else {
-			throw new IllegalArgumentException();
-		}
-	}
-	else if(segment instanceof Route) {
-		Object[] obArray = ((Route) segment).getRouteSegments();
+public void addRouteSegments(Object segment) throws IllegalArgumentException, IllegalStateException {
+	if(segment instanceof Route) {
+		// The cycle check reads the given route before locking this one, as the enclosing route is always locked first.
 		if(segment == this) {
 			throw new IllegalArgumentException();
 		}
-		else {
-		for(Object o:obArray) {
+		for(Object o:((Route) segment).getRouteSegments()) {
 			if(o==this) {
 				throw new IllegalArgumentException();
 			}
-		}}
-		if(this.other == ((Route) segment).getStartingLocation()) {
-			list.add(segment);
-			this.roadList = list.toArray(roadList);
-			this.other = ((Route) segment).getAllLocations()[((Route) segment).getAllLocations().length-1];
-			if(!areValidSegments(this.getRouteSegments()))
-				throw new IllegalStateException();
 		}
-		else {
-			throw new IllegalArgumentException();
-		}
-	}
 	}
-	else {
+	else if(!(segment instanceof Road)) {
 		throw new IllegalArgumentException();
 	}
+	synchronized(this) {
+		if(this.brokenCount > 0) {
+			throw new IllegalStateException();
+		}
+		Location end = this.getEndLocation();
+		if(segment instanceof Road ? !((Road) segment).isValidAddLocation(end) : ((Route) segment).getStartingLocation() != end) {
+			throw new IllegalArgumentException();
+		}
+		this.append(segment);
 	}
+	this.notifyParents();
+}
 
 
 /**
@@ -223,109 +243,369 @@ public void addRouteSegments(Object segment) throws IllegalStateException {
  *	      |!new.getRouteSegments()[i] != getRouteSegments[i]
  * @post  The indices of segments beyond the removed segment are shifted one place to the left
  * @throws IllegalArgumentException
- * 		  |if(i ==0)
- * 		  |allLocations[1] != this.getStartingLocation()
- * 		  |allLocations[i+1] != track
+ * 		  The segment is not the last one, and does not end where it starts
+ * 		  |i != getRouteSegments().length-1 && getAllLocations() has another location
+ * 		  |  before and after the segment
  * @throws IndexOutOfBoundsException
- * 		  |i > list.size()-1
+ * 		  |i < 0 || i > getRouteSegments().length-1
  * @throws IllegalStateException
  * 		   if the route is no longer a valid route
+ * 		  |!hasValidComposition()
  */
 public void removeRouteSegments(int i) throws IllegalArgumentException,IndexOutOfBoundsException,IllegalStateException {
-	ArrayList<Object>list = new ArrayList<Object>(Arrays.asList(this.roadList));
-	Location[] allLocations = this.getAllLocations();
-	Location track; 
-	 if(i==list.size()-1) {
-		list.remove(i);
-		roadList = new Road[(list.size())];
-		this.roadList = list.toArray(roadList);
-		if(!areValidSegments(this.getRouteSegments()))
+	synchronized(this) {
+		if(i < 0 || i > this.segments.size()-1) {
+			throw new IndexOutOfBoundsException();
+		}
+		if(this.brokenCount > 0) {
 			throw new IllegalStateException();
-	 } 
-	 else if(i == 0) {
-		 if(allLocations[1] == this.getStartingLocation()) {
-			 list.remove(i);
-			 roadList = new Road[(list.size())];
-				this.roadList = list.toArray(roadList);
-				if(!areValidSegments(this.getRouteSegments()))
-					throw new IllegalStateException();
-		 }
-		 else {
-			 throw new IllegalArgumentException();
-		 }
-	 }
-	 else if(i > list.size()-1) {
-		 throw new IndexOutOfBoundsException();
-	 }
-	 else{ 
-		 if(((Road) list.get(i-1)).getEndpoints()[0] == allLocations[i-1]) {
-			 track = ((Road) list.get(i-1)).getEndpoints()[1];
-		 }
-		 else {
-			 track = ((Road) list.get(i-1)).getEndpoints()[0];
-		 }
-		 if(allLocations[i+1] == track) {
-			 list.remove(i);
-			 roadList = new Road[(list.size())];
-				this.roadList = list.toArray(roadList);
-				if(!areValidSegments(this.getRouteSegments()))
-					throw new IllegalStateException();
-		 }
-		 else {
-			 throw new IllegalArgumentException();
-		 }
-	 }
+		}
+		Segment removed = this.segments.get(i);
+		if(removed.next != null && removed.entry != removed.exit) {
+			throw new IllegalArgumentException();
+		}
+		this.segments.remove(i);
+		if(removed.previous != null) {
+			removed.previous.next = removed.next;
+		}
+		if(removed.next != null) {
+			removed.next.previous = removed.previous;
+		}
+		removed.isRemoved = true;
+		if(removed.segment instanceof Road) {
+			if(this.isAggregated) {
+				((Road) removed.segment).removeRouteSegment(removed);
+			}
+		}
+		else {
+			((Route) removed.segment).removeParent(removed);
+		}
+		this.update(removed, 0, 0, 0, 0);
+	}
+	this.notifyParents();
 }
+
 /**
- * Method to retun total length of the route
+ * Method to return the total length of the route, including the lengths of the roads
+ * of its nested routes
  * @return totalLength
- * 		   |for road in this.getRouteSegments()
- * 		   |totalLength = totalLength+road[i].getLength();
+ * 		   |result == (int) getTotalLength()
  */
-
 public int getRouteTotalLength() {
-	int totalLength = 0;
-	Object[] array = this.getRouteSegments();
-	for(int i = 0;i<array.length;i++) {
-		if(array[i] instanceof Road) {
-			totalLength = totalLength + ((Road) array[i]).getLength();
+	return (int) this.getTotalLength();
+}
+
+/**
+ * Return the sum of the lengths of the roads of this route, including those of its
+ * nested routes.
+ * @return | for road in this.getRouteSegments()
+ *         |   result == result + road.getLength()
+ */
+public synchronized long getTotalLength() {
+	this.aggregate();
+	return this.totalLength;
+}
+
+/**
+ * Return the sum of the travel times of the roads of this route, including those of its
+ * nested routes, in the direction in which the route follows them.
+ *   Roads that cannot be driven in that direction are left out, so the result is only
+ *   the time needed to drive this route if it is traversable.
+ * @return | for road in this.getRouteSegments()
+ *         |   if(road.isOpenInDirection(direction))
+ *         |     result == result + road.getTravelTime(direction)
+ */
+public synchronized double getTotalTravelTime() {
+	this.aggregate();
+	return this.totalTravelTime;
+}
+
+/**
+ * Return the number of roads of this route, including those of its nested routes, that
+ * cannot be driven in the direction in which the route follows them, because they are
+ * blocked, terminated or only driven in the other direction.
+ * @return | for road in this.getRouteSegments()
+ *         |   if(!road.isOpenInDirection(direction))
+ *         |     result == result + 1
+ */
+public synchronized int getBlockedSegmentCount() {
+	this.aggregate();
+	return this.blockedCount;
+}
+
+/**
+ * Check whether each segment of this route, and of its nested routes, starts where the
+ * previous one ends.
+ *   A route can lose this property when a segment is added to or removed from one of
+ *   its nested routes.
+ */
+public synchronized boolean hasValidComposition() {
+	return this.brokenCount == 0;
+}
+
+/**
+ * Method to check if route is traversable
+ * @return True if each road of the route, including those of its nested routes, can be
+ * 		   driven in the direction in which the route follows it
+ * 		   |result == (getBlockedSegmentCount() == 0)
+ * @throws IllegalStateException
+ * 		   The composition of the route is no longer valid
+ * 		   |!hasValidComposition()
+ */
+public synchronized boolean isRouteTraversable() throws IllegalStateException {
+	if(this.brokenCount > 0) {
+		throw new IllegalStateException();
+	}
+	this.aggregate();
+	return this.blockedCount == 0;
+}
+
+/**
+ * Return the location at which this route ends.
+ */
+public synchronized Location getEndLocation() {
+	return this.segments.isEmpty() ? this.getStartingLocation() : this.segments.get(this.segments.size() - 1).exit;
+}
+
+/**
+ * Method to return the locations that the route passes through
+ */
+public synchronized Location[] getAllLocations() {
+	ArrayList<Location> locations = new ArrayList<Location>();
+	locations.add(this.getStartingLocation());
+	for(Segment segment:this.segments) {
+		if(segment.segment instanceof Road) {
+			locations.add(segment.exit);
 		}
-		else if(array[i] instanceof Route) {
-			totalLength = totalLength + ((Route) array[i]).getRouteTotalLength();
+		else {
+			Location[] nested = ((Route) segment.segment).getAllLocations();
+			for(int i = 1;i<nested.length;i++) {
+				locations.add(nested[i]);
+			}
 		}
 	}
-	return totalLength;
+	return locations.toArray(new Location[locations.size()]);
 }
+
 /**
- * Method to check if route is traversable
- * @return False if route is not traversable
- * 		   |for road in this.getRouteSegments()
- * 		   |if(road[i].getIsBlocked(true) == true |road[i].getIsBlocked(falsee) == true)
- * 		   |result == false
- * 		   True if the route is indeed traversable
- * 		   |else result == true 
+ * Start keeping the aggregates of this route up to date, unless it already does.
  */
-public boolean isRouteTraversable() {
-	Object[] array = this.getRouteSegments();
-	for(int i = 0;i<array.length;i++) {
-		if(((Road) array[i]).getIsBlocked(true) == true)
-			return true;
+private void aggregate() {
+	if(this.isAggregated) {
+		return;
+	}
+	this.isAggregated = true;
+	for(Segment segment:this.segments) {
+		if(segment.segment instanceof Road) {
+			((Road) segment.segment).addRouteSegment(segment);
+		}
+		this.refresh(segment);
 	}
-	return false;
 }
 
 /**
- * Method to return the locations that the route passes through
+ * Add the given segment at the end of the segments of this route.
+ */
+private void append(Object segment) {
+	Segment result = new Segment(this, segment);
+	if(!this.segments.isEmpty()) {
+		result.previous = this.segments.get(this.segments.size() - 1);
+		result.previous.next = result;
+	}
+	this.segments.add(result);
+	if(segment instanceof Road) {
+		if(this.isAggregated) {
+			((Road) segment).addRouteSegment(result);
+		}
+	}
+	else {
+		((Route) segment).addParent(result);
+	}
+	this.recheckFrom(result);
+}
+
+/**
+ * Update this route for a change of the road or nested route of the given segment, and
+ * pass the change on to the routes this route is part of.
+ */
+void segmentChanged(Segment segment) {
+	synchronized(this) {
+		if(segment.isRemoved) {
+			return;
+		}
+		Location exit = segment.exit;
+		this.refresh(segment);
+		if(segment.exit != exit) {
+			this.recheckFrom(segment.next);
+		}
+	}
+	this.notifyParents();
+}
+
+/**
+ * Refresh the given segment and the segments after it, whose starting location may
+ * have changed, up to the first one that still starts at the same location.
+ */
+private void recheckFrom(Segment segment) {
+	for(;segment != null;segment = segment.next) {
+		Location entry = segment.previous == null ? this.getStartingLocation() : segment.previous.exit;
+		if(segment.entry == entry) {
+			return;
+		}
+		segment.entry = entry;
+		this.refresh(segment);
+	}
+}
+
+/**
+ * Compute the location at which the given segment is left, and its contribution, anew
+ * from the location at which it is entered, and update this route with the difference.
+ */
+private void refresh(Segment segment) {
+	if(segment.segment instanceof Road) {
+		Road road = (Road) segment.segment;
+		Location[] endpoints = road.getEndpoints();
+		boolean direction = endpoints[0] == segment.entry;
+		segment.exit = direction ? endpoints[1] : endpoints[0];
+		int broken = direction || endpoints[1] == segment.entry ? 0 : 1;
+		if(!this.isAggregated) {
+			this.update(segment, 0, 0, 0, broken);
+		}
+		else if(road.isOpenInDirection(direction)) {
+			this.update(segment, road.getLength(), road.getTravelTime(direction), 0, broken);
+		}
+		else {
+			this.update(segment, road.getLength(), 0, 1, broken);
+		}
+	}
+	else {
+		Route route = (Route) segment.segment;
+		synchronized(route) {
+			segment.exit = route.getEndLocation();
+			int broken = (route.getStartingLocation() == segment.entry ? 0 : 1) + route.brokenCount;
+			if(this.isAggregated) {
+				route.aggregate();
+				this.update(segment, route.totalLength, route.totalTravelTime, route.blockedCount, broken);
+			}
+			else {
+				this.update(segment, 0, 0, 0, broken);
+			}
+		}
+	}
+}
+
+/**
+ * Give the given segment the given contribution, and update this route with the
+ * difference.
+ */
+private void update(Segment segment, long length, double travelTime, int blockedCount, int brokenCount) {
+	this.totalLength = this.totalLength + length - segment.length;
+	this.totalTravelTime = this.totalTravelTime + travelTime - segment.travelTime;
+	this.blockedCount = this.blockedCount + blockedCount - segment.blockedCount;
+	this.brokenCount = this.brokenCount + brokenCount - segment.brokenCount;
+	segment.length = length;
+	segment.travelTime = travelTime;
+	segment.blockedCount = blockedCount;
+	segment.brokenCount = brokenCount;
+}
+
+/**
+ * Register the given segment of another route, which is this route.
+ */
+private void addParent(Segment segment) {
+	synchronized(this) {
+		if(this.parents == null) {
+			this.parents = newSegmentSet();
+		}
+	}
+	synchronized(this.parents) {
+		this.parents.add(segment);
+	}
+}
+
+/**
+ * Remove the given segment of another route, which is this route, from the registered ones.
  */
-public Location[] getAllLocations() {
-	Object[] r = getRouteSegments();
-	if(r.length == 0) {
-		return new Location[] {this.getStartingLocation()};
+private void removeParent(Segment segment) {
+	Set<Segment> parents = this.parents;
+	if(parents != null) {
+		synchronized(parents) {
+			parents.remove(segment);
+		}
 	}
-	ArrayList<Location>cloneLocations = new ArrayList<Location>();
-	cloneLocations.addAll(this.locationList);
-	Location[] locationArr = new Location[cloneLocations.size()];
-	locationArr = cloneLocations.toArray(locationArr);
-	return locationArr;
+}
+
+/**
+ * Pass a change of this route on to the routes it is part of.
+ */
+private void notifyParents() {
+	notifyChanged(this.parents);
+}
+
+/**
+ * Return a new empty set of segments, referring to them weakly.
+ */
+static Set<Segment> newSegmentSet() {
+	return Collections.newSetFromMap(new WeakHashMap<Segment,Boolean>());
+}
+
+/**
+ * Tell the routes of the given segments, which may be null, that their segments changed.
+ */
+static void notifyChanged(Set<Segment> segments) {
+	if(segments == null) {
+		return;
+	}
+	Segment[] changed;
+	synchronized(segments) {
+		if(segments.isEmpty()) {
+			return;
+		}
+		changed = segments.toArray(new Segment[segments.size()]);
+	}
+	// The routes are told without holding the lock of the set, so they can change it.
+	for(Segment segment:changed) {
+		segment.route.segmentChanged(segment);
+	}
+}
+
+/**
+ * A class of segments of routes, each registering a road or nested route of its route,
+ * where it is entered and left, and its contribution to the aggregates of its route.
+ */
+static final class Segment {
+
+	Segment(Route route, Object segment) {
+		this.route = route;
+		this.segment = segment;
+	}
+
+	/**
+	 * Variables registering the route of this segment, and the road or nested route it is.
+	 */
+	final Route route;
+	final Object segment;
+
+	/**
+	 * Variables registering the segments before and after this segment in its route, or
+	 * null if there are none, and whether this segment was removed from its route.
+	 */
+	Segment previous = null;
+	Segment next = null;
+	boolean isRemoved = false;
+
+	/**
+	 * Variables registering the locations at which this segment is entered and left.
+	 */
+	Location entry = null;
+	Location exit = null;
+
+	/**
+	 * Variables registering the contribution of this segment to its route.
+	 */
+	long length = 0;
+	double travelTime = 0;
+	int blockedCount = 0;
+	int brokenCount = 0;
 }
 }
@@ -0,0 +1,213 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers computing the fastest route between two locations.
+ * The travel time of a road in a given direction is its length divided by its
+ * average speed, increased with its delay in that direction. Roads that are
+ * terminated, blocked or cannot be driven in a given direction are never used.
+ *
+ * A router keeps the statistics of the last query it answered, so a single router
+ * must not be shared between threads.
+ */
+public abstract class Router {
+
+/**
+ * Variable registering the travel time of the route found by the last query.
+ */
+private double lastTravelTime = Double.POSITIVE_INFINITY;
+
+/**
+ * Variable registering the number of locations settled by the last query.
+ */
+private int lastSettledCount = 0;
+
+/**
+ * Return the fastest route from the given start location to the given end location.
+ *
+ * @param  from
+ *         The location the route must start at.
+ * @param  to
+ *         The location the route must end at.
+ * @return A route starting at from and ending at to, whose roads can all be driven
+ *         in the direction of the route and for which the sum of travel times is minimal.
+ *         If from and to are the same location, the route has no segments.
+ *         If no such route exists, null is returned.
+ * @throws IllegalArgumentException
+ *         One of the locations is null or terminated.
+ *       | !canHaveAsRouteEnd(from) || !canHaveAsRouteEnd(to)
+ */
+public abstract Route getFastestRoute(Location from, Location to) throws IllegalArgumentException;
+
+/**
+ * Return the travel time of the route found by the last query of this router.
+ *   Positive infinity is returned if the last query found no route, or if no
+ *   query has been answered yet.
+ */
+@Basic
+public double getLastTravelTime() {
+	return this.lastTravelTime;
+}
+
+/**
+ * Return the number of locations settled by the last query of this router.
+ *   A location is settled once its travel time from the start of the search is final.
+ */
+@Basic
+public int getLastSettledCount() {
+	return this.lastSettledCount;
+}
+
+/**
+ * Set the number of locations settled by the last query of this router.
+ *
+ * @post | new.getLastSettledCount() == count
+ */
+protected void setLastSettledCount(int count) {
+	this.lastSettledCount = count;
+}
+
+/**
+ * Check whether the given location can be the start or the end of a route.
+ *
+ * @param  location
+ *         The location to check.
+ * @return | result == (location != null && !location.isTerminated())
+ */
+public static boolean canHaveAsRouteEnd(Location location) {
+	return location != null && !location.isTerminated();
+}
+
+/**
+ * Check the start and end location of a query.
+ *
+ * @throws IllegalArgumentException
+ *         | !canHaveAsRouteEnd(from) || !canHaveAsRouteEnd(to)
+ */
+protected void checkRouteEnds(Location from, Location to) throws IllegalArgumentException {
+	if(!canHaveAsRouteEnd(from) || !canHaveAsRouteEnd(to)) {
+		throw new IllegalArgumentException();
+	}
+}
+
+/**
+ * Register the travel time of the route found by the last query.
+ *
+ * @post | new.getLastTravelTime() == time
+ */
+protected void setLastTravelTime(double time) {
+	this.lastTravelTime = time;
+}
+
+/**
+ * Register that the last query found no route.
+ *
+ * @post | new.getLastTravelTime() == Double.POSITIVE_INFINITY
+ */
+protected void setNoRouteFound() {
+	this.lastTravelTime = Double.POSITIVE_INFINITY;
+}
+
+/**
+ * Return the location a road leaves from when driven in the given direction.
+ */
+static Location getOrigin(Road road, boolean direction) {
+	if(direction) {
+		return road.endpoint1;
+	}
+	return road.endpoint2;
+}
+
+/**
+ * Return the location a road arrives at when driven in the given direction.
+ */
+static Location getDestination(Road road, boolean direction) {
+	if(direction) {
+		return road.endpoint2;
+	}
+	return road.endpoint1;
+}
+
+/**
+ * Return the current travel time of the given road when driven away from the given
+ * location, or positive infinity if it cannot be driven away from that location now.
+ */
+static double getTravelTimeFrom(Road road, Location origin) {
+	boolean direction = road.endpoint1 == origin;
+	if(getOrigin(road, direction) != origin || getDestination(road, direction) == origin
+			|| !road.isOpenInDirection(direction)) {
+		return Double.POSITIVE_INFINITY;
+	}
+	return road.getTravelTime(direction);
+}
+
+/**
+ * Build the route from the given start location to the given end location by
+ * following the road through which each location was reached backwards.
+ *   The travel time of the resulting route is summed again from start to end,
+ *   so every router reports exactly the same time for the same route.
+ *
+ * @param  parents
+ *         A map registering, for each reached location, the road it was reached through.
+ * @post   | new.getLastTravelTime() == the sum of the travel times of the segments
+ */
+protected Route buildRoute(Location from, Location to, Map<Location,Road> parents) {
+	ArrayList<Road> roads = new ArrayList<Road>();
+	Location tracker = to;
+	while(tracker != from) {
+		Road road = parents.get(tracker);
+		roads.add(road);
+		if(road.endpoint2 == tracker) {
+			tracker = road.endpoint1;
+		}
+		else {
+			tracker = road.endpoint2;
+		}
+	}
+	Collections.reverse(roads);
+	return this.buildRoute(from, roads);
+}
+
+/**
+ * Build the route from the given start location over the given roads, in order.
+ *
+ * @post   | new.getLastTravelTime() == the sum of the travel times of the segments
+ */
+protected Route buildRoute(Location from, Collection<Road> roads) {
+	double time = 0;
+	Location tracker = from;
+	for(Road road:roads) {
+		boolean direction = road.endpoint1 == tracker;
+		time = time + road.getTravelTime(direction);
+		tracker = getDestination(road, direction);
+	}
+	this.lastTravelTime = time;
+	return new Route(from, roads.toArray());
+}
+
+/**
+ * A class of entries in the priority queue of a search, ordered by their key.
+ */
+static class QueueEntry implements Comparable<QueueEntry> {
+
+	QueueEntry(Location location, double time, double key) {
+		this.location = location;
+		this.time = time;
+		this.key = key;
+	}
+
+	final Location location;
+	final double time;
+	final double key;
+
+	@Override
+	public int compareTo(QueueEntry other) {
+		return Double.compare(this.key, other.key);
+	}
+}
+}
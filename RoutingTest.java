@@ -0,0 +1,1809 @@
+package facade;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.*;
+
+import connections.*;
+
+/**
+ * A collection of tests to verify the routers.
+ *
+ * The test suite uses the same network as FullPart3Test, and compares the routes
+ * found by the different routers with the routes found by the Dijkstra router.
+ */
+class RoutingTest {
+
+	Facade theFacade = new Facade() {};
+
+	private static Location leuven, antwerp, brussels, gent, hasselt;
+
+	private static Road t1_leuven_antwerp, t2_leuven_brussels, t4_brussels_antwerp, t5_leuven_gent,
+		c1_circularRoad_antwerp, c2_circularRoad_brussels, O1_brussels_gent_oneWay, O2_hasselt_gent_oneWay,
+		a1_gent_brussels_alter;
+
+	private static ArrayList<Road> gridRoads = new ArrayList<Road>();
+
+	private static Location[] gridLocations;
+
+	@BeforeEach
+	void setUpBeforeEach() throws Exception {
+		leuven = theFacade.createLocation(new double[] { 10.0, 20.0 }, "Leuven");
+		antwerp = theFacade.createLocation(new double[] { 15.3, 60.6 }, "Antwerp");
+		brussels = theFacade.createLocation(new double[] { 20.0, 30.0 }, "Brussels");
+		gent = theFacade.createLocation(new double[] { 15.0, 17.5 }, "Gent");
+		hasselt = theFacade.createLocation(new double[] { 22.2, 42.5 }, "Hasselt");
+		t1_leuven_antwerp = theFacade.createTwoWayRoad("T1", leuven, antwerp, 1111, 15.5F, 10.66F);
+		t2_leuven_brussels = theFacade.createTwoWayRoad("T2", leuven, brussels, 1500, 16.66F, 12.22F);
+		t4_brussels_antwerp = theFacade.createTwoWayRoad("T4", brussels, antwerp, 55, 90.0F, 50.0F);
+		t5_leuven_gent = theFacade.createTwoWayRoad("T5", leuven, gent, 1500, 16.66F, 12.22F);
+		c1_circularRoad_antwerp = theFacade.createTwoWayRoad("C1", antwerp, antwerp, 55, 90.0F, 50.0F);
+		c2_circularRoad_brussels = theFacade.createTwoWayRoad("C2", brussels, brussels, 40, 30.0F, 20.0F);
+		O1_brussels_gent_oneWay = theFacade.createOneWayRoad("O1", brussels, gent, 70, 100.0F, 60.0F);
+		O2_hasselt_gent_oneWay = theFacade.createOneWayRoad("O2", hasselt, gent, 1500, 16.66F, 12.22F);
+		a1_gent_brussels_alter = theFacade.createAlternatingRoad("A1", gent, brussels, 1500, 16.66F, 12.22F);
+	}
+
+	@AfterEach
+	void tearDownAfterEach() throws Exception {
+		// All roads must be terminated, such that their codes can be re-used
+		// for each test.
+		theFacade.terminateRoad(t1_leuven_antwerp);
+		theFacade.terminateRoad(t2_leuven_brussels);
+		theFacade.terminateRoad(O1_brussels_gent_oneWay);
+		theFacade.terminateRoad(t4_brussels_antwerp);
+		theFacade.terminateRoad(t5_leuven_gent);
+		theFacade.terminateRoad(c1_circularRoad_antwerp);
+		theFacade.terminateRoad(c2_circularRoad_brussels);
+		theFacade.terminateRoad(O2_hasselt_gent_oneWay);
+		theFacade.terminateRoad(a1_gent_brussels_alter);
+		for (Road road : gridRoads)
+			theFacade.terminateRoad(road);
+		gridRoads.clear();
+	}
+
+	/**
+	 * Build a square grid of locations with the given number of locations on each side,
+	 * connected by roads of all kinds with random lengths, speeds, delays and blockages.
+	 */
+	void buildGrid(int size, long seed) throws Exception {
+		Random random = new Random(seed);
+		gridLocations = new Location[size * size];
+		for (int row = 0; row < size; row++)
+			for (int column = 0; column < size; column++)
+				gridLocations[row * size + column] = theFacade.createLocation(
+						new double[] { row * 69.0 / (size - 1), column * 69.0 / (size - 1) }, "Grid " + row + " " + column);
+		for (int row = 0; row < size; row++)
+			for (int column = 0; column < size; column++) {
+				if (row + 1 < size)
+					gridRoads.add(createGridRoad(random, gridLocations[row * size + column], gridLocations[(row + 1) * size + column]));
+				if (column + 1 < size)
+					gridRoads.add(createGridRoad(random, gridLocations[row * size + column], gridLocations[row * size + column + 1]));
+			}
+	}
+
+	Road createGridRoad(Random random, Location first, Location second) throws Exception {
+		int index = gridRoads.size();
+		String identification = "" + (char) ('G' + index / 100) + (index % 100 < 10 ? "0" : "") + (index % 100);
+		int length = 2000 + random.nextInt(4000);
+		float speedLimit = 20 + random.nextInt(20);
+		float averageSpeed = 5 + random.nextInt(15);
+		Road road;
+		int kind = random.nextInt(10);
+		if (kind < 6)
+			road = theFacade.createTwoWayRoad(identification, first, second, length, speedLimit, averageSpeed);
+		else if (kind < 8)
+			road = theFacade.createOneWayRoad(identification, second, first, length, speedLimit, averageSpeed);
+		else
+			road = theFacade.createAlternatingRoad(identification, first, second, length, speedLimit, averageSpeed);
+		if (random.nextInt(15) == 0)
+			theFacade.changeRoadBlockedState(road, true, true);
+		if (random.nextInt(5) == 0)
+			theFacade.changeRoadDelayinDirection(road, 1 + random.nextInt(50), true);
+		return road;
+	}
+
+	/**
+	 * Check that both routers find the same route, with exactly the same travel time.
+	 */
+	void assertSameFastestRoute(Router expected, Router actual, Location from, Location to) throws Exception {
+		Route expectedRoute = expected.getFastestRoute(from, to);
+		Route actualRoute = actual.getFastestRoute(from, to);
+		if (expectedRoute == null) {
+			assertNull(actualRoute);
+		} else {
+			assertNotNull(actualRoute);
+			assertArrayEquals(theFacade.getRouteSegments(expectedRoute), theFacade.getRouteSegments(actualRoute));
+			assertArrayEquals(theFacade.getAllLocations(expectedRoute), theFacade.getAllLocations(actualRoute));
+		}
+		assertEquals(expected.getLastTravelTime(), actual.getLastTravelTime());
+	}
+
+	/******************
+	 * Dijkstra tests *
+	 ******************/
+
+	@Test
+	void getFastestRoute_LegalCase() throws Exception {
+		Route theRoute = theFacade.getFastestRoute(leuven, gent);
+		assertEquals(leuven, theFacade.getRouteStartLocation(theRoute));
+		assertArrayEquals(new Object[] { t1_leuven_antwerp, t4_brussels_antwerp, O1_brussels_gent_oneWay },
+				theFacade.getRouteSegments(theRoute));
+	}
+
+	@Test
+	void getFastestRoute_SameLocation() throws Exception {
+		Route theRoute = theFacade.getFastestRoute(antwerp, antwerp);
+		assertEquals(0, theFacade.getRouteSegments(theRoute).length);
+	}
+
+	@Test
+	void getFastestRoute_Unreachable() throws Exception {
+		assertNull(theFacade.getFastestRoute(leuven, hasselt));
+	}
+
+	@Test
+	void getFastestRoute_BlockedRoad() throws Exception {
+		theFacade.changeRoadBlockedState(O1_brussels_gent_oneWay, true, true);
+		Route theRoute = theFacade.getFastestRoute(leuven, gent);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, theFacade.getRouteSegments(theRoute));
+	}
+
+	@Test
+	void getFastestRoute_TerminatedLocation() throws Exception {
+		theFacade.terminateLocation(hasselt);
+		try {
+			theFacade.getFastestRoute(hasselt, gent);
+			fail("Expecting exception to be thrown");
+		} catch (ModelException exc) {
+		}
+	}
+
+	/***********************
+	 * Bidirectional tests *
+	 ***********************/
+
+	@Test
+	void getFastestRouteBidirectional_AllPairs() throws Exception {
+		Location[] locations = new Location[] { leuven, antwerp, brussels, gent, hasselt };
+		for (Location from : locations)
+			for (Location to : locations)
+				assertSameFastestRoute(new DijkstraRouter(), new BidirectionalRouter(), from, to);
+	}
+
+	@Test
+	void getFastestRouteBidirectional_OneWayRoads() throws Exception {
+		// Gent can only be left over the alternating road towards Brussels or over T5.
+		Route theRoute = theFacade.getFastestRouteBidirectional(gent, antwerp);
+		assertArrayEquals(new Object[] { a1_gent_brussels_alter, t4_brussels_antwerp },
+				theFacade.getRouteSegments(theRoute));
+		assertNull(theFacade.getFastestRouteBidirectional(gent, hasselt));
+		assertNotNull(theFacade.getFastestRouteBidirectional(hasselt, antwerp));
+	}
+
+	@Test
+	void getFastestRouteBidirectional_ReversedAlternatingRoad() throws Exception {
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		theFacade.changeRoadBlockedState(O1_brussels_gent_oneWay, true, true);
+		Route theRoute = theFacade.getFastestRouteBidirectional(brussels, gent);
+		assertArrayEquals(new Object[] { a1_gent_brussels_alter }, theFacade.getRouteSegments(theRoute));
+		theRoute = theFacade.getFastestRouteBidirectional(gent, antwerp);
+		assertArrayEquals(new Object[] { t5_leuven_gent, t1_leuven_antwerp }, theFacade.getRouteSegments(theRoute));
+		Location[] locations = new Location[] { leuven, antwerp, brussels, gent, hasselt };
+		for (Location from : locations)
+			for (Location to : locations)
+				assertSameFastestRoute(new DijkstraRouter(), new BidirectionalRouter(), from, to);
+	}
+
+	@Test
+	void getFastestRouteBidirectional_BlockedRoads() throws Exception {
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, false);
+		theFacade.changeRoadBlockedState(t1_leuven_antwerp, true, true);
+		Location[] locations = new Location[] { leuven, antwerp, brussels, gent, hasselt };
+		for (Location from : locations)
+			for (Location to : locations)
+				assertSameFastestRoute(new DijkstraRouter(), new BidirectionalRouter(), from, to);
+	}
+
+	@Test
+	void getFastestRouteBidirectional_Grid() throws Exception {
+		buildGrid(12, 3);
+		Random random = new Random(7);
+		Router dijkstra = new DijkstraRouter();
+		Router bidirectional = new BidirectionalRouter();
+		for (int query = 0; query < 200; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, bidirectional, from, to);
+		}
+	}
+
+	@Test
+	void getFastestRouteBidirectional_GridReversedAlternatingRoads() throws Exception {
+		buildGrid(12, 5);
+		for (Road road : gridRoads)
+			if (road instanceof AlternatingRoad)
+				theFacade.reverseTraversalDirection(road);
+		Random random = new Random(11);
+		for (int query = 0; query < 200; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(new DijkstraRouter(), new BidirectionalRouter(), from, to);
+		}
+	}
+
+	/************
+	 * A* tests *
+	 ************/
+
+	@Test
+	void getFastestRouteAStar_Grid() throws Exception {
+		buildGrid(12, 13);
+		Random random = new Random(17);
+		Router dijkstra = new DijkstraRouter();
+		Router aStar = new AStarRouter();
+		for (int query = 0; query < 200; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, aStar, from, to);
+		}
+	}
+
+	/*******************************
+	 * Contraction hierarchy tests *
+	 *******************************/
+
+	@Test
+	void getFastestRouteContractionHierarchy_AllPairs() throws Exception {
+		Router hierarchy = new ContractionHierarchyRouter();
+		Location[] locations = new Location[] { leuven, antwerp, brussels, gent, hasselt };
+		for (Location from : locations)
+			for (Location to : locations)
+				assertSameFastestRoute(new DijkstraRouter(), hierarchy, from, to);
+	}
+
+	@Test
+	void getFastestRouteContractionHierarchy_Grid() throws Exception {
+		buildGrid(12, 19);
+		Random random = new Random(23);
+		Router dijkstra = new DijkstraRouter();
+		Router hierarchy = new ContractionHierarchyRouter();
+		for (int query = 0; query < 200; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, hierarchy, from, to);
+		}
+	}
+
+	/****************************
+	 * Customizable route tests *
+	 ****************************/
+
+	@Test
+	void getFastestRouteCustomizable_Grid() throws Exception {
+		buildGrid(12, 29);
+		Random random = new Random(31);
+		Router dijkstra = new DijkstraRouter();
+		CustomizableRouter customizable = new CustomizableRouter(gridRoads, 8, 32);
+		for (int query = 0; query < 100; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, customizable, from, to);
+		}
+	}
+
+	@Test
+	void getFastestRouteCustomizable_ChangedRoads() throws Exception {
+		buildGrid(12, 37);
+		Random random = new Random(41);
+		Router dijkstra = new DijkstraRouter();
+		CustomizableRouter customizable = new CustomizableRouter(gridRoads, 8, 32);
+		for (int round = 0; round < 3; round++) {
+			ArrayList<Road> changedRoads = new ArrayList<Road>();
+			for (int change = 0; change < 20; change++) {
+				Road road = gridRoads.get(random.nextInt(gridRoads.size()));
+				changedRoads.add(road);
+				if (road instanceof AlternatingRoad && random.nextBoolean())
+					theFacade.reverseTraversalDirection(road);
+				else if (random.nextBoolean())
+					theFacade.changeRoadBlockedState(road, !theFacade.getRoadIsBlocked(road, true), true);
+				else
+					theFacade.changeRoadDelayinDirection(road, 1 + random.nextInt(500), true);
+			}
+			if (round == 0)
+				customizable.customize();
+			else
+				customizable.customize(changedRoads);
+			for (int query = 0; query < 100; query++) {
+				Location from = gridLocations[random.nextInt(gridLocations.length)];
+				Location to = gridLocations[random.nextInt(gridLocations.length)];
+				assertSameFastestRoute(dijkstra, customizable, from, to);
+			}
+		}
+	}
+
+	/******************
+	 * Landmark tests *
+	 ******************/
+
+	@Test
+	void getFastestRouteLandmark_Grid() throws Exception {
+		buildGrid(12, 43);
+		Random random = new Random(47);
+		Router dijkstra = new DijkstraRouter();
+		LandmarkRouter landmark = new LandmarkRouter(gridRoads, 4);
+		assertEquals(4, landmark.getLandmarks().length);
+		for (int query = 0; query < 200; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, landmark, from, to);
+		}
+	}
+
+	@Test
+	void getFastestRouteLandmark_IncreasedDelays() throws Exception {
+		buildGrid(12, 53);
+		Random random = new Random(59);
+		Router dijkstra = new DijkstraRouter();
+		LandmarkRouter landmark = new LandmarkRouter(gridRoads, 4);
+		ArrayList<Road> changedRoads = new ArrayList<Road>();
+		for (int change = 0; change < 30; change++) {
+			Road road = gridRoads.get(random.nextInt(gridRoads.size()));
+			changedRoads.add(road);
+			theFacade.changeRoadDelayinDirection(road, theFacade.getRoadDelayinDirection(road, true) + 100, true);
+		}
+		assertFalse(landmark.refresh(changedRoads));
+		for (int query = 0; query < 100; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, landmark, from, to);
+		}
+		Road fasterRoad = changedRoads.get(0);
+		theFacade.changeRoadBlockedState(fasterRoad, false, true);
+		theFacade.changeRoadLength(fasterRoad, 1);
+		assertTrue(landmark.refresh(changedRoads));
+		for (int query = 0; query < 100; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, landmark, from, to);
+		}
+	}
+
+	/****************************
+	 * Travel time matrix tests *
+	 ****************************/
+
+	@Test
+	void getTravelTimeMatrix_LegalCase() throws Exception {
+		Location[] locations = { leuven, antwerp, brussels, gent, hasselt };
+		float[] matrix = theFacade.getTravelTimeMatrix(locations, locations);
+		assertEquals(25, matrix.length);
+		Router dijkstra = new DijkstraRouter();
+		for (int i = 0; i < locations.length; i++)
+			for (int j = 0; j < locations.length; j++) {
+				dijkstra.getFastestRoute(locations[i], locations[j]);
+				assertEquals((float) dijkstra.getLastTravelTime(), matrix[i * locations.length + j]);
+			}
+		assertEquals(Float.POSITIVE_INFINITY, matrix[3 * locations.length + 4]);
+	}
+
+	@Test
+	void getTravelTimeMatrix_Grid() throws Exception {
+		buildGrid(15, 61);
+		Random random = new Random(67);
+		Location[] origins = new Location[40];
+		Location[] destinations = new Location[30];
+		for (int i = 0; i < origins.length; i++)
+			origins[i] = gridLocations[random.nextInt(gridLocations.length)];
+		for (int j = 0; j < destinations.length; j++)
+			destinations[j] = gridLocations[random.nextInt(gridLocations.length)];
+		float[] matrix = new TravelTimeMatrix(gridRoads).getTravelTimes(origins, destinations);
+		Router dijkstra = new DijkstraRouter();
+		for (int i = 0; i < origins.length; i++)
+			for (int j = 0; j < destinations.length; j++) {
+				dijkstra.getFastestRoute(origins[i], destinations[j]);
+				assertEquals((float) dijkstra.getLastTravelTime(), matrix[i * destinations.length + j]);
+			}
+	}
+
+	@Test
+	void getTravelTimeMatrix_TerminatedLocation() throws Exception {
+		theFacade.terminateLocation(hasselt);
+		try {
+			theFacade.getTravelTimeMatrix(new Location[] { leuven }, new Location[] { hasselt });
+			fail("Expecting exception to be thrown");
+		} catch (ModelException exc) {
+		}
+	}
+
+	/*******************
+	 * Isochrone tests *
+	 *******************/
+
+	@Test
+	void getLocationsWithinTravelTime_LegalCase() throws Exception {
+		Router dijkstra = new DijkstraRouter();
+		dijkstra.getFastestRoute(leuven, brussels);
+		double budget = dijkstra.getLastTravelTime();
+		Location[] locations = theFacade.getLocationsWithinTravelTime(leuven, budget);
+		assertEquals(leuven, locations[0]);
+		assertEquals(brussels, locations[locations.length - 1]);
+		for (Location location : locations) {
+			dijkstra.getFastestRoute(leuven, location);
+			assertTrue(dijkstra.getLastTravelTime() <= budget);
+		}
+	}
+
+	@Test
+	void getLocationsWithinTravelTime_NegativeBudget() throws Exception {
+		try {
+			theFacade.getLocationsWithinTravelTime(leuven, -1);
+			fail("Expecting exception to be thrown");
+		} catch (ModelException exc) {
+		}
+	}
+
+	@Test
+	void getTravelTimesWithin_Grid() throws Exception {
+		buildGrid(15, 71);
+		Random random = new Random(73);
+		Router dijkstra = new DijkstraRouter();
+		IsochroneSearch isochrone = new IsochroneSearch(gridRoads);
+		LocationIndex index = isochrone.getLocationIndex();
+		for (int query = 0; query < 10; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			double budget = 500 + random.nextInt(1000);
+			float[] times = isochrone.getTravelTimesWithin(from, budget);
+			int reached = 0;
+			for (int i = 0; i < index.getSize(); i++) {
+				dijkstra.getFastestRoute(from, index.getLocationAt(i));
+				double time = dijkstra.getLastTravelTime();
+				if (time <= budget) {
+					assertEquals((float) time, times[i]);
+					reached++;
+				} else
+					assertEquals(Float.POSITIVE_INFINITY, times[i]);
+			}
+			assertEquals(reached, isochrone.getLastSettledCount());
+			assertEquals(reached, isochrone.getLocationsWithin(from, budget).length);
+		}
+	}
+
+	/****************************
+	 * Alternative routes tests *
+	 ****************************/
+
+	/**
+	 * Check that the given routes start and end at the given locations, visit no location
+	 * twice, differ from each other and are ranked by their travel time.
+	 */
+	void assertAlternativeRoutes(Location from, Location to, Route[] routes) throws Exception {
+		double previousTime = 0;
+		for (int i = 0; i < routes.length; i++) {
+			Location[] locations = theFacade.getAllLocations(routes[i]);
+			assertEquals(from, locations[0]);
+			assertEquals(to, locations[locations.length - 1]);
+			for (int j = 0; j < locations.length; j++)
+				for (int k = j + 1; k < locations.length; k++)
+					assertNotEquals(locations[j], locations[k]);
+			double time = 0;
+			for (int j = 0; j < locations.length - 1; j++) {
+				Road road = (Road) theFacade.getRouteSegments(routes[i])[j];
+				time = time + road.getTravelTime(road.getEndpoints()[0] == locations[j]);
+			}
+			assertTrue(time >= previousTime);
+			previousTime = time;
+			for (int j = 0; j < i; j++)
+				assertFalse(Arrays.equals(theFacade.getRouteSegments(routes[i]), theFacade.getRouteSegments(routes[j])));
+		}
+	}
+
+	@Test
+	void getAlternativeRoutes_LegalCase() throws Exception {
+		AlternativeRouter alternatives = new AlternativeRouter(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels,
+				t4_brussels_antwerp, t5_leuven_gent, O1_brussels_gent_oneWay, a1_gent_brussels_alter), 1);
+		Route[] routes = alternatives.getAlternativeRoutes(leuven, gent, 3).toArray(new Route[0]);
+		assertEquals(3, routes.length);
+		assertAlternativeRoutes(leuven, gent, routes);
+		assertArrayEquals(theFacade.getRouteSegments(theFacade.getFastestRoute(leuven, gent)),
+				theFacade.getRouteSegments(routes[0]));
+	}
+
+	@Test
+	void getAlternativeRoutes_Unreachable() throws Exception {
+		assertEquals(0, theFacade.getAlternativeRoutes(gent, hasselt, 3).length);
+		assertEquals(1, theFacade.getAlternativeRoutes(gent, gent, 3).length);
+	}
+
+	@Test
+	void getAlternativeRoutes_Grid() throws Exception {
+		buildGrid(15, 79);
+		Random random = new Random(83);
+		Router dijkstra = new DijkstraRouter();
+		AlternativeRouter alternatives = new AlternativeRouter(gridRoads, 0.5);
+		for (int query = 0; query < 50; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			Route[] routes = alternatives.getAlternativeRoutes(from, to, 3).toArray(new Route[0]);
+			assertSameFastestRoute(dijkstra, alternatives, from, to);
+			assertAlternativeRoutes(from, to, routes);
+		}
+	}
+
+	/*********************
+	 * Incremental tests *
+	 *********************/
+
+	@Test
+	void getFastestRouteIncremental_AllPairs() throws Exception {
+		Location[] locations = { leuven, antwerp, brussels, gent, hasselt };
+		Router dijkstra = new DijkstraRouter();
+		IncrementalRouter incremental = new IncrementalRouter(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels,
+				t4_brussels_antwerp, t5_leuven_gent, c1_circularRoad_antwerp, c2_circularRoad_brussels,
+				O1_brussels_gent_oneWay, O2_hasselt_gent_oneWay, a1_gent_brussels_alter));
+		for (Location to : locations)
+			for (Location from : locations)
+				assertSameFastestRoute(dijkstra, incremental, from, to);
+		theFacade.changeRoadBlockedState(t4_brussels_antwerp, true, true);
+		incremental.updateRoads(Arrays.asList(t4_brussels_antwerp));
+		for (Location from : locations)
+			assertSameFastestRoute(dijkstra, incremental, from, hasselt);
+	}
+
+	@Test
+	void getFastestRouteIncremental_ChangedRoads() throws Exception {
+		buildGrid(20, 89);
+		Random random = new Random(97);
+		Router dijkstra = new DijkstraRouter();
+		IncrementalRouter incremental = new IncrementalRouter(gridRoads);
+		Location to = gridLocations[random.nextInt(gridLocations.length)];
+		Location from = gridLocations[random.nextInt(gridLocations.length)];
+		assertSameFastestRoute(dijkstra, incremental, from, to);
+		int initialSettled = incremental.getLastSettledCount();
+		int repairedSettled = 0;
+		for (int change = 0; change < 50; change++) {
+			Road road = gridRoads.get(random.nextInt(gridRoads.size()));
+			int kind = random.nextInt(4);
+			if (kind == 0)
+				theFacade.changeRoadBlockedState(road, !theFacade.getRoadIsBlocked(road, true), true);
+			else if (kind == 1)
+				theFacade.changeRoadDelayinDirection(road, 1 + random.nextInt(200), true);
+			else if (kind == 2)
+				theFacade.changeRoadAverageSpeed(road, 5 + random.nextInt(15));
+			else
+				theFacade.changeRoadLength(road, 1000 + random.nextInt(5000));
+			incremental.updateRoads(Arrays.asList(road));
+			if (random.nextInt(3) == 0)
+				from = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, incremental, from, to);
+			repairedSettled += incremental.getLastSettledCount();
+		}
+		assertTrue(repairedSettled < 50 * initialSettled);
+		assertEquals(to, incremental.getGoal());
+	}
+
+	/***************
+	 * Cache tests *
+	 ***************/
+
+	@Test
+	void getFastestRouteCaching_HitsAndInvalidation() throws Exception {
+		CachingRouter cache = new CachingRouter(new DijkstraRouter(), 10);
+		Router dijkstra = new DijkstraRouter();
+		assertSameFastestRoute(dijkstra, cache, leuven, gent);
+		assertSameFastestRoute(dijkstra, cache, leuven, gent);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getHitCount());
+		// Slowing down a road off the route keeps the route.
+		theFacade.changeRoadDelayinDirection(t5_leuven_gent, 500, true);
+		assertSameFastestRoute(dijkstra, cache, leuven, gent);
+		assertEquals(2, cache.getHitCount());
+		// Slowing down a road on the route drops it.
+		theFacade.changeRoadDelayinDirection(t4_brussels_antwerp, 500, false);
+		assertSameFastestRoute(dijkstra, cache, leuven, gent);
+		assertEquals(2, cache.getMissCount());
+		assertEquals(1, cache.getInvalidationCount());
+		// Speeding up any road drops it as well.
+		theFacade.changeRoadDelayinDirection(t5_leuven_gent, 1, true);
+		assertSameFastestRoute(dijkstra, cache, leuven, gent);
+		assertEquals(3, cache.getMissCount());
+		assertEquals(2, cache.getInvalidationCount());
+	}
+
+	@Test
+	void getFastestRouteCaching_Eviction() throws Exception {
+		CachingRouter cache = new CachingRouter(new DijkstraRouter(), 2);
+		cache.warmUp(Arrays.asList(new Location[] { leuven, gent }, new Location[] { gent, hasselt },
+				new Location[] { antwerp, gent }));
+		assertEquals(2, cache.getSize());
+		assertEquals(1, cache.getEvictionCount());
+		assertEquals(0, cache.getMissCount());
+		assertNull(cache.getFastestRoute(gent, hasselt));
+		assertEquals(1, cache.getHitCount());
+		cache.getFastestRoute(leuven, gent);
+		assertEquals(1, cache.getMissCount());
+		assertEquals(2, cache.getEvictionCount());
+	}
+
+	@Test
+	void getFastestRouteCaching_ReversedAlternatingRoad() throws Exception {
+		buildGrid(10, 101);
+		Random random = new Random(103);
+		Router dijkstra = new DijkstraRouter();
+		CachingRouter cache = new CachingRouter(new DijkstraRouter(), 20);
+		Location[][] pairs = new Location[20][];
+		for (int i = 0; i < pairs.length; i++)
+			pairs[i] = new Location[] { gridLocations[random.nextInt(gridLocations.length)],
+					gridLocations[random.nextInt(gridLocations.length)] };
+		for (int round = 0; round < 20; round++) {
+			Road road = gridRoads.get(random.nextInt(gridRoads.size()));
+			if (road instanceof AlternatingRoad)
+				theFacade.reverseTraversalDirection(road);
+			else
+				theFacade.changeRoadDelayinDirection(road, 1 + random.nextInt(100), true);
+			for (Location[] pair : pairs)
+				assertSameFastestRoute(dijkstra, cache, pair[0], pair[1]);
+		}
+		assertTrue(cache.getHitCount() > 0);
+	}
+
+	/************************
+	 * Time-dependent tests *
+	 ************************/
+
+	@Test
+	void getFastestRouteTimeDependent_NoProfiles() throws Exception {
+		buildGrid(12, 107);
+		Random random = new Random(109);
+		Router dijkstra = new DijkstraRouter();
+		TimeDependentRouter timeDependent = new TimeDependentRouter(gridRoads);
+		for (int query = 0; query < 100; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			assertSameFastestRoute(dijkstra, timeDependent, from, to);
+		}
+	}
+
+	@Test
+	void getFastestRouteTimeDependent_RushHour() throws Exception {
+		TravelTimeProfile rushHour = TravelTimeProfile.getProfile(new float[] { 0, 7 * 3600, 8 * 3600, 9 * 3600, 10 * 3600 },
+				new float[] { 100, 100, 1000, 1000, 100 });
+		t1_leuven_antwerp.setTravelTimeProfile(rushHour, true);
+		TimeDependentRouter timeDependent = new TimeDependentRouter();
+		Route night = timeDependent.getFastestRoute(leuven, gent, 3 * 3600);
+		assertArrayEquals(new Object[] { t1_leuven_antwerp, t4_brussels_antwerp, O1_brussels_gent_oneWay },
+				theFacade.getRouteSegments(night));
+		Route morning = timeDependent.getFastestRoute(leuven, gent, 8 * 3600 + 15 * 60);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, theFacade.getRouteSegments(morning));
+		assertEquals(t5_leuven_gent.getTravelTime(true), timeDependent.getLastTravelTime(), 1e-3);
+		// The next day, rush hour is the same.
+		Route nextMorning = timeDependent.getFastestRoute(leuven, gent, 24 * 3600 + 8 * 3600 + 15 * 60);
+		assertArrayEquals(new Object[] { t5_leuven_gent }, theFacade.getRouteSegments(nextMorning));
+	}
+
+	@Test
+	void travelTimeProfile_Interpolation() throws Exception {
+		TravelTimeProfile profile = TravelTimeProfile.getProfile(new float[] { 3600, 7200 }, new float[] { 100, 300 });
+		assertEquals(100, profile.getTravelTime(3600), 1e-9);
+		assertEquals(200, profile.getTravelTime(5400), 1e-9);
+		assertEquals(300, profile.getTravelTime(7200), 1e-9);
+		// From the last breakpoint back to the first breakpoint of the next day.
+		assertEquals(100, profile.getTravelTime(3600 - TravelTimeProfile.PERIOD), 1e-9);
+		assertEquals(200, profile.getTravelTime((7200 + 3600 + TravelTimeProfile.PERIOD) / 2.0), 1e-9);
+	}
+
+	@Test
+	void travelTimeProfile_Shared() throws Exception {
+		float[] times = { 0, 3600 };
+		TravelTimeProfile first = TravelTimeProfile.getProfile(times, new float[] { 50, 60 });
+		TravelTimeProfile second = TravelTimeProfile.getProfile(times.clone(), new float[] { 50, 60 });
+		assertSame(first, second);
+		assertNotSame(first, TravelTimeProfile.getProfile(times, new float[] { 50, 70 }));
+	}
+
+	@Test
+	void travelTimeProfile_NotFifo() throws Exception {
+		assertFalse(TravelTimeProfile.isValidProfile(new float[] { 0, 60 }, new float[] { 200, 100 }));
+		assertFalse(TravelTimeProfile.isValidProfile(new float[] { 60, 0 }, new float[] { 100, 100 }));
+		assertTrue(TravelTimeProfile.isValidProfile(new float[] { 0, 60 }, new float[] { 200, 140 }));
+	}
+
+	/**********************
+	 * Reachability tests *
+	 **********************/
+
+	@Test
+	void canReach_LegalCase() throws Exception {
+		ReachabilityIndex reachability = new ReachabilityIndex(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels,
+				t4_brussels_antwerp, t5_leuven_gent, c1_circularRoad_antwerp, c2_circularRoad_brussels,
+				O1_brussels_gent_oneWay, O2_hasselt_gent_oneWay, a1_gent_brussels_alter));
+		assertTrue(reachability.canReach(hasselt, leuven));
+		assertFalse(reachability.canReach(leuven, hasselt));
+		assertTrue(reachability.areStronglyConnected(gent, antwerp));
+		assertEquals(4, reachability.getComponentSize(leuven));
+		assertEquals(2, reachability.getComponentCount());
+		theFacade.changeRoadBlockedState(a1_gent_brussels_alter, true, true);
+		theFacade.changeRoadBlockedState(t5_leuven_gent, true, false);
+		reachability.update(Arrays.asList(a1_gent_brussels_alter, t5_leuven_gent));
+		assertFalse(reachability.canReach(gent, leuven));
+		assertTrue(reachability.canReach(hasselt, gent));
+		assertEquals(3, reachability.getComponentCount());
+		theFacade.changeRoadBlockedState(a1_gent_brussels_alter, false, true);
+		reachability.update(Arrays.asList(a1_gent_brussels_alter));
+		assertTrue(reachability.canReach(gent, leuven));
+		assertEquals(2, reachability.getComponentCount());
+	}
+
+	@Test
+	void canReach_TerminatedLocation() throws Exception {
+		ReachabilityIndex reachability = new ReachabilityIndex(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels,
+				t4_brussels_antwerp, O1_brussels_gent_oneWay, a1_gent_brussels_alter));
+		assertTrue(reachability.canReach(gent, leuven));
+		theFacade.terminateLocation(brussels);
+		reachability.update(brussels);
+		assertFalse(reachability.canReach(gent, leuven));
+		try {
+			reachability.canReach(gent, brussels);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	void canReach_Grid() throws Exception {
+		buildGrid(12, 113);
+		Random random = new Random(127);
+		Router dijkstra = new DijkstraRouter();
+		ReachabilityIndex reachability = new ReachabilityIndex(gridRoads);
+		for (int change = 0; change < 40; change++) {
+			// Every other step changes several roads, which the index finds by their versions.
+			for (int i = 0; i < (change % 2 == 0 ? 1 : 3); i++) {
+				Road road = gridRoads.get(random.nextInt(gridRoads.size()));
+				if (road instanceof AlternatingRoad && random.nextBoolean())
+					theFacade.reverseTraversalDirection(road);
+				else
+					theFacade.changeRoadBlockedState(road, !theFacade.getRoadIsBlocked(road, true), true);
+				if (change % 2 == 0)
+					reachability.update(Arrays.asList(road));
+			}
+			if (change % 2 == 1)
+				reachability.update();
+			for (int query = 0; query < 20; query++) {
+				Location from = gridLocations[random.nextInt(gridLocations.length)];
+				Location to = gridLocations[random.nextInt(gridLocations.length)];
+				assertEquals(dijkstra.getFastestRoute(from, to) != null, reachability.canReach(from, to));
+			}
+		}
+	}
+
+	/******************
+	 * Snapshot tests *
+	 ******************/
+
+	@Test
+	void getFastestRouteSnapshot_Grid() throws Exception {
+		buildGrid(15, 131);
+		Random random = new Random(137);
+		Router dijkstra = new DijkstraRouter();
+		SnapshotRouter router = new SnapshotRouter(new GraphSnapshot(gridRoads));
+		for (int query = 0; query < 50; query++) {
+			Location from = gridLocations[random.nextInt(gridLocations.length)];
+			Location to = gridLocations[random.nextInt(gridLocations.length)];
+			Route expected = dijkstra.getFastestRoute(from, to);
+			Route route = router.getFastestRoute(from, to);
+			assertEquals(expected == null, route == null);
+			if (route != null)
+				assertEquals(dijkstra.getLastTravelTime(), router.getLastTravelTime());
+		}
+	}
+
+	@Test
+	void getFastestRouteSnapshot_Refresh() throws Exception {
+		GraphSnapshot snapshot = new GraphSnapshot(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels,
+				t4_brussels_antwerp, t5_leuven_gent, O1_brussels_gent_oneWay, a1_gent_brussels_alter));
+		assertEquals(12, snapshot.getEdgeCount());
+		SnapshotRouter router = new SnapshotRouter(snapshot);
+		Router dijkstra = new DijkstraRouter();
+		dijkstra.getFastestRoute(leuven, antwerp);
+		double time = dijkstra.getLastTravelTime();
+		theFacade.changeRoadBlockedState(t1_leuven_antwerp, true, true);
+		router.getFastestRoute(leuven, antwerp);
+		assertEquals(time, router.getLastTravelTime());
+		router.setSnapshot(snapshot.refresh());
+		assertEquals(Arrays.asList(t2_leuven_brussels, t4_brussels_antwerp),
+				Arrays.asList(router.getFastestRoute(leuven, antwerp).getRouteSegments()));
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		GraphSnapshot refreshed = snapshot.refresh();
+		GraphSnapshot partial = snapshot.refresh(Arrays.asList(t1_leuven_antwerp, a1_gent_brussels_alter));
+		for (int edge = 0; edge < snapshot.getEdgeCount(); edge++)
+			assertEquals(refreshed.getTravelTime(edge), partial.getTravelTime(edge));
+		try {
+			router.setSnapshot(new GraphSnapshot(Arrays.asList(t1_leuven_antwerp)));
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	/********************
+	 * Graph file tests *
+	 ********************/
+
+	@Test
+	void graphFile_Grid() throws Exception {
+		buildGrid(12, 139);
+		Path path = Files.createTempFile("grid", ".graph");
+		try {
+			GraphFile.write(gridRoads, path);
+			GraphFile file = new GraphFile(path);
+			GraphSnapshot snapshot = new GraphSnapshot(gridRoads);
+			assertEquals(snapshot.getLocationCount(), file.getLocationCount());
+			assertEquals(gridRoads.size(), file.getRoadCount());
+			assertEquals(snapshot.getEdgeCount(), file.getEdgeCount());
+			for (int node = 0; node < file.getLocationCount(); node++) {
+				Location location = snapshot.getLocationIndex().getLocationAt(node);
+				assertArrayEquals(location.getCoordinates(), file.getCoordinates(node));
+				assertEquals(location.getAddress(), file.getAddress(node));
+				assertEquals(snapshot.getFirstEdge(node), file.getFirstEdge(node));
+			}
+			for (int edge = 0; edge < file.getEdgeCount(); edge++) {
+				assertEquals(snapshot.getHead(edge), file.getHead(edge));
+				assertEquals(snapshot.getTravelTime(edge), file.getTravelTime(edge));
+			}
+			for (Road road : gridRoads) {
+				int index = file.getIndexOfRoad(road.getIdentification());
+				assertEquals(road.getIdentification(), file.getIdentification(index));
+				assertEquals(road.getLength(), file.getLength(index));
+				assertEquals(road.getIsBlocked(true), file.getIsBlocked(index, true));
+				assertEquals(road.getDelay(true), file.getDelay(index, true));
+			}
+			assertEquals(-1, file.getIndexOfRoad("Z99"));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	void graphFile_Views() throws Exception {
+		theFacade.changeRoadBlockedState(t5_leuven_gent, true, false);
+		theFacade.changeRoadDelayinDirection(O1_brussels_gent_oneWay, 12, true);
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		Path path = Files.createTempFile("network", ".graph");
+		try {
+			GraphFile.write(Arrays.asList(t1_leuven_antwerp, t5_leuven_gent, c1_circularRoad_antwerp,
+					O1_brussels_gent_oneWay, a1_gent_brussels_alter), path);
+			// The roads of the file can only be created once their identifications are free.
+			for (Road road : new Road[] { t1_leuven_antwerp, t5_leuven_gent, c1_circularRoad_antwerp,
+					O1_brussels_gent_oneWay, a1_gent_brussels_alter })
+				theFacade.terminateRoad(road);
+			GraphFile file = new GraphFile(path);
+			Road t5 = file.getRoad(file.getIndexOfRoad("T5"));
+			Road o1 = file.getRoad(file.getIndexOfRoad("O1"));
+			Road a1 = file.getRoad(file.getIndexOfRoad("A1"));
+			Road c1 = file.getRoad(file.getIndexOfRoad("C1"));
+			try {
+				assertTrue(t5 instanceof TwoWayRoad);
+				assertTrue(t5.getIsBlocked(false));
+				assertFalse(t5.getIsBlocked(true));
+				assertTrue(o1 instanceof OneWayRoad);
+				assertEquals(12, o1.getDelay(true));
+				assertTrue(a1 instanceof AlternatingRoad);
+				assertEquals(brussels.getAddress(), a1.getEndpoints()[0].getAddress());
+				assertSame(c1.getEndpoints()[0], c1.getEndpoints()[1]);
+				assertSame(t5, file.getRoad(file.getIndexOfRoad("T5")));
+				assertSame(t5.getEndpoints()[0], file.getRoad(file.getIndexOfRoad("T1")).getEndpoints()[0]);
+			} finally {
+				for (Road road : new Road[] { t5, o1, a1, c1, file.getRoad(file.getIndexOfRoad("T1")) })
+					road.terminate();
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	void graphFile_Corrupt() throws Exception {
+		Path path = Files.createTempFile("network", ".graph");
+		try {
+			GraphFile.write(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels), path);
+			byte[] bytes = Files.readAllBytes(path);
+			Files.write(path, Arrays.copyOf(bytes, bytes.length - 1));
+			try {
+				new GraphFile(path);
+				fail("Expecting exception to be thrown");
+			} catch (IOException exc) {
+			}
+			bytes[4]++;
+			Files.write(path, bytes);
+			try {
+				new GraphFile(path);
+				fail("Expecting exception to be thrown");
+			} catch (IOException exc) {
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/********************
+	 * Checkpoint tests *
+	 ********************/
+
+	@Test
+	void networkCheckpoint_RestoreState() throws Exception {
+		theFacade.changeRoadBlockedState(t5_leuven_gent, true, false);
+		theFacade.changeRoadDelayinDirection(t2_leuven_brussels, 17, false);
+		theFacade.changeRoadDelayinDirection(O1_brussels_gent_oneWay, 12, true);
+		theFacade.reverseTraversalDirection(a1_gent_brussels_alter);
+		t1_leuven_antwerp.setTravelTimeProfile(TravelTimeProfile.getProfile(new float[] { 0, 30000 },
+				new float[] { 80, 140 }), false);
+		Route inner = theFacade.createRoute(brussels, t4_brussels_antwerp, c1_circularRoad_antwerp);
+		Route outer = theFacade.createRoute(leuven, t2_leuven_brussels, inner, t4_brussels_antwerp);
+		theFacade.terminateRoad(O2_hasselt_gent_oneWay);
+		theFacade.terminateLocation(hasselt);
+		Path path = Files.createTempFile("network", ".checkpoint");
+		NetworkCheckpoint checkpoint = null;
+		try {
+			NetworkCheckpoint.write(Arrays.asList(t1_leuven_antwerp, t2_leuven_brussels, t4_brussels_antwerp,
+					t5_leuven_gent, O1_brussels_gent_oneWay, O2_hasselt_gent_oneWay, a1_gent_brussels_alter),
+					Arrays.asList(outer), path);
+			// The restored roads can only be created once their identifications are free.
+			for (Road road : new Road[] { t1_leuven_antwerp, t2_leuven_brussels, t4_brussels_antwerp, t5_leuven_gent,
+					c1_circularRoad_antwerp, O1_brussels_gent_oneWay, a1_gent_brussels_alter })
+				theFacade.terminateRoad(road);
+			checkpoint = new NetworkCheckpoint(path);
+			assertEquals(5, checkpoint.getLocations().size());
+			assertEquals(8, checkpoint.getRoads().size());
+			assertEquals(2, checkpoint.getRoutes().size());
+			Road t1 = checkpoint.getRoads().get(0);
+			Road t2 = checkpoint.getRoads().get(1);
+			Road t5 = checkpoint.getRoads().get(3);
+			Road o1 = checkpoint.getRoads().get(4);
+			Road o2 = checkpoint.getRoads().get(5);
+			Road a1 = checkpoint.getRoads().get(6);
+			assertEquals("T1", t1.getIdentification());
+			assertEquals(t1_leuven_antwerp.getTravelTimeProfile(false), t1.getTravelTimeProfile(false));
+			assertEquals(17, t2.getDelay(false));
+			assertTrue(t5.getIsBlocked(false));
+			assertEquals(12, o1.getDelay(true));
+			assertTrue(o2.isTerminated());
+			assertTrue(o2.getEndpoints()[0].isTerminated());
+			assertEquals("Hasselt", o2.getEndpoints()[0].getAddress());
+			assertEquals("Brussels", a1.getEndpoints()[0].getAddress());
+			assertArrayEquals(brussels.getCoordinates(), a1.getEndpoints()[0].getCoordinates());
+			Route route = checkpoint.getRoutes().get(1);
+			assertSame(t2, route.getRouteSegments()[0]);
+			assertSame(checkpoint.getRoutes().get(0), route.getRouteSegments()[1]);
+			assertEquals(outer.getRouteTotalLength(), route.getRouteTotalLength());
+		} finally {
+			Files.delete(path);
+			if (checkpoint != null)
+				for (Road road : checkpoint.getRoads())
+					road.terminate();
+		}
+	}
+
+	@Test
+	void networkCheckpoint_Corrupt() throws Exception {
+		Path path = Files.createTempFile("network", ".checkpoint");
+		try {
+			NetworkCheckpoint.write(Arrays.asList(t1_leuven_antwerp), new ArrayList<Route>(), path);
+			byte[] bytes = Files.readAllBytes(path);
+			bytes[bytes.length / 2]++;
+			Files.write(path, bytes);
+			try {
+				new NetworkCheckpoint(path);
+				fail("Expecting exception to be thrown");
+			} catch (IOException exc) {
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	@Test
+	void networkCheckpoint_IdentificationInUse() throws Exception {
+		Path path = Files.createTempFile("network", ".checkpoint");
+		try {
+			NetworkCheckpoint.write(Arrays.asList(t1_leuven_antwerp), new ArrayList<Route>(), path);
+			// The copy refers to the locations, so none of them is garbage collected meanwhile.
+			HashSet<Location> locations = new HashSet<Location>(RoadNetwork.getDefault().getLocations());
+			try {
+				new NetworkCheckpoint(path);
+				fail("Expecting exception to be thrown");
+			} catch (IllegalArgumentException exc) {
+			}
+			assertEquals(locations, new HashSet<Location>(RoadNetwork.getDefault().getLocations()));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/******************
+	 * Importer tests *
+	 ******************/
+
+	@Test
+	void networkImporter_Csv() throws Exception {
+		String csv = "# exported network\n"
+				+ "location,L1,1.5,2.5,\"Tiensestraat 1, Leuven\"\n"
+				+ "location,L2,3,4,Namur\n"
+				+ "location,L3,5,6,namur\n"
+				+ "location,L2,7,8,Liege\n"
+				+ "\n"
+				+ "road,X1,two-way,L1,L2,1000,20,10\n"
+				+ "road,X2,one-way,L2,L1,500,30,15\n"
+				+ "road,X3,two-way,L1,L9,500,30,15\n"
+				+ "road,T1,two-way,L1,L2,500,30,15\n"
+				+ "road,X4,alternating,L1,L2,-5,30,15\n"
+				+ "road,X5,two-way,L1,L2,500,10,15\n"
+				+ "road,X1,two-way,L1,L2,500,30,15\n"
+				+ "tunnel,X6\n";
+		// The importer gets a network of its own, in which only T1 is already in use.
+		RoadNetwork network = new RoadNetwork();
+		new TwoWayRoad("T1", network.createLocation(new double[] { 0, 0 }, "Aarschot"),
+				network.createLocation(new double[] { 0, 1 }, "Diest"), 100, 20, 10);
+		NetworkImporter importer = new NetworkImporter(network);
+		ArrayList<Long> progress = new ArrayList<Long>();
+		importer.setProgressListener(progress::add, 5);
+		importer.importCsv(new StringReader(csv));
+		try {
+			assertEquals(12, importer.getRecordCount());
+			assertEquals(Arrays.asList(5L, 10L, 12L), progress);
+			assertEquals(2, importer.getLocationCount());
+			assertEquals("Tiensestraat 1, Leuven", importer.getLocation("L1").getAddress());
+			assertEquals(2, importer.getRoads().size());
+			assertTrue(importer.getRoads().get(1) instanceof OneWayRoad);
+			assertSame(importer.getLocation("L2"), importer.getRoads().get(1).getEndpoints()[0]);
+			assertEquals(8, importer.getErrors().size());
+			assertTrue(importer.getErrors().get(0).startsWith("line 4:"));
+			Route route = new DijkstraRouter().getFastestRoute(importer.getLocation("L2"),
+					importer.getLocation("L1"));
+			assertEquals(1, route.getRouteSegments().length);
+		} finally {
+			for (Road road : importer.getRoads())
+				road.terminate();
+		}
+	}
+
+	@Test
+	void networkImporter_GeoJson() throws Exception {
+		String json = "{\"type\": \"FeatureCollection\", \"features\": [\n"
+				+ " {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [1.5, 2]},"
+				+ " \"properties\": {\"key\": \"a\", \"address\": \"Mechelen\"}},\n"
+				+ " {\"type\": \"Feature\", \"geometry\": {\"type\": \"Point\", \"coordinates\": [3, 4e1]},"
+				+ " \"properties\": {\"key\": \"b\", \"address\": \"Lier\"}},\n"
+				+ " {\"type\": \"Feature\", \"geometry\": {\"type\": \"Polygon\", \"coordinates\": []},"
+				+ " \"properties\": {}},\n"
+				+ " {\"type\": \"Feature\", \"geometry\": {\"type\": \"LineString\", \"coordinates\": [[1.5, 2], [3, 40]]},"
+				+ " \"properties\": {\"identification\": \"Y1\", \"kind\": \"alternating\", \"from\": \"a\","
+				+ " \"to\": \"b\", \"length\": 2500, \"speedLimit\": 25.5, \"averageSpeed\": 12, \"lanes\": null}}\n"
+				+ "], \"name\": \"Antwerp \\\"province\\\"\"}";
+		NetworkImporter importer = new NetworkImporter();
+		importer.importGeoJson(new StringReader(json));
+		try {
+			assertEquals(4, importer.getRecordCount());
+			assertEquals(1, importer.getErrors().size());
+			assertTrue(importer.getErrors().get(0).startsWith("feature 3:"));
+			assertArrayEquals(new double[] { 3, 40 }, importer.getLocation("b").getCoordinates());
+			Road road = importer.getRoads().get(0);
+			assertTrue(road instanceof AlternatingRoad);
+			assertEquals(2500, road.getLength());
+			assertEquals(25.5F, road.getSpeedLimit());
+			try {
+				importer.importGeoJson(new StringReader("[1, 2]"));
+				fail("Expecting exception to be thrown");
+			} catch (IOException exc) {
+			}
+		} finally {
+			for (Road road : importer.getRoads())
+				road.terminate();
+		}
+	}
+
+	/*********************************
+	 * Identification registry tests *
+	 *********************************/
+
+	@Test
+	void identificationRegistry_Codes() throws Exception {
+		assertEquals(0, IdentificationRegistry.getCode("A0"));
+		assertEquals(10, IdentificationRegistry.getCode("A00"));
+		assertEquals(IdentificationRegistry.CODE_COUNT - 1, IdentificationRegistry.getCode("Z99"));
+		assertEquals(-1, IdentificationRegistry.getCode("a1"));
+		assertEquals(-1, IdentificationRegistry.getCode("A123"));
+		for (int code = 0; code < IdentificationRegistry.CODE_COUNT; code++)
+			assertEquals(code, IdentificationRegistry.getCode(IdentificationRegistry.getIdentification(code)));
+		IdentificationRegistry registry = new IdentificationRegistry();
+		assertTrue(registry.register("B7"));
+		assertFalse(registry.register("B7"));
+		assertTrue(registry.register("\u00c91"));
+		assertTrue(registry.isInUse("\u00c91"));
+		assertEquals(2, registry.getSize());
+		assertTrue(registry.release("B7"));
+		assertFalse(registry.release("B7"));
+		assertFalse(registry.isInUse("B7"));
+	}
+
+	@Test
+	void getFreeIdentification_Series() throws Exception {
+		assertEquals("T0", Road.getFreeIdentification('T'));
+		ArrayList<Road> roads = new ArrayList<Road>();
+		try {
+			for (int i = 0; i < IdentificationRegistry.SERIES_SIZE; i++) {
+				String identification = Road.getFreeIdentification('Q');
+				roads.add(theFacade.createTwoWayRoad(identification, leuven, gent, 100, 20, 10));
+			}
+			assertEquals("Q00", roads.get(10).getIdentification());
+			assertNull(Road.getFreeIdentification('Q'));
+			theFacade.terminateRoad(roads.get(42));
+			assertEquals(roads.get(42).getIdentification(), Road.getFreeIdentification('Q'));
+			theFacade.changeRoadIdentification(roads.get(7), "Q32");
+			assertEquals("Q7", Road.getFreeIdentification('Q'));
+		} finally {
+			for (Road road : roads)
+				theFacade.terminateRoad(road);
+		}
+	}
+
+	@Test
+	void extendedIdentification_LegalCase() throws Exception {
+		assertTrue(IdentificationRegistry.isExtendedIdentification("BE.VLG/N12345"));
+		assertTrue(IdentificationRegistry.isExtendedIdentification("NL/A0"));
+		assertFalse(IdentificationRegistry.isExtendedIdentification("E333"));
+		assertFalse(IdentificationRegistry.isExtendedIdentification("BE./N1"));
+		assertFalse(IdentificationRegistry.isExtendedIdentification("1BE/N1"));
+		assertFalse(IdentificationRegistry.isExtendedIdentification("BE/N1234567890"));
+		assertEquals(IdentificationRegistry.getCode("A12"), IdentificationRegistry.getExtendedCode("BE/A12"));
+		Road road = theFacade.createTwoWayRoad("BE.VLG/N12345", leuven, gent, 100, 20, 10);
+		try {
+			assertEquals("BE.VLG/N12345", theFacade.getRoadIdentification(road));
+			try {
+				theFacade.createTwoWayRoad("BE.VLG/N12345", leuven, gent, 100, 20, 10);
+				fail("Expecting exception to be thrown");
+			} catch (ModelException exc) {
+			}
+			theFacade.changeRoadIdentification(road, "BE.WAL/N12345");
+			assertEquals("BE.VLG/N0", Road.getFreeIdentification("BE.VLG", 'N'));
+		} finally {
+			theFacade.terminateRoad(road);
+		}
+		assertTrue(Road.isValidIdentification("BE.WAL/N12345"));
+	}
+
+	@Test
+	void extendedIdentification_BeyondLegacyCeiling() throws Exception {
+		ArrayList<Road> roads = new ArrayList<Road>();
+		try {
+			for (int i = 0; i < 3000; i++)
+				roads.add(theFacade.createTwoWayRoad(Road.getFreeIdentification("BE", 'R'), leuven, gent, 100, 20, 10));
+			assertEquals("BE/R0", roads.get(0).getIdentification());
+			assertEquals("BE/R00", roads.get(10).getIdentification());
+			assertEquals("BE/R000", roads.get(110).getIdentification());
+			assertEquals("BE/R1890", Road.getFreeIdentification("BE", 'R'));
+		} finally {
+			for (Road road : roads)
+				theFacade.terminateRoad(road);
+		}
+	}
+
+	@Test
+	void identificationRegistry_Random() throws Exception {
+		Random random = new Random(149);
+		IdentificationRegistry registry = new IdentificationRegistry();
+		HashSet<String> expected = new HashSet<String>();
+		for (int step = 0; step < 20000; step++) {
+			String identification = (random.nextBoolean() ? "R" + random.nextInt(3) + "/" : "")
+					+ (char) ('A' + random.nextInt(3)) + random.nextInt(random.nextBoolean() ? 100 : 5000);
+			if (random.nextInt(3) == 0)
+				assertEquals(expected.remove(identification), registry.release(identification));
+			else
+				assertEquals(expected.add(identification), registry.register(identification));
+			assertEquals(expected.size(), registry.getSize());
+			if (step % 50 == 0)
+				assertEquals(getFirstFree(expected, "R1/B"), registry.getFreeIdentification("R1", 'B'));
+		}
+		for (String identification : expected)
+			assertTrue(registry.isInUse(identification));
+	}
+
+	/**
+	 * Return the first identification with the given prefix and one or more digits that
+	 * is not in the given set, trying identifications with fewer digits first.
+	 */
+	private static String getFirstFree(HashSet<String> used, String prefix) {
+		for (int size = 10;; size *= 10)
+			for (int value = 0; value < size; value++) {
+				String digits = Integer.toString(size + value).substring(1);
+				if (!used.contains(prefix + digits))
+					return prefix + digits;
+			}
+	}
+
+	/**********************
+	 * Road network tests *
+	 **********************/
+
+	@Test
+	void roadNetwork_Isolation() throws Exception {
+		RoadNetwork first = theFacade.createRoadNetwork();
+		RoadNetwork second = theFacade.createRoadNetwork();
+		Location a = theFacade.createLocation(first, new double[] { 0, 0 }, "A");
+		Location b = theFacade.createLocation(first, new double[] { 0, 1 }, "B");
+		Location c = theFacade.createLocation(second, new double[] { 0, 0 }, "C");
+		Location d = theFacade.createLocation(second, new double[] { 0, 1 }, "D");
+		assertSame(first, theFacade.getLocationNetwork(a));
+		assertSame(RoadNetwork.getDefault(), theFacade.getLocationNetwork(leuven));
+		Road firstRoad = theFacade.createTwoWayRoad("T1", a, b, 100, 20, 10);
+		Road secondRoad = theFacade.createTwoWayRoad("T1", c, d, 100, 20, 10);
+		assertSame(second, secondRoad.getNetwork());
+		assertSame(firstRoad, first.getRoad("T1"));
+		theFacade.changeRoadIdentification(secondRoad, "T2");
+		assertSame(secondRoad, second.getRoad("T2"));
+		assertNull(second.getRoad("T1"));
+		theFacade.changeRoadIdentification(secondRoad, "T1");
+		assertTrue(theFacade.isRoadIdentificationInUse(first, "T1"));
+		assertTrue(theFacade.getNetworkRoads(second).contains(secondRoad));
+		assertFalse(theFacade.getNetworkRoads(RoadNetwork.getDefault()).contains(secondRoad));
+		try {
+			theFacade.createTwoWayRoad("T2", a, d, 100, 20, 10);
+			fail("Expecting exception to be thrown");
+		} catch (ModelException exc) {
+		}
+		try {
+			theFacade.createRoute(second, a, firstRoad);
+			fail("Expecting exception to be thrown");
+		} catch (ModelException exc) {
+		}
+		Route route = theFacade.createRoute(first, a, firstRoad);
+		assertTrue(first.getRoutes().contains(route));
+		theFacade.terminateRoad(firstRoad);
+		assertFalse(theFacade.getNetworkRoads(first).contains(firstRoad));
+		assertNull(first.getRoad("T1"));
+		assertFalse(theFacade.isRoadIdentificationInUse(first, "T1"));
+		assertTrue(theFacade.isRoadIdentificationInUse(second, "T1"));
+		theFacade.terminateLocation(c);
+		assertEquals(Arrays.asList(d), new ArrayList<Location>(theFacade.getNetworkLocations(second)));
+		assertTrue(theFacade.getNetworkRoads(second).isEmpty());
+	}
+
+	@Test
+	void roadNetwork_RenameTerminatedRoad() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Road dead = new TwoWayRoad("A1", a, b, 100, 20, 10);
+		dead.terminate();
+		Road live = new TwoWayRoad("A1", a, b, 100, 20, 10);
+		try {
+			dead.changeIdentification("B1");
+			fail("Expecting exception to be thrown");
+		} catch (IllegalStateException exc) {
+		}
+		assertEquals("A1", dead.getIdentification());
+		assertTrue(network.isInUse("A1"));
+		assertFalse(network.isInUse("B1"));
+		assertSame(live, network.getRoad("A1"));
+		try {
+			new TwoWayRoad("A1", a, b, 100, 20, 10);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+		}
+	}
+
+	@Test
+	void roadNetwork_DefaultLocationsWeak() throws Exception {
+		Location a = new Location(new double[] { 0, 0 }, "A");
+		Road road = new TwoWayRoad(RoadNetwork.getDefault().getFreeIdentification('W'), a,
+				new Location(new double[] { 0, 1 }, "B"), 100, 20, 10);
+		WeakReference<Location> unused = new WeakReference<Location>(new Location(new double[] { 1, 1 }, "C"));
+		WeakReference<Location> used = new WeakReference<Location>(road.getEndpoints()[1]);
+		for(int i = 0;i<100 && unused.get() != null;i++) {
+			System.gc();
+			Thread.sleep(10);
+		}
+		assertNull(unused.get());
+		// The other endpoint of the road is only referred to by the road.
+		assertNotNull(used.get());
+		assertTrue(RoadNetwork.getDefault().getLocations().contains(a));
+		assertTrue(RoadNetwork.getDefault().getLocations().contains(used.get()));
+		road.terminate();
+		RoadNetwork network = new RoadNetwork();
+		WeakReference<Location> kept = new WeakReference<Location>(network.createLocation(new double[] { 0, 0 }, "A"));
+		System.gc();
+		assertNotNull(kept.get());
+		assertEquals(1, network.getLocations().size());
+	}
+
+	@Test
+	void roadNetwork_ConcurrentStress() throws Exception {
+		int roadsPerThread = 2000;
+		for (int threadCount = 1; threadCount <= Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors())); threadCount *= 2) {
+			RoadNetwork network = new RoadNetwork();
+			Location[] hubs = new Location[16];
+			for (int i = 0; i < hubs.length; i++)
+				hubs[i] = network.createLocation(new double[] { i, 0 }, "Hub " + i);
+			Throwable[] failures = new Throwable[threadCount];
+			int[] contested = new int[threadCount];
+			Thread[] threads = new Thread[threadCount];
+			for (int t = 0; t < threadCount; t++) {
+				int index = t;
+				threads[t] = new Thread(() -> {
+					try {
+						Random random = new Random(index);
+						Road[] roads = new Road[roadsPerThread];
+						for (int i = 0; i < roadsPerThread; i++) {
+							int first = random.nextInt(hubs.length);
+							int second = (first + 1 + random.nextInt(hubs.length - 1)) % hubs.length;
+							roads[i] = new TwoWayRoad("T" + index + "/R" + i, hubs[first], hubs[second], 1000, 20, 10);
+						}
+						for (int i = 0; i < roadsPerThread; i += 2)
+							roads[i].changeIdentification("U" + index + "/R" + i);
+						for (int i = 0; i < roadsPerThread; i += 4)
+							roads[i].terminate();
+						try {
+							new TwoWayRoad("Z1", hubs[0], hubs[1], 1000, 20, 10);
+							contested[index] = 1;
+						} catch (IllegalArgumentException exc) {
+						}
+					} catch (Throwable exc) {
+						failures[index] = exc;
+					}
+				});
+			}
+			for (Thread thread : threads)
+				thread.start();
+			for (Thread thread : threads)
+				thread.join();
+			for (Throwable failure : failures)
+				assertNull(failure);
+			assertEquals(1, Arrays.stream(contested).sum());
+			int live = threadCount * (roadsPerThread - roadsPerThread / 4) + 1;
+			assertEquals(live, network.getRoads().size());
+			int adjoining = 0;
+			for (Location hub : hubs) {
+				for (Road road : hub.getAllAdjoiningRoads()) {
+					assertFalse(road.isTerminated());
+					adjoining++;
+				}
+			}
+			assertEquals(2 * live, adjoining);
+			assertTrue(network.isInUse("U0/R2"));
+			assertFalse(network.isInUse("T0/R2"));
+			assertFalse(network.isInUse("U0/R0"));
+			assertTrue(network.isInUse("T0/R1"));
+			for (Location hub : hubs)
+				hub.terminate();
+			assertTrue(network.getRoads().isEmpty());
+			assertFalse(network.isInUse("Z1"));
+		}
+	}
+
+	@Test
+	void roadNetwork_ParallelBuild() throws Exception {
+		int size = 20;
+		RoadNetwork[] networks = new RoadNetwork[4];
+		float[][] travelTimes = new float[networks.length][];
+		Throwable[] failures = new Throwable[networks.length];
+		Thread[] threads = new Thread[networks.length];
+		for (int t = 0; t < threads.length; t++) {
+			int index = t;
+			networks[t] = theFacade.createRoadNetwork();
+			threads[t] = new Thread(() -> {
+				try {
+					Location[] locations = new Location[size * size];
+					for (int i = 0; i < locations.length; i++)
+						locations[i] = theFacade.createLocation(networks[index], new double[] { i / size, i % size },
+								"L" + i);
+					for (int i = 0; i < locations.length; i++) {
+						if (i % size < size - 1)
+							theFacade.createTwoWayRoad(networks[index].getFreeIdentification("H", 'R'), locations[i],
+									locations[i + 1], 1000, 20, 10);
+						if (i / size < size - 1)
+							theFacade.createTwoWayRoad(networks[index].getFreeIdentification("V", 'R'), locations[i],
+									locations[i + size], 1000, 20, 10);
+					}
+					travelTimes[index] = theFacade.getTravelTimeMatrix(networks[index],
+							new Location[] { locations[0] }, new Location[] { locations[locations.length - 1] });
+				} catch (Throwable exc) {
+					failures[index] = exc;
+				}
+			});
+			threads[t].start();
+		}
+		for (int t = 0; t < threads.length; t++) {
+			threads[t].join();
+			assertNull(failures[t]);
+			assertEquals(2 * size * (size - 1), networks[t].getRoads().size());
+			assertEquals(2 * (size - 1) * 100, travelTimes[t][0], 0.01);
+		}
+	}
+
+	/***********************
+	 * Traffic epoch tests *
+	 ***********************/
+
+	@Test
+	void trafficEpochs_PinnedEpochIsStable() throws Exception {
+		TrafficEpochs epochs = new TrafficEpochs(new GraphSnapshot(Arrays.asList(t1_leuven_antwerp, t5_leuven_gent,
+				O2_hasselt_gent_oneWay)));
+		TrafficEpochs.Epoch first = epochs.pin();
+		float before = first.getTravelTime(t1_leuven_antwerp, true);
+		assertEquals(1, epochs.publish(epochs.newUpdate().setDelay(t1_leuven_antwerp, 300, true)
+				.setDelay(t1_leuven_antwerp, 300, false).setIsBlocked(t5_leuven_gent, true, false)));
+		assertEquals(300, theFacade.getRoadDelayinDirection(t1_leuven_antwerp, false), 0.001);
+		assertEquals(before, first.getTravelTime(t1_leuven_antwerp, true), 0.0);
+		assertEquals(2, epochs.getLiveEpochCount());
+		try (TrafficEpochs.Epoch second = epochs.pin()) {
+			assertEquals(1, second.getNumber());
+			assertEquals(second.getTravelTime(t1_leuven_antwerp, true), second.getTravelTime(t1_leuven_antwerp, false), 0.0);
+			assertTrue(second.getTravelTime(t1_leuven_antwerp, true) > before);
+			assertEquals(Float.POSITIVE_INFINITY, second.getTravelTime(t5_leuven_gent, false), 0.0);
+			assertFalse(Float.isInfinite(first.getTravelTime(t5_leuven_gent, false)));
+			first.close();
+			assertEquals(1, epochs.getReclaimedCount());
+			SnapshotRouter router = new SnapshotRouter(second.getSnapshot());
+			router.getFastestRoute(leuven, antwerp);
+			assertEquals(second.getTravelTime(t1_leuven_antwerp, true), router.getLastTravelTime(), 0.01);
+		}
+		TrafficEpochs.Update update = epochs.newUpdate().setDelay(t5_leuven_gent, 10, true)
+				.setDelay(O2_hasselt_gent_oneWay, 10, false);
+		try {
+			epochs.publish(update);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalArgumentException exc) {
+		}
+		assertTrue(theFacade.getRoadDelayinDirection(t5_leuven_gent, true) != 10);
+		assertEquals(1, epochs.getCurrentEpochNumber());
+		epochs.publish(epochs.newUpdate().setIsBlocked(t5_leuven_gent, false, false));
+		assertEquals(1, epochs.getLiveEpochCount());
+	}
+
+	@Test
+	void trafficEpochs_ConcurrentReaders() throws Exception {
+		TrafficEpochs epochs = new TrafficEpochs(new GraphSnapshot(Arrays.asList(t1_leuven_antwerp, t5_leuven_gent)));
+		int updates = 3000;
+		Throwable[] failures = new Throwable[3];
+		Thread writer = new Thread(() -> {
+			try {
+				TrafficEpochs.Update update = epochs.newUpdate();
+				for (int i = 1; i <= updates; i++) {
+					boolean blocked = i % 7 == 0;
+					epochs.publish(update.setDelay(t1_leuven_antwerp, i, true).setDelay(t1_leuven_antwerp, i, false)
+							.setIsBlocked(t1_leuven_antwerp, blocked, true).setIsBlocked(t1_leuven_antwerp, blocked, false));
+				}
+			} catch (Throwable exc) {
+				failures[0] = exc;
+			}
+		});
+		Thread[] readers = new Thread[2];
+		for (int r = 0; r < readers.length; r++) {
+			int index = r + 1;
+			readers[r] = new Thread(() -> {
+				try {
+					long last = -1;
+					while (last < updates) {
+						try (TrafficEpochs.Epoch epoch = epochs.pin()) {
+							assertTrue(epoch.getNumber() >= last);
+							last = epoch.getNumber();
+							assertEquals(epoch.getTravelTime(t1_leuven_antwerp, true),
+									epoch.getTravelTime(t1_leuven_antwerp, false), 0.0);
+							assertEquals(last % 7 == 0 && last > 0,
+									Float.isInfinite(epoch.getTravelTime(t1_leuven_antwerp, true)));
+						}
+					}
+				} catch (Throwable exc) {
+					failures[index] = exc;
+				}
+			});
+		}
+		for (Thread reader : readers)
+			reader.start();
+		writer.start();
+		writer.join();
+		for (Thread reader : readers)
+			reader.join();
+		for (Throwable failure : failures)
+			assertNull(failure);
+		assertEquals(updates, epochs.getCurrentEpochNumber());
+		assertEquals(1, epochs.getLiveEpochCount());
+	}
+
+	/***************************
+	 * Traffic ingestion tests *
+	 ***************************/
+
+	@Test
+	void trafficIngestor_Coalescing() throws Exception {
+		long version = t1_leuven_antwerp.getVersion();
+		try (TrafficIngestor ingestor = new TrafficIngestor(RoadNetwork.getDefault(), 100, 100)) {
+			for (int i = 1; i <= 10; i++)
+				ingestor.submit("T1", true, i, false);
+			ingestor.submit("O2", false, 5, false);
+			ingestor.submit("X99", true, 5, false);
+			ingestor.submit("T5", true, 0, false);
+			ingestor.submit("T5", true, 5, true);
+			assertEquals(14, ingestor.flush());
+			assertEquals(1, ingestor.getBatchCount());
+			assertEquals(10, ingestor.getCoalescedCount());
+			assertEquals(2, ingestor.getAppliedCount());
+			assertEquals(2, ingestor.getRejectedCount());
+		}
+		assertEquals(10, theFacade.getRoadDelayinDirection(t1_leuven_antwerp, true), 0.001);
+		assertEquals(version + 1, t1_leuven_antwerp.getVersion());
+		assertTrue(theFacade.getRoadIsBlocked(t5_leuven_gent, true));
+		assertEquals(5, theFacade.getRoadDelayinDirection(t5_leuven_gent, true), 0.001);
+		assertFalse(theFacade.getRoadIsBlocked(O2_hasselt_gent_oneWay, true));
+	}
+
+	@Test
+	void trafficIngestor_Backpressure() throws Exception {
+		TrafficIngestor bounded = new TrafficIngestor(RoadNetwork.getDefault(), 4, 2);
+		for (int i = 0; i < 4; i++)
+			assertTrue(bounded.trySubmit("T1", true, 1, false));
+		assertFalse(bounded.trySubmit("T1", true, 1, false));
+		bounded.close();
+		assertEquals(0, bounded.getQueuedCount());
+		assertEquals(2, bounded.getBatchCount());
+		try {
+			bounded.submit("T1", true, 1, false);
+			fail("Expecting exception to be thrown");
+		} catch (IllegalStateException exc) {
+		}
+		// A producer waiting for room when the ingestor closes is rejected instead of leaving its event behind.
+		TrafficIngestor full = new TrafficIngestor(RoadNetwork.getDefault(), 1, 1);
+		assertTrue(full.trySubmit("T1", true, 1, false));
+		Throwable[] waitingFailure = new Throwable[1];
+		Thread waiting = new Thread(() -> {
+			try {
+				full.submit("T1", true, 2, false);
+			} catch (Throwable exc) {
+				waitingFailure[0] = exc;
+			}
+		});
+		waiting.start();
+		Thread.sleep(50);
+		full.close();
+		waiting.join();
+		assertTrue(waitingFailure[0] instanceof IllegalStateException);
+		assertEquals(1, full.getSubmittedCount());
+		assertEquals(1, full.getAppliedCount());
+		assertEquals(0, full.getQueuedCount());
+		TrafficEpochs epochs = new TrafficEpochs(new GraphSnapshot(Arrays.asList(t1_leuven_antwerp, t5_leuven_gent)));
+		TrafficIngestor ingestor = new TrafficIngestor(RoadNetwork.getDefault(), epochs, 16, 64);
+		ingestor.start(1);
+		int events = 3000;
+		String[] identifications = { "T1", "T1", "T5" };
+		Throwable[] failures = new Throwable[identifications.length];
+		Thread[] producers = new Thread[identifications.length];
+		for (int p = 0; p < producers.length; p++) {
+			int index = p;
+			producers[p] = new Thread(() -> {
+				try {
+					for (int i = 1; i <= events; i++)
+						ingestor.submit(identifications[index], index != 1, i, false);
+				} catch (Throwable exc) {
+					failures[index] = exc;
+				}
+			});
+			producers[p].start();
+		}
+		for (Thread producer : producers)
+			producer.join();
+		ingestor.close();
+		for (Throwable failure : failures)
+			assertNull(failure);
+		assertEquals(producers.length * events, ingestor.getSubmittedCount());
+		assertEquals(ingestor.getSubmittedCount(), ingestor.getAppliedCount() + ingestor.getCoalescedCount());
+		assertTrue(epochs.getCurrentEpochNumber() <= ingestor.getBatchCount());
+		try (TrafficEpochs.Epoch epoch = epochs.pin()) {
+			assertEquals(epoch.getTravelTime(t1_leuven_antwerp, true), epoch.getTravelTime(t1_leuven_antwerp, false), 0.0);
+		}
+		assertEquals(events, theFacade.getRoadDelayinDirection(t1_leuven_antwerp, true), 0.001);
+		assertEquals(events, theFacade.getRoadDelayinDirection(t1_leuven_antwerp, false), 0.001);
+		assertEquals(events, theFacade.getRoadDelayinDirection(t5_leuven_gent, true), 0.001);
+	}
+
+	/********************
+	 * Change bus tests *
+	 ********************/
+
+	@Test
+	void changeBus_SynchronousEvents() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		ChangeBus bus = network.getChangeBus();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Road road = new TwoWayRoad("T1", a, b, 1000, 20, 10);
+		for (int i = 1; i <= 1000; i++)
+			road.setDelay(i, true);
+		assertFalse(bus.hasSubscribers());
+		assertEquals(0, bus.getPublishedCount());
+		ArrayList<ChangeEvent> events = new ArrayList<ChangeEvent>();
+		ChangeBus.Subscription subscription = bus.subscribe(events::add);
+		ChangeBus.Subscription failing = bus.subscribe(event -> {
+			throw new IllegalStateException();
+		});
+		Road alternating = new AlternatingRoad("A1", a, b, 1000, 20, 10);
+		road.setDelay(5, false);
+		road.setDelay(5, false);
+		road.setIsBlocked(true, true);
+		road.setAverageSpeed(12);
+		road.setSpeedLimit(25);
+		road.setlength(900);
+		road.changeIdentification("T2");
+		alternating.reverseTraversalDirection();
+		road.terminate();
+		failing.close();
+		a.terminate();
+		subscription.close();
+		b.terminate();
+		ChangeEvent.Kind[] kinds = { ChangeEvent.Kind.ROAD_CREATED, ChangeEvent.Kind.DELAY, ChangeEvent.Kind.BLOCKAGE,
+				ChangeEvent.Kind.AVERAGE_SPEED, ChangeEvent.Kind.SPEED_LIMIT, ChangeEvent.Kind.LENGTH,
+				ChangeEvent.Kind.IDENTIFICATION, ChangeEvent.Kind.DIRECTION, ChangeEvent.Kind.ROAD_TERMINATED,
+				ChangeEvent.Kind.ROAD_TERMINATED, ChangeEvent.Kind.LOCATION_TERMINATED };
+		assertEquals(kinds.length, events.size());
+		for (int i = 0; i < kinds.length; i++) {
+			assertEquals(kinds[i], events.get(i).getKind());
+			assertEquals(i, events.get(i).getSequence());
+		}
+		assertSame(alternating, events.get(0).getRoad());
+		assertFalse(events.get(1).getDirection());
+		assertEquals(road.getVersion(), events.get(8).getVersion());
+		assertTrue(events.get(1).getVersion() < events.get(2).getVersion());
+		assertEquals("T2", events.get(6).getRoad().getIdentification());
+		assertSame(a, events.get(10).getLocation());
+		assertEquals(9, bus.getFailureCount());
+		assertEquals(kinds.length, bus.getPublishedCount());
+	}
+
+	@Test
+	void changeBus_BatchedEvents() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Road road = new TwoWayRoad("T1", a, b, 1000, 20, 10);
+		int changes = 2000;
+		CountDownLatch done = new CountDownLatch(changes);
+		ArrayList<Long> sequences = new ArrayList<Long>();
+		int[] batches = new int[1];
+		ChangeBus.Subscription subscription = network.getChangeBus().subscribeBatched(batch -> {
+			batches[0]++;
+			for (ChangeEvent event : batch) {
+				sequences.add(event.getSequence());
+				done.countDown();
+			}
+		});
+		try {
+			for (int i = 1; i <= changes; i++)
+				road.setDelay(i, i % 2 == 0);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+		} finally {
+			subscription.close();
+		}
+		assertFalse(network.getChangeBus().hasSubscribers());
+		assertEquals(changes, sequences.size());
+		for (int i = 0; i < changes; i++)
+			assertEquals(i, (long) sequences.get(i));
+		assertTrue(batches[0] >= 1 && batches[0] <= changes);
+	}
+
+	/*************************
+	 * Route aggregate tests *
+	 *************************/
+
+	@Test
+	void routeAggregates_FollowRoadChanges() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Location c = network.createLocation(new double[] { 1, 1 }, "C");
+		Road r1 = new TwoWayRoad("R1", a, b, 1000, 20, 10);
+		Road r2 = new TwoWayRoad("R2", b, c, 2000, 30, 20);
+		Road r3 = new TwoWayRoad("R3", c, a, 500, 20, 10);
+		Route inner = network.createRoute(a, r1, r2);
+		Route outer = network.createRoute(a, inner, r3);
+		assertEquals(3500, outer.getTotalLength());
+		assertEquals(250, outer.getTotalTravelTime(), 1e-3);
+		assertEquals(0, outer.getBlockedSegmentCount());
+		assertTrue(outer.isRouteTraversable());
+		r2.setDelay(30, true);
+		assertEquals(230, inner.getTotalTravelTime(), 1e-3);
+		assertEquals(280, outer.getTotalTravelTime(), 1e-3);
+		// The route drives the road from B to C, so blocking the other direction does not matter.
+		r2.setIsBlocked(true, false);
+		assertTrue(outer.isRouteTraversable());
+		r2.setIsBlocked(true, true);
+		assertEquals(1, inner.getBlockedSegmentCount());
+		assertEquals(1, outer.getBlockedSegmentCount());
+		assertEquals(150, outer.getTotalTravelTime(), 1e-3);
+		assertFalse(outer.isRouteTraversable());
+		r1.setlength(1500);
+		assertEquals(4000, outer.getTotalLength());
+		assertEquals(4000, outer.getRouteTotalLength());
+		assertEquals(200, outer.getTotalTravelTime(), 1e-3);
+		r2.setIsBlocked(false, true);
+		assertEquals(0, outer.getBlockedSegmentCount());
+		assertEquals(330, outer.getTotalTravelTime(), 1e-3);
+		r3.terminate();
+		assertEquals(1, outer.getBlockedSegmentCount());
+		assertEquals(0, inner.getBlockedSegmentCount());
+	}
+
+	@Test
+	void routeAggregates_FollowSegmentChanges() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Location c = network.createLocation(new double[] { 1, 1 }, "C");
+		Location d = network.createLocation(new double[] { 1, 0 }, "D");
+		Road r1 = new TwoWayRoad("R1", a, b, 1000, 20, 10);
+		Road r2 = new TwoWayRoad("R2", b, c, 2000, 30, 20);
+		Road r3 = new OneWayRoad("R3", b, d, 800, 20, 10);
+		Route inner = network.createRoute(a, r1);
+		Route outer = network.createRoute(a, inner, r2);
+		assertEquals(3000, outer.getTotalLength());
+		assertTrue(outer.hasValidComposition());
+		inner.addRouteSegments(r3);
+		assertEquals(3800, outer.getTotalLength());
+		assertEquals(280, outer.getTotalTravelTime(), 1e-3);
+		// The nested route now ends at D, where the road from B to C does not start.
+		assertFalse(outer.hasValidComposition());
+		assertTrue(inner.hasValidComposition());
+		try {
+			outer.isRouteTraversable();
+			fail("Expecting exception to be thrown");
+		} catch (IllegalStateException exc) {
+		}
+		inner.removeRouteSegments(1);
+		assertTrue(outer.hasValidComposition());
+		assertEquals(3000, outer.getTotalLength());
+		assertEquals(200, outer.getTotalTravelTime(), 1e-3);
+		outer.addRouteSegments(r2);
+		assertEquals(5000, outer.getTotalLength());
+		r2.setIsBlocked(true, false);
+		assertEquals(1, outer.getBlockedSegmentCount());
+		assertFalse(outer.isRouteTraversable());
+		outer.removeRouteSegments(2);
+		assertEquals(0, outer.getBlockedSegmentCount());
+		assertTrue(outer.isRouteTraversable());
+	}
+
+	@Test
+	void routeSegments_RepeatedChanges() throws Exception {
+		RoadNetwork network = new RoadNetwork();
+		Location a = network.createLocation(new double[] { 0, 0 }, "A");
+		Location b = network.createLocation(new double[] { 0, 1 }, "B");
+		Location c = network.createLocation(new double[] { 1, 1 }, "C");
+		Road r1 = new TwoWayRoad("R1", a, b, 1000, 20, 10);
+		Road r2 = new TwoWayRoad("R2", b, c, 2000, 30, 20);
+		Road r3 = new OneWayRoad("R3", b, a, 800, 20, 10);
+		Route loop = network.createRoute(b, r3, r1);
+		Route route = network.createRoute(a, r1, r2);
+		for(int i = 0;i<1000;i++) {
+			route.addRouteSegments(r2);
+			route.removeRouteSegments(2);
+			route.removeRouteSegments(1);
+			route.addRouteSegments(loop);
+			route.addRouteSegments(r2);
+			// The nested route starts and ends at B, so it can be removed between the other roads.
+			route.removeRouteSegments(1);
+		}
+		assertArrayEquals(new Location[] { a, b, c }, route.getAllLocations());
+		assertArrayEquals(new Object[] { r1, r2 }, route.getRouteSegments());
+		assertEquals(3000, route.getTotalLength());
+		assertTrue(route.hasValidComposition());
+	}
+
+}
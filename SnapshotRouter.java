@@ -0,0 +1,174 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers running Dijkstra's algorithm on a snapshot of the network.
+ *
+ * All state of a query lives in arrays indexed by location, which are allocated once
+ * and reset after each query, so a query allocates nothing but the route it returns.
+ * The routes use the travel times of the snapshot; to follow changes to the roads,
+ * the router is given a refreshed snapshot.
+ */
+public class SnapshotRouter extends Router {
+
+/**
+ * Initialize this new router with a snapshot of all roads of the default network.
+ *
+ * @effect | this(new GraphSnapshot())
+ */
+public SnapshotRouter() {
+	this(new GraphSnapshot());
+}
+
+/**
+ * Initialize this new router with the given snapshot.
+ *
+ * @param  snapshot
+ *         The snapshot to route over.
+ * @post   | new.getSnapshot() == snapshot
+ * @throws IllegalArgumentException
+ *         | snapshot == null
+ */
+public SnapshotRouter(GraphSnapshot snapshot) throws IllegalArgumentException {
+	if(snapshot == null) {
+		throw new IllegalArgumentException();
+	}
+	this.snapshot = snapshot;
+	int size = snapshot.getLocationCount();
+	this.times = new double[size];
+	this.parents = new int[size];
+	this.touched = new int[size];
+	this.heap = new IndexedHeap(size);
+	Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+}
+
+/**
+ * Variable registering the snapshot this router routes over.
+ */
+private GraphSnapshot snapshot;
+
+/**
+ * Arrays and heap holding the state of a query.
+ */
+private final double[] times;
+private final int[] parents;
+private final int[] touched;
+private int touchedCount = 0;
+private final IndexedHeap heap;
+
+/**
+ * Return the snapshot this router routes over.
+ */
+@Basic
+public GraphSnapshot getSnapshot() {
+	return this.snapshot;
+}
+
+/**
+ * Check whether this router can route over the given snapshot.
+ *
+ * @return | result == (snapshot != null && snapshot.getLocationIndex() == getSnapshot().getLocationIndex())
+ */
+public boolean canHaveAsSnapshot(GraphSnapshot snapshot) {
+	return snapshot != null && snapshot.getLocationIndex() == this.snapshot.getLocationIndex();
+}
+
+/**
+ * Let this router route over the given snapshot, which must be a refreshed version of
+ * its current snapshot.
+ *
+ * @post   | new.getSnapshot() == snapshot
+ * @throws IllegalArgumentException
+ *         | !canHaveAsSnapshot(snapshot)
+ */
+public void setSnapshot(GraphSnapshot snapshot) throws IllegalArgumentException {
+	if(!this.canHaveAsSnapshot(snapshot)) {
+		throw new IllegalArgumentException();
+	}
+	this.snapshot = snapshot;
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location,
+ * using the travel times of the snapshot of this router.
+ *
+ * @see Router#getFastestRoute(Location, Location)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(from == to) {
+		this.setLastSettledCount(0);
+		return this.buildRoute(from, new ArrayList<Road>());
+	}
+	GraphSnapshot snapshot = this.snapshot;
+	int source = snapshot.getLocationIndex().getIndexOf(from);
+	int target = snapshot.getLocationIndex().getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	int[] offsets = snapshot.offsets;
+	int[] heads = snapshot.heads;
+	float[] edgeTimes = snapshot.times;
+	this.reach(source, 0, -1);
+	int settled = 0;
+	boolean found = false;
+	while(!this.heap.isEmpty()) {
+		int node = this.heap.poll();
+		settled++;
+		if(node == target) {
+			found = true;
+			break;
+		}
+		double time = this.times[node];
+		for(int edge = offsets[node];edge<offsets[node + 1];edge++) {
+			if(edgeTimes[edge] != Float.POSITIVE_INFINITY) {
+				this.reach(heads[edge], time + edgeTimes[edge], edge);
+			}
+		}
+	}
+	this.setLastSettledCount(settled);
+	Route route = null;
+	if(found) {
+		int count = 0;
+		for(int node = target;node != source;node = snapshot.tails[this.parents[node]]) {
+			count++;
+		}
+		Road[] roads = new Road[count];
+		for(int node = target;node != source;node = snapshot.tails[this.parents[node]]) {
+			roads[--count] = snapshot.getRoadAt(snapshot.edgeRoads[this.parents[node]]);
+		}
+		route = new Route(from, (Object[]) roads);
+		this.setLastTravelTime(this.times[target]);
+	}
+	else {
+		this.setNoRouteFound();
+	}
+	this.heap.clear();
+	for(int i = 0;i<this.touchedCount;i++) {
+		this.times[this.touched[i]] = Double.POSITIVE_INFINITY;
+	}
+	this.touchedCount = 0;
+	return route;
+}
+
+/**
+ * Register that the location at the given index is reached at the given travel time
+ * over the given edge, if that is faster than before.
+ */
+private void reach(int node, double time, int edge) {
+	if(time < this.times[node]) {
+		if(this.times[node] == Double.POSITIVE_INFINITY) {
+			this.touched[this.touchedCount++] = node;
+		}
+		this.times[node] = time;
+		this.parents[node] = edge;
+		this.heap.push(node, time);
+	}
+}
+}
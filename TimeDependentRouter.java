@@ -0,0 +1,175 @@
+package connections;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of routers computing the route that arrives earliest when departing at a
+ * given time, using the travel time profiles of the roads.
+ *
+ * The router runs Dijkstra's algorithm on arrival times: a road entered at time t is
+ * left at time t plus its travel time at t. Since every profile satisfies the FIFO
+ * property, arriving earlier at a location never leads to arriving later at the end
+ * location, so each location only needs to be expanded once. Roads without a profile
+ * have the same travel time at every time of day.
+ */
+public class TimeDependentRouter extends Router {
+
+/**
+ * Initialize this new router for all roads of the default network.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads())
+ */
+public TimeDependentRouter() {
+	this(RoadNetwork.getDefault().getRoads());
+}
+
+/**
+ * Initialize this new router for the given roads.
+ *
+ * @param  roads
+ *         The roads of the network to route over.
+ */
+public TimeDependentRouter(Collection<Road> roads) {
+	this.index = new LocationIndex(roads);
+	int size = this.index.getSize();
+	this.arrivals = new double[size];
+	this.parents = new Road[size];
+	this.touched = new int[size];
+	this.heap = new IndexedHeap(size);
+	Arrays.fill(this.arrivals, Double.POSITIVE_INFINITY);
+}
+
+/**
+ * Variable registering the numbering of the locations of the network.
+ */
+private final LocationIndex index;
+
+/**
+ * Arrays and heap holding the state of a query.
+ */
+private final double[] arrivals;
+private final Road[] parents;
+private final int[] touched;
+private int touchedCount = 0;
+private final IndexedHeap heap;
+
+/**
+ * Return the numbering of the locations of the network of this router.
+ */
+@Basic @Immutable
+public LocationIndex getLocationIndex() {
+	return this.index;
+}
+
+/**
+ * Check whether the given time can be used as departure time.
+ *
+ * @return | result == (time is finite)
+ */
+public static boolean isValidDepartureTime(double time) {
+	return !Double.isNaN(time) && !Double.isInfinite(time);
+}
+
+/**
+ * Return the fastest route from the given start location to the given end location
+ * when departing at the start of the day.
+ *
+ * @effect | getFastestRoute(from, to, 0)
+ */
+@Override
+public Route getFastestRoute(Location from, Location to) throws IllegalArgumentException {
+	return this.getFastestRoute(from, to, 0);
+}
+
+/**
+ * Return the route from the given start location to the given end location that
+ * arrives earliest when departing at the given time.
+ *   The last travel time of this router is set to the arrival time minus the
+ *   departure time.
+ *
+ * @param  departureTime
+ *         The departure time, in seconds since the start of a day.
+ * @throws IllegalArgumentException
+ *         | !isValidDepartureTime(departureTime)
+ * @see Router#getFastestRoute(Location, Location)
+ */
+public Route getFastestRoute(Location from, Location to, double departureTime) throws IllegalArgumentException {
+	this.checkRouteEnds(from, to);
+	if(!isValidDepartureTime(departureTime)) {
+		throw new IllegalArgumentException();
+	}
+	if(from == to) {
+		this.setLastSettledCount(0);
+		this.setLastTravelTime(0);
+		return new Route(from);
+	}
+	int source = this.index.getIndexOf(from);
+	int target = this.index.getIndexOf(to);
+	if(source < 0 || target < 0) {
+		this.setLastSettledCount(0);
+		this.setNoRouteFound();
+		return null;
+	}
+	this.reach(source, departureTime, null);
+	int settled = 0;
+	boolean found = false;
+	while(!this.heap.isEmpty()) {
+		int node = this.heap.poll();
+		settled++;
+		if(node == target) {
+			found = true;
+			break;
+		}
+		Location location = this.index.getLocationAt(node);
+		for(Road road:location.adjoiningRoads) {
+			boolean direction = road.endpoint1 == location;
+			Location other = getDestination(road, direction);
+			int next = this.index.getIndexOf(other);
+			if(next < 0 || other == location || !road.isOpenInDirection(direction)) {
+				continue;
+			}
+			this.reach(next, this.arrivals[node] + road.getTravelTime(direction, this.arrivals[node]), road);
+		}
+	}
+	this.setLastSettledCount(settled);
+	Route route = null;
+	if(found) {
+		ArrayList<Road> roads = new ArrayList<Road>();
+		Location tracker = to;
+		while(tracker != from) {
+			Road road = this.parents[this.index.getIndexOf(tracker)];
+			roads.add(0, road);
+			tracker = road.endpoint2 == tracker ? road.endpoint1 : road.endpoint2;
+		}
+		route = new Route(from, roads.toArray());
+		this.setLastTravelTime(this.arrivals[target] - departureTime);
+	}
+	else {
+		this.setNoRouteFound();
+	}
+	this.heap.clear();
+	for(int i = 0;i<this.touchedCount;i++) {
+		this.arrivals[this.touched[i]] = Double.POSITIVE_INFINITY;
+	}
+	this.touchedCount = 0;
+	return route;
+}
+
+/**
+ * Register that the location at the given index is reached at the given time over
+ * the given road, if that is earlier than before.
+ */
+private void reach(int node, double arrival, Road road) {
+	if(arrival < this.arrivals[node]) {
+		if(this.arrivals[node] == Double.POSITIVE_INFINITY) {
+			this.touched[this.touchedCount++] = node;
+		}
+		this.arrivals[node] = arrival;
+		this.parents[node] = road;
+		this.heap.push(node, arrival);
+	}
+}
+}
@@ -0,0 +1,345 @@
+package connections;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of publishers of consistent versions of the traffic state of a network, for
+ * routing threads that read it while traffic writers change it.
+ *
+ * Each version, or epoch, is an immutable snapshot of the network with the travel times
+ * of all edges at the moment it was published. Writers collect the delays and blockages
+ * they change in an update, and publish it as a whole: the changes are applied to the
+ * roads and a new epoch with the resulting travel times replaces the current one in a
+ * single atomic step. Writers publish one at a time, but readers never take a lock: a
+ * query pins the current epoch, reads only that epoch, and closes it when done, so it
+ * never sees a delay or blockage of one direction of a road changed without the other
+ * changes of the same update.
+ *
+ * Every epoch counts the readers pinning it, and the publisher itself counts as a
+ * reader of the current epoch until it is replaced. An epoch that is no longer current
+ * is reclaimed as soon as its last reader closes it: its travel times are then reused
+ * for a later epoch, so a steady stream of updates does not allocate a new array of
+ * travel times for every epoch.
+ *
+ * Only the delays and blockages of the roads of the base snapshot can be updated; the
+ * other changes to roads, and roads created later, are only part of publishers created
+ * anew.
+ */
+public class TrafficEpochs {
+
+/**
+ * Initialize this new publisher for all roads of the default network.
+ *
+ * @effect | this(new GraphSnapshot())
+ */
+public TrafficEpochs() {
+	this(new GraphSnapshot());
+}
+
+/**
+ * Initialize this new publisher with the travel times of the given snapshot as its
+ * first epoch.
+ *
+ * @param  snapshot
+ *         The snapshot of the first epoch.
+ * @post   | new.getCurrentEpochNumber() == 0
+ * @throws IllegalArgumentException
+ *         | snapshot == null
+ */
+public TrafficEpochs(GraphSnapshot snapshot) throws IllegalArgumentException {
+	if(snapshot == null) {
+		throw new IllegalArgumentException();
+	}
+	// The first epoch gets its own travel times, which can be reused without affecting the given snapshot.
+	GraphSnapshot first = snapshot.refresh(new ArrayList<Road>(), new float[snapshot.getEdgeCount()]);
+	this.current = new AtomicReference<Epoch>(new Epoch(this, 0, first));
+}
+
+/**
+ * Variable registering the current epoch.
+ */
+private final AtomicReference<Epoch> current;
+
+/**
+ * Arrays of travel times of reclaimed epochs, to be reused by later epochs.
+ */
+private final ConcurrentLinkedQueue<float[]> freeBuffers = new ConcurrentLinkedQueue<float[]>();
+
+/**
+ * The largest number of arrays of travel times kept for reuse.
+ */
+private static final int MAX_FREE_BUFFERS = 4;
+
+/**
+ * Variable registering the number of epochs reclaimed.
+ */
+private final AtomicLong reclaimedCount = new AtomicLong();
+
+/**
+ * Return the number of the current epoch, which is the number of updates published.
+ */
+public long getCurrentEpochNumber() {
+	return this.current.get().getNumber();
+}
+
+/**
+ * Return the number of epochs that are no longer current and have been closed by all
+ * their readers.
+ */
+public long getReclaimedCount() {
+	return this.reclaimedCount.get();
+}
+
+/**
+ * Return the number of epochs that have not been reclaimed, including the current one.
+ */
+public long getLiveEpochCount() {
+	return this.getCurrentEpochNumber() + 1 - this.getReclaimedCount();
+}
+
+/**
+ * Pin the current epoch and return it.
+ *   The epoch stays consistent and is not reclaimed until it is closed. Each epoch
+ *   returned by this method must be closed exactly once, and neither the epoch nor its
+ *   snapshot may be used after that.
+ */
+public Epoch pin() {
+	while(true) {
+		Epoch epoch = this.current.get();
+		if(epoch.tryPin()) {
+			return epoch;
+		}
+		// The epoch was replaced and reclaimed after it was read, so a newer one is current.
+	}
+}
+
+/**
+ * Return a new empty update for this publisher.
+ */
+public Update newUpdate() {
+	return new Update(this);
+}
+
+/**
+ * Apply the changes of the given update to the roads, and publish a new epoch with the
+ * resulting travel times.
+ *   All changes are checked before any of them is applied. The update is emptied, so it
+ *   can be used for the next changes.
+ *
+ * @return The number of the published epoch.
+ * @throws IllegalArgumentException
+ *         The update belongs to another publisher, or one of its roads is not part of
+ *         the snapshots of this publisher, cannot be driven in the direction of its
+ *         change, or is given a delay that is not valid.
+ */
+public synchronized long publish(Update update) throws IllegalArgumentException {
+	if(update == null || update.getPublisher() != this) {
+		throw new IllegalArgumentException();
+	}
+	Epoch old = this.current.get();
+	GraphSnapshot snapshot = old.getSnapshot();
+	for(Change change:update.changes) {
+		if(snapshot.getIndexOf(change.road) < 0 || !change.road.canBeTraversedInDirection(change.direction)
+				|| change.isDelay && !Road.isValidDelay(change.delay)) {
+			throw new IllegalArgumentException();
+		}
+	}
+	LinkedHashSet<Road> changedRoads = new LinkedHashSet<Road>();
+	for(Change change:update.changes) {
+		if(change.isDelay) {
+			change.road.setDelay(change.delay, change.direction);
+		}
+		else {
+			change.road.setIsBlocked(change.isBlocked, change.direction);
+		}
+		changedRoads.add(change.road);
+	}
+	update.changes.clear();
+	float[] buffer = this.freeBuffers.poll();
+	if(buffer == null) {
+		buffer = new float[snapshot.getEdgeCount()];
+	}
+	Epoch epoch = new Epoch(this, old.getNumber() + 1, snapshot.refresh(changedRoads, buffer));
+	this.current.set(epoch);
+	old.close();
+	return epoch.getNumber();
+}
+
+/**
+ * Reclaim the given epoch, which is no longer current and no longer pinned.
+ */
+private void reclaim(Epoch epoch) {
+	if(this.freeBuffers.size() < MAX_FREE_BUFFERS) {
+		this.freeBuffers.add(epoch.getSnapshot().times);
+	}
+	this.reclaimedCount.incrementAndGet();
+}
+
+/**
+ * A class of epochs, each an immutable version of the traffic state of a network.
+ */
+public static final class Epoch implements AutoCloseable {
+
+	/**
+	 * Initialize this new epoch of the given publisher with the given number and
+	 * snapshot, pinned once by the publisher.
+	 */
+	private Epoch(TrafficEpochs publisher, long number, GraphSnapshot snapshot) {
+		this.publisher = publisher;
+		this.number = number;
+		this.snapshot = snapshot;
+	}
+
+	private final TrafficEpochs publisher;
+
+	private final long number;
+
+	private final GraphSnapshot snapshot;
+
+	/**
+	 * Variable registering the number of readers pinning this epoch, which is zero once
+	 * the epoch has been reclaimed.
+	 */
+	private final AtomicInteger pins = new AtomicInteger(1);
+
+	/**
+	 * Return the number of this epoch.
+	 */
+	@Basic @Immutable
+	public long getNumber() {
+		return this.number;
+	}
+
+	/**
+	 * Return the snapshot of this epoch.
+	 */
+	@Basic @Immutable
+	public GraphSnapshot getSnapshot() {
+		return this.snapshot;
+	}
+
+	/**
+	 * Return the travel time of the given road in the given direction in this epoch, or
+	 * positive infinity if it could not be driven in that direction.
+	 *   The direction is relative to the endpoints of the road when the snapshot of the
+	 *   publisher was taken.
+	 *
+	 * @throws IllegalArgumentException
+	 *         | getSnapshot().getIndexOf(road) < 0
+	 */
+	public float getTravelTime(Road road, boolean direction) throws IllegalArgumentException {
+		int index = this.snapshot.getIndexOf(road);
+		if(index < 0) {
+			throw new IllegalArgumentException();
+		}
+		return this.snapshot.getTravelTime(this.snapshot.getRoadEdge(index, direction));
+	}
+
+	/**
+	 * Pin this epoch, unless it has been reclaimed.
+	 *
+	 * @return True if and only if this epoch was pinned.
+	 */
+	private boolean tryPin() {
+		while(true) {
+			int count = this.pins.get();
+			if(count == 0) {
+				return false;
+			}
+			if(this.pins.compareAndSet(count, count + 1)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Release one pin of this epoch, reclaiming it if it was the last one.
+	 */
+	@Override
+	public void close() {
+		if(this.pins.decrementAndGet() == 0) {
+			this.publisher.reclaim(this);
+		}
+	}
+}
+
+/**
+ * A class of updates, collecting changes to the delays and blockages of roads to be
+ * published together.
+ *   An update is meant to be used by a single writer.
+ */
+public static final class Update {
+
+	private Update(TrafficEpochs publisher) {
+		this.publisher = publisher;
+	}
+
+	private final TrafficEpochs publisher;
+
+	/**
+	 * List registering the changes of this update, in the order in which they were made.
+	 */
+	private final ArrayList<Change> changes = new ArrayList<Change>();
+
+	/**
+	 * Return the publisher of this update.
+	 */
+	@Basic @Immutable
+	public TrafficEpochs getPublisher() {
+		return this.publisher;
+	}
+
+	/**
+	 * Return the number of changes of this update.
+	 */
+	public int getSize() {
+		return this.changes.size();
+	}
+
+	/**
+	 * Add a change of the delay of the given road in the given direction to this update.
+	 *
+	 * @return This update.
+	 */
+	public Update setDelay(Road road, float delay, boolean direction) {
+		this.changes.add(new Change(road, direction, true, delay, false));
+		return this;
+	}
+
+	/**
+	 * Add a change of the blockage of the given road in the given direction to this update.
+	 *
+	 * @return This update.
+	 */
+	public Update setIsBlocked(Road road, boolean isBlocked, boolean direction) {
+		this.changes.add(new Change(road, direction, false, 0, isBlocked));
+		return this;
+	}
+}
+
+/**
+ * A class of changes to the delay or blockage of a road in one direction.
+ */
+static final class Change {
+
+	Change(Road road, boolean direction, boolean isDelay, float delay, boolean isBlocked) {
+		this.road = road;
+		this.direction = direction;
+		this.isDelay = isDelay;
+		this.delay = delay;
+		this.isBlocked = isBlocked;
+	}
+
+	final Road road;
+	final boolean direction;
+	final boolean isDelay;
+	final float delay;
+	final boolean isBlocked;
+}
+}
@@ -0,0 +1,419 @@
+package connections;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of ingestors of traffic events, each giving the delay and blockage of a road
+ * of a network in one direction.
+ *
+ * Producer threads submit events to a bounded queue; when the queue is full, they wait
+ * until there is room, so producers cannot run ahead of the ingestion. The events are
+ * applied in batches: a batch collects the events arriving within a window of time, up
+ * to a largest number of events, and only keeps the last event for each road and
+ * direction. Each remaining event is then applied once, with the semantics of
+ * Road.setDelay and Road.setIsBlocked: events for a direction in which their road
+ * cannot be driven, such as the backward direction of a one-way or alternating road,
+ * are rejected, as are events with a delay that is not valid and events for roads that
+ * are not part of the network. Rejected events are counted instead of thrown.
+ *
+ * If the ingestor has a traffic epoch publisher, each batch is published to it as a
+ * single update, so readers see a single new epoch per batch; otherwise the events
+ * are applied to the roads directly. Batches are applied by one thread at a time,
+ * either by calling processBatch or flush, or by the thread started by start.
+ *
+ * Closing an ingestor and submitting an event to it exclude each other: an event is
+ * either submitted before the ingestor is closed, and then applied when it closes, or
+ * rejected with an exception. Producers waiting for room in the queue check whether the
+ * ingestor was closed at least every WAIT_INTERVAL milliseconds, so they do not wait
+ * forever once nothing takes events from the queue anymore.
+ */
+public class TrafficIngestor implements AutoCloseable {
+
+/**
+ * Initialize this new ingestor for the given network, with the given capacity of its
+ * queue and largest number of events in a batch, applying the events to the roads.
+ *
+ * @effect | this(network, null, capacity, maxBatchSize)
+ */
+public TrafficIngestor(RoadNetwork network, int capacity, int maxBatchSize) throws IllegalArgumentException {
+	this(network, null, capacity, maxBatchSize);
+}
+
+/**
+ * Initialize this new ingestor for the given network, with the given capacity of its
+ * queue and largest number of events in a batch, publishing the events to the given
+ * publisher.
+ *
+ * @param  network
+ *         The network of the roads of the events.
+ * @param  epochs
+ *         The publisher to publish each batch to, or null to apply the events to the
+ *         roads directly.
+ * @param  capacity
+ *         The largest number of events waiting in the queue.
+ * @param  maxBatchSize
+ *         The largest number of events in a batch, before coalescing.
+ * @throws IllegalArgumentException
+ *         | network == null || capacity <= 0 || maxBatchSize <= 0
+ */
+public TrafficIngestor(RoadNetwork network, TrafficEpochs epochs, int capacity, int maxBatchSize) throws IllegalArgumentException {
+	if(network == null || capacity <= 0 || maxBatchSize <= 0) {
+		throw new IllegalArgumentException();
+	}
+	this.network = network;
+	this.epochs = epochs;
+	this.queue = new ArrayBlockingQueue<Event>(capacity);
+	this.maxBatchSize = maxBatchSize;
+}
+
+/**
+ * Variables registering the network of this ingestor and the publisher it publishes
+ * to, which may be null.
+ */
+private final RoadNetwork network;
+private final TrafficEpochs epochs;
+
+/**
+ * Variable registering the queue of submitted events.
+ */
+private final ArrayBlockingQueue<Event> queue;
+
+/**
+ * Variable registering the largest number of events in a batch.
+ */
+private final int maxBatchSize;
+
+/**
+ * Variables registering the number of events submitted, replaced by a later event
+ * for the same road and direction, applied and rejected, and the number of batches.
+ */
+private final AtomicLong submittedCount = new AtomicLong();
+private final AtomicLong coalescedCount = new AtomicLong();
+private final AtomicLong appliedCount = new AtomicLong();
+private final AtomicLong rejectedCount = new AtomicLong();
+private final AtomicLong batchCount = new AtomicLong();
+
+/**
+ * Variables registering the thread applying batches in the background, if any, and
+ * whether this ingestor is closed.
+ */
+private volatile Thread worker = null;
+private volatile boolean isClosed = false;
+
+/**
+ * Lock held for reading while an event is added to the queue, and for writing while
+ * this ingestor is closed.
+ */
+private final ReentrantReadWriteLock closeLock = new ReentrantReadWriteLock();
+
+/**
+ * The longest time in milliseconds a producer waits for room in the queue before it
+ * checks again whether this ingestor was closed.
+ */
+private static final long WAIT_INTERVAL = 10;
+
+@Basic @Immutable
+public RoadNetwork getNetwork() {
+	return this.network;
+}
+
+@Basic @Immutable
+public TrafficEpochs getEpochs() {
+	return this.epochs;
+}
+
+@Basic @Immutable
+public int getMaxBatchSize() {
+	return this.maxBatchSize;
+}
+
+/**
+ * Return the number of events waiting in the queue.
+ */
+public int getQueuedCount() {
+	return this.queue.size();
+}
+
+public long getSubmittedCount() {
+	return this.submittedCount.get();
+}
+
+public long getCoalescedCount() {
+	return this.coalescedCount.get();
+}
+
+public long getAppliedCount() {
+	return this.appliedCount.get();
+}
+
+public long getRejectedCount() {
+	return this.rejectedCount.get();
+}
+
+public long getBatchCount() {
+	return this.batchCount.get();
+}
+
+/**
+ * Check whether this ingestor is closed.
+ */
+@Basic
+public boolean isClosed() {
+	return this.isClosed;
+}
+
+/**
+ * Submit an event giving the given delay and blockage of the road with the given
+ * identification in the given direction, waiting until there is room in the queue.
+ *
+ * @throws IllegalStateException
+ *         This ingestor is closed, or was closed while waiting.
+ *       | isClosed()
+ * @throws InterruptedException
+ *         The thread was interrupted while waiting.
+ */
+public void submit(String identification, boolean direction, float delay, boolean isBlocked)
+		throws IllegalStateException, InterruptedException {
+	Event event = new Event(identification, direction, delay, isBlocked);
+	while(true) {
+		this.closeLock.readLock().lock();
+		try {
+			if(this.isClosed()) {
+				throw new IllegalStateException();
+			}
+			if(this.queue.offer(event, WAIT_INTERVAL, TimeUnit.MILLISECONDS)) {
+				this.submittedCount.incrementAndGet();
+				return;
+			}
+		}
+		finally {
+			this.closeLock.readLock().unlock();
+		}
+	}
+}
+
+/**
+ * Submit an event as submit does, unless there is no room in the queue.
+ *
+ * @return True if and only if the event was submitted.
+ * @throws IllegalStateException
+ *         | isClosed()
+ */
+public boolean trySubmit(String identification, boolean direction, float delay, boolean isBlocked)
+		throws IllegalStateException {
+	this.closeLock.readLock().lock();
+	try {
+		if(this.isClosed()) {
+			throw new IllegalStateException();
+		}
+		if(!this.queue.offer(new Event(identification, direction, delay, isBlocked))) {
+			return false;
+		}
+		this.submittedCount.incrementAndGet();
+		return true;
+	}
+	finally {
+		this.closeLock.readLock().unlock();
+	}
+}
+
+/**
+ * Collect the events arriving within the given window, starting when the first event
+ * arrives, up to the largest number of events in a batch, and apply them as one batch.
+ *   If no event arrives within the window, nothing is applied.
+ *
+ * @param  window
+ *         The window in milliseconds.
+ * @return The number of events collected.
+ * @throws InterruptedException
+ *         The thread was interrupted while waiting.
+ */
+public synchronized int processBatch(long window) throws InterruptedException {
+	ArrayList<Event> events = new ArrayList<Event>();
+	Event first = this.queue.poll(window, TimeUnit.MILLISECONDS);
+	if(first == null) {
+		return 0;
+	}
+	events.add(first);
+	long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(window);
+	while(events.size() < this.maxBatchSize) {
+		this.queue.drainTo(events, this.maxBatchSize - events.size());
+		long remaining = deadline - System.nanoTime();
+		if(events.size() >= this.maxBatchSize || remaining <= 0) {
+			break;
+		}
+		Event next;
+		try {
+			next = this.queue.poll(remaining, TimeUnit.NANOSECONDS);
+		}
+		catch(InterruptedException exc) {
+			// The events already taken from the queue are applied before giving up.
+			this.apply(events);
+			throw exc;
+		}
+		if(next == null) {
+			break;
+		}
+		events.add(next);
+	}
+	this.apply(events);
+	return events.size();
+}
+
+/**
+ * Apply all events waiting in the queue, in batches of at most the largest number of
+ * events in a batch.
+ *
+ * @return The number of events applied or rejected.
+ */
+public synchronized int flush() {
+	int count = 0;
+	ArrayList<Event> events = new ArrayList<Event>();
+	while(this.queue.drainTo(events, this.maxBatchSize) > 0) {
+		this.apply(events);
+		count = count + events.size();
+		events.clear();
+	}
+	return count;
+}
+
+/**
+ * Start a thread applying the events in batches collected within the given window,
+ * until this ingestor is closed.
+ *
+ * @throws IllegalStateException
+ *         The ingestor is closed or already has such a thread.
+ */
+public synchronized void start(long window) throws IllegalStateException {
+	if(this.isClosed() || this.worker != null) {
+		throw new IllegalStateException();
+	}
+	this.worker = new Thread(() -> {
+		try {
+			while(!this.isClosed()) {
+				this.processBatch(window);
+			}
+		}
+		catch(InterruptedException exc) {
+			// Closing interrupts a worker waiting for events.
+		}
+	}, "traffic-ingestor");
+	this.worker.setDaemon(true);
+	this.worker.start();
+}
+
+/**
+ * Close this ingestor: stop accepting events, stop its thread, if any, and apply the
+ * events still waiting in the queue.
+ *   If the calling thread is interrupted while waiting for the thread of this ingestor
+ *   to stop, the events are still applied, and the thread is interrupted again when
+ *   this method returns.
+ *
+ * @post | new.isClosed()
+ */
+@Override
+public void close() {
+	// Once the ingestor is closed under the lock, no producer can add an event the flush below misses.
+	this.closeLock.writeLock().lock();
+	try {
+		this.isClosed = true;
+	}
+	finally {
+		this.closeLock.writeLock().unlock();
+	}
+	Thread worker = this.worker;
+	boolean isInterrupted = false;
+	if(worker != null) {
+		worker.interrupt();
+		try {
+			worker.join();
+		}
+		catch(InterruptedException exc) {
+			isInterrupted = true;
+		}
+	}
+	this.flush();
+	if(isInterrupted) {
+		Thread.currentThread().interrupt();
+	}
+}
+
+/**
+ * Apply the given events as one batch, keeping only the last event for each road and
+ * direction.
+ */
+private void apply(ArrayList<Event> events) {
+	LinkedHashMap<String,Event[]> latest = new LinkedHashMap<String,Event[]>();
+	for(Event event:events) {
+		Event[] pair = latest.computeIfAbsent(String.valueOf(event.identification), key -> new Event[2]);
+		int slot = event.direction ? 0 : 1;
+		if(pair[slot] != null) {
+			this.coalescedCount.incrementAndGet();
+		}
+		pair[slot] = event;
+	}
+	TrafficEpochs.Update update = this.epochs == null ? null : this.epochs.newUpdate();
+	TrafficEpochs.Epoch epoch = this.epochs == null ? null : this.epochs.pin();
+	try {
+		for(Event[] pair:latest.values()) {
+			for(Event event:pair) {
+				if(event == null) {
+					continue;
+				}
+				Road road = this.network.getRoad(event.identification);
+				if(road == null || !road.canBeTraversedInDirection(event.direction) || !Road.isValidDelay(event.delay)
+						|| epoch != null && epoch.getSnapshot().getIndexOf(road) < 0) {
+					this.rejectedCount.incrementAndGet();
+				}
+				else if(update != null) {
+					update.setDelay(road, event.delay, event.direction).setIsBlocked(road, event.isBlocked, event.direction);
+					this.appliedCount.incrementAndGet();
+				}
+				else {
+					try {
+						road.setDelay(event.delay, event.direction);
+						road.setIsBlocked(event.isBlocked, event.direction);
+						this.appliedCount.incrementAndGet();
+					}
+					catch(IllegalArgumentException exc) {
+						this.rejectedCount.incrementAndGet();
+					}
+				}
+			}
+		}
+	}
+	finally {
+		if(epoch != null) {
+			epoch.close();
+		}
+	}
+	if(update != null && update.getSize() > 0) {
+		this.epochs.publish(update);
+	}
+	this.batchCount.incrementAndGet();
+}
+
+/**
+ * A class of traffic events.
+ */
+private static final class Event {
+
+	Event(String identification, boolean direction, float delay, boolean isBlocked) {
+		this.identification = identification;
+		this.direction = direction;
+		this.delay = delay;
+		this.isBlocked = isBlocked;
+	}
+
+	final String identification;
+	final boolean direction;
+	final float delay;
+	final boolean isBlocked;
+}
+}
@@ -0,0 +1,275 @@
+package connections;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class computing the fastest travel times between many start locations and many
+ * end locations at once.
+ *
+ * The travel times are returned as one flat array in row-major order: the travel time
+ * from the i-th start location to the j-th end location is at position
+ * i*destinations.length + j. Each row is computed by a single search from its start
+ * location, which stops as soon as all end locations are settled; the rows are spread
+ * over the threads of a fork/join pool. Each thread reuses the same search arrays for
+ * all rows it computes.
+ *
+ * The searches run on a snapshot of the network, so the travel times are those of the
+ * roads when the snapshot was taken or last refreshed. They then equal the travel times
+ * of the routes a Dijkstra router finds, rounded to single precision.
+ */
+public class TravelTimeMatrix {
+
+/**
+ * Initialize this new matrix computer for all roads of the default network, using
+ * the common fork/join pool.
+ *
+ * @effect | this(RoadNetwork.getDefault().getRoads(), ForkJoinPool.commonPool())
+ */
+public TravelTimeMatrix() {
+	this(RoadNetwork.getDefault().getRoads(), ForkJoinPool.commonPool());
+}
+
+/**
+ * Initialize this new matrix computer for the given roads, using the common fork/join pool.
+ *
+ * @effect | this(roads, ForkJoinPool.commonPool())
+ */
+public TravelTimeMatrix(Collection<Road> roads) {
+	this(roads, ForkJoinPool.commonPool());
+}
+
+/**
+ * Initialize this new matrix computer for the given roads, using the given pool.
+ *
+ * @param  roads
+ *         The roads of the network to compute travel times over.
+ * @param  pool
+ *         The pool to run the searches on.
+ * @throws IllegalArgumentException
+ *         | pool == null
+ */
+public TravelTimeMatrix(Collection<Road> roads, ForkJoinPool pool) throws IllegalArgumentException {
+	this(new GraphSnapshot(roads), pool);
+}
+
+/**
+ * Initialize this new matrix computer for the given snapshot, using the given pool.
+ *
+ * @param  snapshot
+ *         The snapshot of the network to compute travel times over.
+ * @param  pool
+ *         The pool to run the searches on.
+ * @post   | new.getSnapshot() == snapshot && new.getPool() == pool
+ * @throws IllegalArgumentException
+ *         | snapshot == null || pool == null
+ */
+public TravelTimeMatrix(GraphSnapshot snapshot, ForkJoinPool pool) throws IllegalArgumentException {
+	if(snapshot == null || pool == null) {
+		throw new IllegalArgumentException();
+	}
+	this.snapshot = snapshot;
+	this.pool = pool;
+}
+
+/**
+ * Variable registering the snapshot of the network.
+ */
+private GraphSnapshot snapshot;
+
+/**
+ * Variable registering the pool the searches run on.
+ */
+private final ForkJoinPool pool;
+
+/**
+ * Return the numbering of the locations of the network of this matrix computer.
+ */
+public LocationIndex getLocationIndex() {
+	return this.snapshot.getLocationIndex();
+}
+
+/**
+ * Return the snapshot of the network of this matrix computer.
+ */
+@Basic
+public GraphSnapshot getSnapshot() {
+	return this.snapshot;
+}
+
+/**
+ * Let this matrix computer use the current travel times of the roads of its snapshot.
+ *
+ * @post | new.getSnapshot() == getSnapshot().refresh()
+ */
+public void refresh() {
+	this.snapshot = this.snapshot.refresh();
+}
+
+/**
+ * Return the pool the searches of this matrix computer run on.
+ */
+@Basic @Immutable
+public ForkJoinPool getPool() {
+	return this.pool;
+}
+
+/**
+ * Return the fastest travel times from each of the given start locations to each of
+ * the given end locations, in row-major order.
+ *
+ * @param  origins
+ *         The start locations.
+ * @param  destinations
+ *         The end locations.
+ * @return An array with origins.length*destinations.length travel times, in which the
+ *         travel time from origins[i] to destinations[j] is at position i*destinations.length + j.
+ *         That travel time is 0 if both locations are the same, positive infinity if
+ *         destinations[j] cannot be reached from origins[i], and the travel time of the
+ *         fastest route between them otherwise.
+ *       | for each i in 0..origins.length-1: for each j in 0..destinations.length-1:
+ *       |   result[i*destinations.length + j] == (float) new DijkstraRouter(roads).getFastestRoute(origins[i], destinations[j]).getLastTravelTime()
+ * @throws IllegalArgumentException
+ *         One of the locations cannot be the end of a route.
+ *       | for some location in origins or destinations: !Router.canHaveAsRouteEnd(location)
+ * @throws IllegalArgumentException
+ *         The matrix does not fit in an array.
+ *       | (long) origins.length*destinations.length > Integer.MAX_VALUE
+ */
+public float[] getTravelTimes(Location[] origins, Location[] destinations) throws IllegalArgumentException {
+	if((long) origins.length*destinations.length > Integer.MAX_VALUE) {
+		throw new IllegalArgumentException();
+	}
+	for(Location location:origins) {
+		if(!Router.canHaveAsRouteEnd(location)) {
+			throw new IllegalArgumentException();
+		}
+	}
+	GraphSnapshot snapshot = this.snapshot;
+	LocationIndex index = snapshot.getLocationIndex();
+	int size = index.getSize();
+	int[] targets = new int[destinations.length];
+	boolean[] isTarget = new boolean[size];
+	int targetCount = 0;
+	for(int j = 0;j<destinations.length;j++) {
+		if(!Router.canHaveAsRouteEnd(destinations[j])) {
+			throw new IllegalArgumentException();
+		}
+		targets[j] = index.getIndexOf(destinations[j]);
+		if(targets[j] >= 0 && !isTarget[targets[j]]) {
+			isTarget[targets[j]] = true;
+			targetCount++;
+		}
+	}
+	float[] matrix = new float[origins.length*destinations.length];
+	if(matrix.length == 0) {
+		return matrix;
+	}
+	int blockCount = Math.min(origins.length, 4*this.pool.getParallelism());
+	int distinctTargets = targetCount;
+	this.pool.submit(() -> IntStream.range(0, blockCount).parallel().forEach(block -> {
+		Search search = new Search(snapshot);
+		int first = (int) ((long) block*origins.length/blockCount);
+		int last = (int) ((long) (block + 1)*origins.length/blockCount);
+		for(int i = first;i<last;i++) {
+			int source = index.getIndexOf(origins[i]);
+			if(source >= 0) {
+				search.run(source, isTarget, distinctTargets);
+			}
+			for(int j = 0;j<destinations.length;j++) {
+				float time = Float.POSITIVE_INFINITY;
+				if(origins[i] == destinations[j]) {
+					time = 0;
+				}
+				else if(source >= 0 && targets[j] >= 0) {
+					time = (float) search.times[targets[j]];
+				}
+				matrix[i*destinations.length + j] = time;
+			}
+			if(source >= 0) {
+				search.reset();
+			}
+		}
+	})).join();
+	return matrix;
+}
+
+/**
+ * A class of one-to-many searches over a snapshot, whose arrays are reused from one
+ * search to the next.
+ */
+private static class Search {
+
+	Search(GraphSnapshot snapshot) {
+		int size = snapshot.getLocationCount();
+		this.snapshot = snapshot;
+		this.times = new double[size];
+		this.touched = new int[size];
+		this.heap = new IndexedHeap(size);
+		Arrays.fill(this.times, Double.POSITIVE_INFINITY);
+	}
+
+	private final GraphSnapshot snapshot;
+
+	/**
+	 * Array registering the travel time from the source of the current search to each
+	 * location, or positive infinity if the location has not been reached.
+	 */
+	final double[] times;
+
+	/**
+	 * Array registering the indices of the locations reached by the current search.
+	 */
+	private final int[] touched;
+
+	private int touchedCount = 0;
+
+	private final IndexedHeap heap;
+
+	/**
+	 * Compute the travel times from the location at the given index, until all
+	 * locations marked as target are settled.
+	 */
+	void run(int source, boolean[] isTarget, int targetCount) {
+		int[] offsets = this.snapshot.offsets;
+		int[] heads = this.snapshot.heads;
+		float[] edgeTimes = this.snapshot.times;
+		this.reach(source, 0);
+		while(targetCount > 0 && !this.heap.isEmpty()) {
+			int node = this.heap.poll();
+			if(isTarget[node]) {
+				targetCount--;
+			}
+			for(int edge = offsets[node];edge<offsets[node + 1];edge++) {
+				if(edgeTimes[edge] != Float.POSITIVE_INFINITY) {
+					this.reach(heads[edge], this.times[node] + edgeTimes[edge]);
+				}
+			}
+		}
+	}
+
+	private void reach(int node, double time) {
+		if(time < this.times[node]) {
+			if(this.times[node] == Double.POSITIVE_INFINITY) {
+				this.touched[this.touchedCount++] = node;
+			}
+			this.times[node] = time;
+			this.heap.push(node, time);
+		}
+	}
+
+	/**
+	 * Forget the travel times of the current search.
+	 */
+	void reset() {
+		this.heap.clear();
+		for(int i = 0;i<this.touchedCount;i++) {
+			this.times[this.touched[i]] = Double.POSITIVE_INFINITY;
+		}
+		this.touchedCount = 0;
+	}
+}
+}
@@ -0,0 +1,199 @@
+package connections;
+import java.util.Arrays;
+import java.util.HashMap;
+
+import be.kuleuven.cs.som.annotate.*;
+
+/**
+ * A class of travel time profiles, describing the travel time of a road in one
+ * direction as a piecewise linear function of the time of day at which it is entered.
+ *
+ * A profile consists of breakpoints at increasing times of day within a period of
+ * PERIOD time units, each with a travel time. Between two breakpoints, the travel time
+ * is interpolated linearly; after the last breakpoint, it is interpolated towards the
+ * first breakpoint of the next period. Profiles satisfy the FIFO property: entering a
+ * road later never makes one leave it earlier.
+ *
+ * Profiles are immutable and stored as two primitive arrays. Profiles are obtained
+ * through getProfile, which returns the same profile for the same breakpoints, so
+ * roads with identical profiles share their arrays.
+ *
+ * @invar  | isValidProfile(getTimes(), getTravelTimes())
+ */
+public class TravelTimeProfile {
+
+/**
+ * The length of the period of each profile: one day, in seconds.
+ */
+public static final int PERIOD = 24*60*60;
+
+/**
+ * Initialize this new profile with the given breakpoints, without copying them.
+ */
+private TravelTimeProfile(float[] times, float[] travelTimes) {
+	this.times = times;
+	this.travelTimes = travelTimes;
+}
+
+/**
+ * Arrays registering the time of day and the travel time of each breakpoint.
+ */
+private final float[] times;
+private final float[] travelTimes;
+
+/**
+ * Map registering each profile that has been obtained, by itself.
+ */
+private static final HashMap<TravelTimeProfile,TravelTimeProfile> profiles = new HashMap<TravelTimeProfile,TravelTimeProfile>();
+
+/**
+ * Return the profile with the given breakpoints.
+ *
+ * @param  times
+ *         The times of day of the breakpoints.
+ * @param  travelTimes
+ *         The travel times at the breakpoints.
+ * @return A profile with the given breakpoints, which is the same profile for
+ *         equal breakpoints.
+ *       | Arrays.equals(result.getTimes(), times) && Arrays.equals(result.getTravelTimes(), travelTimes)
+ * @throws IllegalArgumentException
+ *         | !isValidProfile(times, travelTimes)
+ */
+public static TravelTimeProfile getProfile(float[] times, float[] travelTimes) throws IllegalArgumentException {
+	if(!isValidProfile(times, travelTimes)) {
+		throw new IllegalArgumentException();
+	}
+	TravelTimeProfile profile = new TravelTimeProfile(times.clone(), travelTimes.clone());
+	synchronized(profiles) {
+		TravelTimeProfile shared = profiles.putIfAbsent(profile, profile);
+		if(shared != null) {
+			return shared;
+		}
+	}
+	return profile;
+}
+
+/**
+ * Return the profile with a constant travel time.
+ *
+ * @effect | getProfile(new float[] {0}, new float[] {travelTime})
+ */
+public static TravelTimeProfile getConstantProfile(float travelTime) throws IllegalArgumentException {
+	return getProfile(new float[] {0}, new float[] {travelTime});
+}
+
+/**
+ * Check whether the given breakpoints can form a profile.
+ *
+ * @return True if and only if both arrays have the same, positive length, the times
+ *         increase strictly from at least 0 to less than PERIOD, the travel times are
+ *         finite and not negative, and the arrival time never decreases, also from the
+ *         last breakpoint to the first breakpoint of the next period.
+ *       | result == (times.length == travelTimes.length && times.length > 0
+ *       |   && for each i in 0..times.length-1: 0 <= times[i] < PERIOD && 0 <= travelTimes[i] < infinity
+ *       |   && for each i in 1..times.length-1: times[i-1] < times[i]
+ *       |        && times[i-1] + travelTimes[i-1] <= times[i] + travelTimes[i]
+ *       |   && times[n-1] + travelTimes[n-1] <= times[0] + PERIOD + travelTimes[0])
+ */
+public static boolean isValidProfile(float[] times, float[] travelTimes) {
+	if(times == null || travelTimes == null || times.length != travelTimes.length || times.length == 0) {
+		return false;
+	}
+	for(int i = 0;i<times.length;i++) {
+		if(!(times[i] >= 0 && times[i] < PERIOD && travelTimes[i] >= 0 && travelTimes[i] < Float.POSITIVE_INFINITY)) {
+			return false;
+		}
+		if(i > 0 && (times[i - 1] >= times[i] || (double) times[i - 1] + travelTimes[i - 1] > (double) times[i] + travelTimes[i])) {
+			return false;
+		}
+	}
+	int last = times.length - 1;
+	return (double) times[last] + travelTimes[last] <= (double) times[0] + PERIOD + travelTimes[0];
+}
+
+/**
+ * Return the times of day of the breakpoints of this profile.
+ */
+public float[] getTimes() {
+	return this.times.clone();
+}
+
+/**
+ * Return the travel times at the breakpoints of this profile.
+ */
+public float[] getTravelTimes() {
+	return this.travelTimes.clone();
+}
+
+/**
+ * Return the number of breakpoints of this profile.
+ */
+@Basic @Immutable
+public int getSize() {
+	return this.times.length;
+}
+
+/**
+ * Return the travel time when entering at the given time.
+ *
+ * @param  time
+ *         The time, which may lie in any period.
+ * @return The travel time, interpolated between the breakpoints surrounding the
+ *         time of day of the given time.
+ */
+public double getTravelTime(double time) {
+	double timeOfDay = time % PERIOD;
+	if(timeOfDay < 0) {
+		timeOfDay = timeOfDay + PERIOD;
+	}
+	int size = this.times.length;
+	if(size == 1) {
+		return this.travelTimes[0];
+	}
+	// Find the first breakpoint after the time of day.
+	int next = 0;
+	int end = size;
+	while(next < end) {
+		int middle = (next + end) >>> 1;
+		if(this.times[middle] <= timeOfDay) {
+			next = middle + 1;
+		}
+		else {
+			end = middle;
+		}
+	}
+	double previousTime;
+	double previousTravelTime;
+	double nextTime;
+	double nextTravelTime;
+	if(next == 0) {
+		previousTime = this.times[size - 1] - PERIOD;
+		previousTravelTime = this.travelTimes[size - 1];
+	}
+	else {
+		previousTime = this.times[next - 1];
+		previousTravelTime = this.travelTimes[next - 1];
+	}
+	if(next == size) {
+		nextTime = this.times[0] + PERIOD;
+		nextTravelTime = this.travelTimes[0];
+	}
+	else {
+		nextTime = this.times[next];
+		nextTravelTime = this.travelTimes[next];
+	}
+	double fraction = (timeOfDay - previousTime)/(nextTime - previousTime);
+	return previousTravelTime + fraction*(nextTravelTime - previousTravelTime);
+}
+
+@Override
+public boolean equals(Object other) {
+	return other instanceof TravelTimeProfile && Arrays.equals(this.times, ((TravelTimeProfile) other).times)
+			&& Arrays.equals(this.travelTimes, ((TravelTimeProfile) other).travelTimes);
+}
+
+@Override
+public int hashCode() {
+	return 31*Arrays.hashCode(this.times) + Arrays.hashCode(this.travelTimes);
+}
+}